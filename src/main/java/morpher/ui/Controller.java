@@ -11,6 +11,8 @@ import javafx.scene.layout.StackPane;
 import morpher.ui.visualization.MappingLoader;
 import morpher.ui.visualization.PELoader;
 
+import java.nio.file.Paths;
+
 /**
  * The main controller for the Morpher JavaFX application.
  *
@@ -25,6 +27,10 @@ public class Controller {
     @FXML private StackPane mappingViz;
     @FXML private HBox cycleNav;
     @FXML private ScrollPane dfgScroll;
+    @FXML private StackPane memoryPane;
+    @FXML private StackPane accessPane;
+    @FXML private TabPane tabPane;
+    @FXML private Tab vizTab;
 
     private CodeEditor codeEditor;
     private DFGViewer dfgViewer;
@@ -33,6 +39,8 @@ public class Controller {
     private ModelUploader modelUploader;
     private FabricMatrixVisualizer fabricMatrixVisualizer;
     private CycleNavigator cycleNavigator;
+    private DataMemoryView dataMemoryView;
+    private MemoryAccessView memoryAccessView;
 
 
     /**
@@ -68,6 +76,34 @@ public class Controller {
             AlertHelper.showError("Visualization Init Error", e.getMessage());
         }
 
+        dataMemoryView = new DataMemoryView();
+        memoryPane.getChildren().add(dataMemoryView);
+        dataMemoryView.setOnJumpToCycle(this::showCycle);
+        memoryAccessView = new MemoryAccessView();
+        accessPane.getChildren().add(memoryAccessView);
+        memoryAccessView.setOnJumpToCycle(this::showCycle);
+
+        // hot reload a design directory passed with -Dmorpher.watch=<dir>
+        String watchDir = System.getProperty("morpher.watch");
+        if (watchDir != null) {
+            try {
+                fabricMatrixVisualizer.watch(Paths.get(watchDir));
+                dataMemoryView.refresh();
+                memoryAccessView.refresh();
+            } catch (Exception e) {
+                AlertHelper.showError("Watch Error", e.getMessage());
+            }
+        } else if (System.getProperty("morpher.trace") != null) {
+            // open a design directory or trace archive passed with -Dmorpher.trace=<path>
+            try {
+                FabricMatrixVisualizer.reload(fabricMatrixVisualizer, Paths.get(System.getProperty("morpher.trace")));
+                dataMemoryView.refresh();
+                memoryAccessView.refresh();
+            } catch (Exception e) {
+                AlertHelper.showError("Trace Error", e.getMessage());
+            }
+        }
+
         Platform.runLater(() -> {
             dfgScroll.setHvalue(0.5);
             dfgScroll.setVvalue(0.5);
@@ -75,6 +111,17 @@ public class Controller {
 
     }
 
+    /**
+     * Moves the visualizer to a cycle and brings it to the front.
+     *
+     * @param cycle the cycle to show
+     */
+    private void showCycle(int cycle) {
+        fabricMatrixVisualizer.goTo(cycle);
+        cycleNavigator.update();
+        tabPane.getSelectionModel().select(vizTab);
+    }
+
     @FXML
     private void onShowMorePinned() {
         // TODO: Pinned Application "more" button
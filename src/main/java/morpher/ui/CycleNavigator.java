@@ -1,46 +1,231 @@
 package morpher.ui;
 
+import javafx.animation.AnimationTimer;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
+import javafx.scene.control.TextField;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
+import javafx.util.StringConverter;
+import morpher.ui.visualization.utils.RenderMode;
 
 /**
  * A simple UI component for navigating through computation cycles in a fabric matrix.
  *
- * Displays the current cycle and provides "Prev" and "Next" buttons to step through cycles.
+ * Displays the current cycle and provides "Prev" and "Next" buttons to step through cycles,
+ * a slider to scrub through them and a field to jump to one.
  * It is typically bound to a FabricMatrixVisualizer, which handles the underlying logic.
+ * A choice box next to the buttons switches the visualizer between its renderers.
+ *
+ * "Play" steps through the cycles at the chosen speed, in cycles per second, optionally looping.
+ * Playback is driven by an AnimationTimer and draws at most TARGET_FPS frames per second
+ * ({@code -Dmorpher.playback.fps}, 60). The cycle shown follows the time elapsed, not the frames
+ * drawn: when drawing cannot keep up, the cycles in between are dropped instead of queued. The
+ * frame rate achieved, against the one aimed at, and the cycles dropped are shown next to it. The
+ * rate achieved counts the cycles the visualizer actually put on screen (getCyclesShown()), so a
+ * renderer whose frames are not ready in time shows up as a low rate.
  */
 public class CycleNavigator extends HBox {
+    public static final int TARGET_FPS = Math.max(1, Integer.getInteger("morpher.playback.fps", 60));
+    private static final long FRAME_NANOS = 1_000_000_000L / TARGET_FPS;
+    /** Playback speeds offered, in cycles per second. */
+    private static final Double[] SPEEDS = {1.0, 2.0, 5.0, 10.0, 30.0, 60.0, 120.0, 240.0};
 
     private final Button btnPrev = new Button("Prev");
     private final Button btnNext = new Button("Next");
+    private final Button btnPlay = new Button("Play");
     private final Label  lblCycle = new Label("Cycle 0");
+    private final Slider sldCycle = new Slider(0, 1, 0);
+    private final TextField txtJump = new TextField();
+    private final ChoiceBox<Double> cbSpeed = new ChoiceBox<>();
+    private final CheckBox chkLoop = new CheckBox("Loop");
+    private final Label  lblFps = new Label();
+    private final ChoiceBox<RenderMode> cbRenderer = new ChoiceBox<>();
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            tick(now);
+        }
+    };
 
     private FabricMatrixVisualizer mv;
+    private boolean playing;
+    /** Set while update() moves the slider, which then must not move the visualizer. */
+    private boolean updating;
+    /** Time of the previous tick, 0 before the first tick of a playback. */
+    private long lastTick;
+    private long lastFrame;
+    /** The playback position in cycles; its fraction is the time spent towards the next one. */
+    private double position;
+    private long fpsStart;
+    /** The visualizer's cycles shown at fpsStart. */
+    private long fpsShown;
+    private long dropped;
 
     public CycleNavigator() {
-        HBox.setHgrow(lblCycle, Priority.ALWAYS);
-        lblCycle.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(sldCycle, Priority.ALWAYS);
+        sldCycle.setMaxWidth(Double.MAX_VALUE);
+        sldCycle.setBlockIncrement(1);
+        lblCycle.setMinWidth(USE_PREF_SIZE);
         lblCycle.setAlignment(Pos.CENTER);
         lblCycle.setStyle("-fx-text-fill: white;");
+        lblFps.setStyle("-fx-text-fill: white;");
+        chkLoop.setStyle("-fx-text-fill: white;");
+        txtJump.setPrefColumnCount(5);
+        txtJump.setPromptText("Go to");
+        cbSpeed.getItems().setAll(SPEEDS);
+        cbSpeed.setValue(10.0);
+        cbSpeed.setConverter(new StringConverter<>() {
+            @Override
+            public String toString(Double speed) {
+                return speed == null ? "" : String.format("%.0f cycles/s", speed);
+            }
+
+            @Override
+            public Double fromString(String s) {
+                return Double.valueOf(s.split(" ")[0]);
+            }
+        });
         setAlignment(Pos.CENTER);
         setSpacing(10);
-        getChildren().addAll(btnPrev, lblCycle, btnNext);
+        cbRenderer.getItems().setAll(RenderMode.values());
+        getChildren().addAll(btnPrev, btnPlay, btnNext, lblCycle, sldCycle, txtJump,
+                cbSpeed, chkLoop, lblFps, cbRenderer);
 
         btnPrev.setOnAction(e -> { if (mv != null) { mv.prev();  update(); } });
         btnNext.setOnAction(e -> { if (mv != null) { mv.next();  update(); } });
+        btnPlay.setOnAction(e -> { if (playing) pause(); else play(); });
+        sldCycle.valueProperty().addListener((o, ov, nv) -> {
+            if (!updating && mv != null && (int) Math.round(nv.doubleValue()) != mv.getCurrentCycle()) {
+                mv.goTo((int) Math.round(nv.doubleValue()));
+                update();
+            }
+        });
+        txtJump.setOnAction(e -> jump());
+        cbRenderer.setOnAction(e -> { if (mv != null && cbRenderer.getValue() != null) mv.setRenderMode(cbRenderer.getValue()); });
     }
 
     public void bind(FabricMatrixVisualizer mv) {
+        pause();
         this.mv = mv;
+        cbRenderer.setValue(mv.getRenderMode());
         update();
     }
 
-    private void update() {
+    /**
+     * Refreshes the cycle label and slider, e.g. after the visualizer was moved to another cycle
+     * directly; a playback goes on from there.
+     */
+    public void update() {
         if (mv != null) {
             lblCycle.setText("Cycle " + mv.getCurrentCycle());
+            updating = true;
+            sldCycle.setMax(Math.max(1, mv.getLastCycle()));
+            sldCycle.setValue(mv.getCurrentCycle());
+            updating = false;
+            if ((int) position != mv.getCurrentCycle()) {
+                position = mv.getCurrentCycle();
+            }
+        }
+    }
+
+    /**
+     * Moves to the cycle typed in the jump field.
+     */
+    private void jump() {
+        try {
+            if (mv != null) {
+                mv.goTo(Integer.parseInt(txtJump.getText().trim()));
+                update();
+            }
+            txtJump.clear();
+        } catch (NumberFormatException ex) {
+            txtJump.selectAll();
+        }
+    }
+
+    /**
+     * Starts playing from the current cycle, or from the first one if the last one is shown and
+     * looping is off.
+     */
+    public void play() {
+        if (mv == null || playing) {
+            return;
+        }
+        if (mv.getCurrentCycle() >= mv.getLastCycle()) {
+            mv.goTo(0);
+            update();
+        }
+        playing = true;
+        btnPlay.setText("Pause");
+        position = mv.getCurrentCycle();
+        lastTick = 0;
+        dropped = 0;
+        timer.start();
+    }
+
+    public void pause() {
+        if (!playing) {
+            return;
+        }
+        timer.stop();
+        playing = false;
+        btnPlay.setText("Play");
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Advances the playback to the time of a pulse, and draws the cycle reached unless a frame
+     * was drawn less than a frame period ago.
+     *
+     * @param now the time of the pulse, in nanoseconds
+     */
+    void tick(long now) {
+        if (lastTick == 0) {
+            lastTick = now;
+            lastFrame = now - FRAME_NANOS;
+            fpsStart = now;
+            fpsShown = mv.getCyclesShown();
+        }
+        double speed = cbSpeed.getValue() == null ? 10 : cbSpeed.getValue();
+        position += (now - lastTick) / 1e9 * speed;
+        lastTick = now;
+        // pulses come at the display rate, with jitter: allow a tenth of a period early
+        if (now - lastFrame < FRAME_NANOS * 9 / 10) {
+            return;
+        }
+
+        int last = mv.getLastCycle();
+        if (position >= last + 1) {
+            if (chkLoop.isSelected()) {
+                position %= last + 1;
+            } else {
+                position = last;
+                pause();
+            }
+        }
+        int target = (int) position;
+        int shown = mv.getCurrentCycle();
+        if (target != shown) {
+            dropped += target > shown ? target - shown - 1 : last - shown + target; // wrapped when looping
+            // at more cycles per second than frames, each frame moves by several cycles
+            mv.goTo(target, Math.max(1, speed / TARGET_FPS));
+            update();
+            lastFrame = now;
+        }
+        if (now - fpsStart >= 1_000_000_000L || !playing) {
+            long cyclesShown = mv.getCyclesShown();
+            double fps = (cyclesShown - fpsShown) * 1e9 / Math.max(1, now - fpsStart);
+            lblFps.setText(String.format("%.0f / %.0f fps, %d dropped", fps, Math.min(speed, TARGET_FPS), dropped));
+            fpsStart = now;
+            fpsShown = cyclesShown;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,240 @@
+package morpher.ui;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import morpher.ui.visualization.DataMemory;
+import morpher.ui.visualization.DataMemoryLoader;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A UI component showing the data memory banks of the loaded design next to their expected
+ * contents.
+ *
+ * Each row shows the 4 little-endian 16-bit words of one 8-byte line of the final dump, then the
+ * expected words. Rows with a differing word are highlighted. Rows are rendered by a ListView, so
+ * only the visible ones exist as nodes whatever the size of the memory.
+ *
+ * "First write" jumps to the first cycle at which the selected mismatching row (or the first
+ * mismatch of the bank) was written; the jump itself is delegated to the handler set with
+ * setOnJumpToCycle(IntConsumer). Finding that cycle may read the port dumps of every cycle, so it
+ * runs on a background thread and the jump happens when it completes.
+ */
+public class DataMemoryView extends VBox {
+    private static final int WORDS_PER_ROW = DataMemory.ROW_BYTES / DataMemory.WORD_BYTES;
+
+    private final ChoiceBox<String> bankChoice = new ChoiceBox<>();
+    private final Label lblSummary = new Label();
+    private final Button btnNextMismatch = new Button("Next mismatch");
+    private final Button btnFirstWrite = new Button("First write");
+    private final ListView<Integer> rows = new ListView<>();
+
+    private DataMemory actual;
+    private DataMemory expected;
+    private int[] mismatches = new int[0];
+    private IntConsumer onJumpToCycle;
+    private int generation;
+
+    public DataMemoryView() {
+        HBox bar = new HBox(10, bankChoice, lblSummary, btnNextMismatch, btnFirstWrite);
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.getStyleClass().add("visualization-bar");
+        HBox.setHgrow(lblSummary, Priority.ALWAYS);
+        lblSummary.setMaxWidth(Double.MAX_VALUE);
+        getStyleClass().add("memory-view");
+        setSpacing(5);
+        VBox.setVgrow(rows, Priority.ALWAYS);
+        getChildren().addAll(bar, rows);
+
+        rows.setCellFactory(list -> new RowCell());
+        bankChoice.getSelectionModel().selectedItemProperty().addListener((obs, old, bank) -> show(bank));
+        btnNextMismatch.setOnAction(e -> selectNextMismatch());
+        btnFirstWrite.setOnAction(e -> jumpToFirstWrite());
+        refresh();
+    }
+
+    /**
+     * Sets the handler called with a cycle number when the user asks to jump to it.
+     *
+     * @param handler the handler, typically moving the FabricMatrixVisualizer to the cycle
+     */
+    public void setOnJumpToCycle(IntConsumer handler) {
+        this.onJumpToCycle = handler;
+    }
+
+    /**
+     * Re-reads the list of banks from the DataMemoryLoader, e.g. after a design directory reload.
+     */
+    public void refresh() {
+        String current = bankChoice.getValue();
+        bankChoice.getItems().setAll(DataMemoryLoader.get().getBanks());
+        if (bankChoice.getItems().contains(current)) {
+            show(current);
+        } else if (!bankChoice.getItems().isEmpty()) {
+            bankChoice.getSelectionModel().selectFirst();
+        } else {
+            show(null);
+        }
+    }
+
+    private void show(String bank) {
+        // drops the result of a first-write search still running for the previous bank
+        generation++;
+        DataMemoryLoader loader = DataMemoryLoader.get();
+        actual = bank == null ? null : loader.getActual(bank);
+        expected = bank == null ? null : loader.getExpected(bank);
+        mismatches = bank == null ? new int[0] : loader.diff(bank);
+
+        int rowCount = Math.max(actual == null ? 0 : actual.rowCount(), expected == null ? 0 : expected.rowCount());
+        // the row indices are computed on access rather than stored, one Integer per visible cell
+        rows.setItems(FXCollections.observableList(new AbstractList<>() {
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return rowCount;
+            }
+        }));
+
+        if (bank == null) {
+            lblSummary.setText("No data memory dump");
+        } else if (expected == null) {
+            lblSummary.setText(bank + ": no expected contents");
+        } else if (mismatches.length == 0) {
+            lblSummary.setText(bank + ": matches the expected contents");
+        } else {
+            lblSummary.setText(String.format("%s: %d of %d words differ", bank, mismatches.length,
+                    Math.max(actual == null ? 0 : actual.wordCount(), expected.wordCount())));
+        }
+        btnNextMismatch.setDisable(mismatches.length == 0);
+        btnFirstWrite.setDisable(mismatches.length == 0);
+    }
+
+    /**
+     * Selects the first mismatching row after the selected one, wrapping around.
+     */
+    private void selectNextMismatch() {
+        if (mismatches.length == 0) {
+            return;
+        }
+        int selectedRow = rows.getSelectionModel().getSelectedIndex();
+        int nextWord = (selectedRow + 1) * WORDS_PER_ROW;
+        int i = Arrays.binarySearch(mismatches, nextWord);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        int row = mismatches[i < mismatches.length ? i : 0] / WORDS_PER_ROW;
+        rows.getSelectionModel().select(row);
+        rows.scrollTo(row);
+    }
+
+    /**
+     * Finds, in the background, the first cycle at which a mismatching word of the selected row
+     * was written, or of the whole bank if the selected row matches, and hands it to the jump
+     * handler. The result is dropped if another bank is shown meanwhile.
+     */
+    private void jumpToFirstWrite() {
+        String bank = bankChoice.getValue();
+        if (bank == null || mismatches.length == 0) {
+            return;
+        }
+        int selectedRow = rows.getSelectionModel().getSelectedIndex();
+        int[] candidates = selectedRow >= 0 && rowDiffers(selectedRow)
+                ? IntStream.range(selectedRow * WORDS_PER_ROW, (selectedRow + 1) * WORDS_PER_ROW)
+                        .filter(this::wordDiffers).toArray()
+                : mismatches;
+        int gen = generation;
+        btnFirstWrite.setDisable(true);
+        Thread thread = new Thread(() -> {
+            int cycle = -1;
+            for (int word : candidates) {
+                int c = DataMemoryLoader.get().firstWriteCycleOfWord(bank, word);
+                if (c >= 0 && (cycle < 0 || c < cycle)) {
+                    cycle = c;
+                }
+            }
+            int first = cycle;
+            Platform.runLater(() -> {
+                if (gen != generation) {
+                    return;
+                }
+                btnFirstWrite.setDisable(false);
+                if (first < 0) {
+                    AlertHelper.showError("Data Memory", "The differing words of " + bank + " were never written.");
+                } else if (onJumpToCycle != null) {
+                    onJumpToCycle.accept(first);
+                }
+            });
+        }, "data-memory-first-write");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private boolean wordDiffers(int word) {
+        return Arrays.binarySearch(mismatches, word) >= 0;
+    }
+
+    private boolean rowDiffers(int row) {
+        int i = Arrays.binarySearch(mismatches, row * WORDS_PER_ROW);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < mismatches.length && mismatches[i] < (row + 1) * WORDS_PER_ROW;
+    }
+
+    private String formatRow(int row) {
+        StringBuilder sb = new StringBuilder(String.format("0x%04x ", row * DataMemory.ROW_BYTES));
+        appendWords(sb, actual, row);
+        sb.append(" |");
+        appendWords(sb, expected, row);
+        return sb.toString();
+    }
+
+    private void appendWords(StringBuilder sb, DataMemory memory, int row) {
+        for (int w = row * WORDS_PER_ROW; w < (row + 1) * WORDS_PER_ROW; w++) {
+            if (memory == null || w >= memory.wordCount()) {
+                sb.append(" ----");
+            } else {
+                sb.append(String.format(" %04x", memory.wordAt(w)));
+            }
+        }
+    }
+
+    /**
+     * Renders one row of the memory, marking it when a word differs from the expected contents.
+     */
+    private class RowCell extends ListCell<Integer> {
+        RowCell() {
+            getStyleClass().add("memory-row");
+        }
+
+        @Override
+        protected void updateItem(Integer row, boolean empty) {
+            super.updateItem(row, empty);
+            getStyleClass().remove("mismatch");
+            if (empty || row == null) {
+                setText(null);
+                return;
+            }
+            setText(formatRow(row));
+            if (rowDiffers(row)) {
+                getStyleClass().add("mismatch");
+            }
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package morpher.ui;
+
+import javafx.beans.InvalidationListener;
+import javafx.geometry.Bounds;
+import javafx.geometry.BoundingBox;
+import javafx.geometry.Point2D;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+import javafx.util.Duration;
+import morpher.ui.visualization.ActivityHeatmap;
+import morpher.ui.visualization.Coordinate;
+import morpher.ui.visualization.FabricMatrix;
+import morpher.ui.visualization.PE;
+import morpher.ui.visualization.PackedRoutingStore;
+import morpher.ui.visualization.utils.Direction;
+import morpher.ui.visualization.utils.HeatmapMetric;
+import morpher.ui.visualization.utils.ModuleType;
+
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static morpher.ui.visualization.Coordinate.getNeighbourCoordinate;
+import static morpher.ui.visualization.GridBuilder.CELL_SIZE;
+import static morpher.ui.visualization.GridBuilder.GAP;
+import static morpher.ui.visualization.GridBuilder.HEADER_SIZE;
+import static morpher.ui.visualization.utils.Direction.getOppositeDir;
+
+/**
+ * A fabric renderer that draws the cells, opcodes and routes of a cycle onto a single Canvas
+ * instead of creating scene graph nodes for them, for fabrics too large for the GridPane renderer.
+ *
+ * The layout is the one of the GridBuilder grid: headers of HEADER_SIZE, cells of CELL_SIZE
+ * separated by GAP. The pane takes the size of the whole fabric, so that an enclosing ScrollPane
+ * scrolls it as before, but the canvas only covers the part visible in the ScrollPane and only
+ * the cells in or next to that part are drawn. Drawing cost therefore depends on the viewport,
+ * not on the fabric size.
+ *
+ * Cells are found under the mouse by arithmetic on the layout; clicking one calls the handler set
+ * with setOnCellClicked(Consumer), and hovering one shows a tooltip from setTooltipText(Function).
+ *
+ * The fabric can be zoomed with the mouse wheel or a pinch, around the point under the pointer,
+ * and panned by dragging it in its ScrollPane. The pane takes the size of the zoomed fabric while
+ * the canvas still only covers the viewport, so memory and drawing cost depend on what is on
+ * screen, not on the zoom or the fabric size.
+ *
+ * Below LOD_ZOOM ({@code -Dmorpher.lod.zoom}, 0.25) labels and routes are unreadable, and the
+ * fabric is drawn as a heatmap instead: each cell is filled by its {@link ActivityHeatmap} count
+ * over the last cycles up to the one shown ({@code -Dmorpher.lod.window}, 16 cycles), for the
+ * metric of setHeatmapMetric(HeatmapMetric) ({@code -Dmorpher.lod.metric=activity|memory|links}).
+ */
+public class FabricCanvas extends Pane {
+    private static final int PITCH = CELL_SIZE + GAP;
+    private static final int ORIGIN = HEADER_SIZE + GAP;
+    /** Largest canvas side drawn when there is no ScrollPane to tell what is visible. */
+    private static final double MAX_UNCLIPPED = 4096;
+    private static final double ARROW_LENGTH = 8;
+    private static final double ARROW_ANGLE = Math.toRadians(35);
+    public static final double MIN_ZOOM = 0.02;
+    public static final double MAX_ZOOM = 4;
+    /** Zoom factor of one notch (40 px of scroll) of the mouse wheel. */
+    private static final double WHEEL_ZOOM = 1.1;
+
+    private static final Color CELL_FILL = Color.web("#1e1e1e");
+    private static final Color CELL_STROKE = Color.web("#3c3c3c");
+    private static final Color MEM_STROKE = Color.web("#4e7fa8");
+    private static final Color ROUTE = Color.web("#ff9c23");
+    private static final Color HEADER_TEXT = Color.web("#d4d4d4");
+    private static final Color HEADER_FILL = Color.web("#252526");
+    private static final Font LABEL_FONT = Font.font(12);
+    public static final double LOD_ZOOM = Double.parseDouble(System.getProperty("morpher.lod.zoom", "0.25"));
+    /** Heatmap colours from idle (the cell fill) to always active (the route colour). */
+    private static final Color[] HEAT = new Color[64];
+
+    static {
+        for (int i = 0; i < HEAT.length; i++) {
+            HEAT[i] = CELL_FILL.interpolate(ROUTE, (double) i / (HEAT.length - 1));
+        }
+    }
+
+    private final Canvas canvas = new Canvas();
+    private final Tooltip tooltip = new Tooltip();
+    private FabricMatrix fabric;
+    private Map<Coordinate, PE> nodes;
+    private int cycle;
+    /** The cycle of the last draw, and the number of draws that moved to another cycle. */
+    private int drawnCycle = -1;
+    private long cyclesDrawn;
+    private Coordinate selected;
+    private Coordinate hovered;
+    private ScrollPane scrollPane;
+    private Consumer<Coordinate> onCellClicked;
+    private Function<Coordinate, String> tooltipText;
+    private double zoom = 1;
+    private HeatmapMetric heatmapMetric = HeatmapMetric.get(System.getProperty("morpher.lod.metric", "activity"));
+    private int heatmapWindow = Math.max(1, Integer.getInteger("morpher.lod.window", 16));
+    /** Built the first time the heatmap is drawn after the fabric or metric changed. */
+    private ActivityHeatmap heatmap;
+    private final InvalidationListener redraw = o -> draw();
+
+    public FabricCanvas() {
+        getChildren().add(canvas);
+        canvas.setMouseTransparent(true);
+        tooltip.setFont(Font.font("Monospaced", 11));
+        tooltip.setShowDelay(Duration.millis(500));
+        tooltip.setOnShowing(e -> tooltip.setText(hovered == null || tooltipText == null ? "" : tooltipText.apply(hovered)));
+
+        setOnMouseClicked(e -> {
+            if (!e.isStillSincePress()) {
+                return; // the end of a pan
+            }
+            Coordinate coord = cellAt(e.getX(), e.getY());
+            if (coord != null && onCellClicked != null) {
+                onCellClicked.accept(coord);
+            }
+        });
+        setOnMouseMoved(e -> hover(cellAt(e.getX(), e.getY())));
+        setOnMouseExited(e -> hover(null));
+        setOnScroll(e -> {
+            if (e.getDeltaY() != 0) {
+                zoomAt(Math.pow(WHEEL_ZOOM, e.getDeltaY() / 40), e.getSceneX(), e.getSceneY());
+            }
+            e.consume();
+        });
+        setOnZoom(e -> {
+            zoomAt(e.getZoomFactor(), e.getSceneX(), e.getSceneY());
+            e.consume();
+        });
+
+        // redraw when the visible part changes
+        sceneProperty().addListener((o, ov, scene) -> attach());
+        layoutBoundsProperty().addListener(redraw);
+    }
+
+    /**
+     * Sets the fabric and PEs to draw and resizes the pane to the whole fabric.
+     *
+     * @param fabric the fabric layout
+     * @param nodes the PEs with their per-cycle data
+     */
+    public void setFabric(FabricMatrix fabric, Map<Coordinate, PE> nodes) {
+        this.fabric = fabric;
+        this.nodes = nodes;
+        this.selected = null;
+        this.heatmap = null;
+        resize();
+        draw();
+    }
+
+    /**
+     * Sizes the pane to the whole fabric at the current zoom.
+     */
+    private void resize() {
+        if (fabric == null) {
+            return;
+        }
+        double width = (HEADER_SIZE + fabric.cols() * PITCH) * zoom;
+        double height = (HEADER_SIZE + fabric.rows() * PITCH) * zoom;
+        setPrefSize(width, height);
+        setMinSize(width, height);
+        setMaxSize(width, height);
+    }
+
+    /**
+     * Redraws after some PEs were replaced, dropping what was computed from the previous ones.
+     *
+     * @param nodes the PEs, replacing those of setFabric(FabricMatrix, Map)
+     */
+    public void refresh(Map<Coordinate, PE> nodes) {
+        this.nodes = nodes;
+        heatmap = null;
+        draw();
+    }
+
+    /**
+     * Sets what the heatmap shown below LOD_ZOOM counts.
+     *
+     * @param metric the metric
+     */
+    public void setHeatmapMetric(HeatmapMetric metric) {
+        this.heatmapMetric = metric;
+        this.heatmap = null;
+        draw();
+    }
+
+    public HeatmapMetric getHeatmapMetric() {
+        return heatmapMetric;
+    }
+
+    /**
+     * Sets the number of cycles, up to the one shown, the heatmap sums over.
+     *
+     * @param cycles the number of cycles
+     */
+    public void setHeatmapWindow(int cycles) {
+        this.heatmapWindow = Math.max(1, cycles);
+        draw();
+    }
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Sets the zoom, keeping the top left corner of the viewport where it is.
+     *
+     * @param zoom the scale of the fabric, between MIN_ZOOM and MAX_ZOOM
+     */
+    public void setZoom(double zoom) {
+        this.zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        resize();
+        draw();
+    }
+
+    /**
+     * Zooms by a factor, keeping the point of the fabric at the given scene position under it
+     * by scrolling the enclosing ScrollPane.
+     *
+     * @param factor the zoom factor, above 1 to zoom in
+     * @param sceneX the x of the fixed point in the scene
+     * @param sceneY the y of the fixed point in the scene
+     */
+    public void zoomAt(double factor, double sceneX, double sceneY) {
+        double old = zoom;
+        Point2D local = sceneToLocal(sceneX, sceneY);
+        setZoom(zoom * factor);
+        if (zoom == old || scrollPane == null || scrollPane.getContent() == null || local == null) {
+            return;
+        }
+        // lay the content out at the new size, then scroll the fixed point back under the pointer
+        scrollPane.layout();
+        Point2D moved = localToScene(local.getX() / old * zoom, local.getY() / old * zoom);
+        Bounds view = scrollPane.getViewportBounds();
+        Bounds content = scrollPane.getContent().getLayoutBounds();
+        double extraX = content.getWidth() - view.getWidth();
+        double extraY = content.getHeight() - view.getHeight();
+        if (extraX > 0) {
+            double offset = scrollPane.getHvalue() * extraX + moved.getX() - sceneX;
+            scrollPane.setHvalue(Math.max(0, Math.min(1, offset / extraX)));
+        }
+        if (extraY > 0) {
+            double offset = scrollPane.getVvalue() * extraY + moved.getY() - sceneY;
+            scrollPane.setVvalue(Math.max(0, Math.min(1, offset / extraY)));
+        }
+    }
+
+    /**
+     * Draws the fabric at another cycle.
+     *
+     * @param cycle the cycle to draw
+     */
+    public void setCycle(int cycle) {
+        this.cycle = cycle;
+        draw();
+    }
+
+    /**
+     * Highlights a cell.
+     *
+     * @param coord the cell to highlight, or null for none
+     */
+    public void setSelected(Coordinate coord) {
+        this.selected = coord;
+        draw();
+    }
+
+    public void setOnCellClicked(Consumer<Coordinate> handler) {
+        this.onCellClicked = handler;
+    }
+
+    public void setTooltipText(Function<Coordinate, String> text) {
+        this.tooltipText = text;
+    }
+
+    /**
+     * Finds the cell at a point.
+     *
+     * @param x the x coordinate in this pane
+     * @param y the y coordinate in this pane
+     * @return the coordinate of the cell, or null if the point is on a header, a gap or outside
+     */
+    public Coordinate cellAt(double x, double y) {
+        x /= zoom;
+        y /= zoom;
+        if (fabric == null || x < ORIGIN || y < ORIGIN) {
+            return null;
+        }
+        int col = (int) ((x - ORIGIN) / PITCH);
+        int row = (int) ((y - ORIGIN) / PITCH);
+        if (row >= fabric.rows() || col >= fabric.cols()
+                || x - ORIGIN - col * PITCH > CELL_SIZE || y - ORIGIN - row * PITCH > CELL_SIZE) {
+            return null;
+        }
+        return new Coordinate(row, col);
+    }
+
+    private void hover(Coordinate coord) {
+        if (coord == null ? hovered == null : coord.equals(hovered)) {
+            return;
+        }
+        hovered = coord;
+        if (coord == null) {
+            Tooltip.uninstall(this, tooltip);
+        } else {
+            tooltip.hide();
+            Tooltip.install(this, tooltip);
+        }
+    }
+
+    /**
+     * Follows the ScrollPane the pane is shown in, if any, to redraw when it scrolls, and lets
+     * the fabric be panned by dragging it.
+     */
+    private void attach() {
+        ScrollPane sp = null;
+        for (Node n = getParent(); n != null && sp == null; n = n.getParent()) {
+            if (n instanceof ScrollPane found) {
+                sp = found;
+            }
+        }
+        if (sp == scrollPane) {
+            return;
+        }
+        if (scrollPane != null) {
+            scrollPane.viewportBoundsProperty().removeListener(redraw);
+            scrollPane.setPannable(false);
+        }
+        scrollPane = sp;
+        if (sp != null) {
+            // the skin moves the viewport bounds along with the content when it scrolls
+            sp.viewportBoundsProperty().addListener(redraw);
+            sp.setPannable(true);
+        }
+        draw();
+    }
+
+    /**
+     * @return the part of the pane visible in the ScrollPane, in the pane's coordinates
+     */
+    private Bounds visibleBounds() {
+        Bounds all = getLayoutBounds();
+        if (scrollPane == null || scrollPane.getScene() == null || getScene() == null) {
+            return new BoundingBox(0, 0, Math.min(all.getWidth(), MAX_UNCLIPPED), Math.min(all.getHeight(), MAX_UNCLIPPED));
+        }
+        Bounds view = sceneToLocal(scrollPane.localToScene(scrollPane.getLayoutBounds()));
+        double minX = Math.max(all.getMinX(), view.getMinX());
+        double minY = Math.max(all.getMinY(), view.getMinY());
+        double maxX = Math.min(all.getMaxX(), view.getMaxX());
+        double maxY = Math.min(all.getMaxY(), view.getMaxY());
+        return new BoundingBox(minX, minY, Math.max(0, maxX - minX), Math.max(0, maxY - minY));
+    }
+
+    /**
+     * @return the number of draws that showed another cycle than the previous draw
+     */
+    public long getCyclesDrawn() {
+        return cyclesDrawn;
+    }
+
+    /**
+     * Redraws the visible part of the fabric.
+     */
+    public void draw() {
+        Bounds visible = visibleBounds();
+        canvas.setWidth(Math.ceil(visible.getWidth()));
+        canvas.setHeight(Math.ceil(visible.getHeight()));
+        canvas.relocate(Math.floor(visible.getMinX()), Math.floor(visible.getMinY()));
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        g.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        if (fabric == null || nodes == null || visible.getWidth() == 0 || visible.getHeight() == 0) {
+            return;
+        }
+        if (cycle != drawnCycle) {
+            drawnCycle = cycle;
+            cyclesDrawn++;
+        }
+        g.save();
+        g.translate(-Math.floor(visible.getMinX()), -Math.floor(visible.getMinY()));
+        g.scale(zoom, zoom);
+        // the visible part in unzoomed fabric coordinates, in which everything below is drawn
+        Bounds view = new BoundingBox(visible.getMinX() / zoom, visible.getMinY() / zoom,
+                visible.getWidth() / zoom, visible.getHeight() / zoom);
+
+        // cells one beyond the visible ones still draw routes into view
+        int col0 = Math.max(0, (int) Math.floor((view.getMinX() - ORIGIN) / PITCH) - 1);
+        int row0 = Math.max(0, (int) Math.floor((view.getMinY() - ORIGIN) / PITCH) - 1);
+        int col1 = Math.min(fabric.cols() - 1, (int) Math.floor((view.getMaxX() - ORIGIN) / PITCH) + 1);
+        int row1 = Math.min(fabric.rows() - 1, (int) Math.floor((view.getMaxY() - ORIGIN) / PITCH) + 1);
+
+        if (zoom < LOD_ZOOM) {
+            drawHeatmap(g, row0, row1, col0, col1);
+            g.restore();
+            return;
+        }
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+        g.setFont(LABEL_FONT);
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                drawCell(g, new Coordinate(row, col));
+            }
+        }
+        g.setStroke(ROUTE);
+        g.setLineWidth(Math.max(2, 1 / zoom)); // at least one pixel on screen
+        g.setLineJoin(StrokeLineJoin.MITER);
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                PE pe = nodes.get(new Coordinate(row, col));
+                if (pe != null) {
+                    drawRoutes(g, pe);
+                }
+            }
+        }
+        // last, so that the cells and routes scrolled under the headers do not hide them
+        drawHeaders(g, view, row0, row1, col0, col1);
+        g.restore();
+    }
+
+    /**
+     * Draws the row and column numbers, pinned to the top and left of the visible part, each on
+     * a strip of the background colour.
+     */
+    private void drawHeaders(GraphicsContext g, Bounds view, int row0, int row1, int col0, int col1) {
+        double topEdge = Math.max(0, view.getMinY());
+        double leftEdge = Math.max(0, view.getMinX());
+        g.setFill(HEADER_FILL);
+        g.fillRect(view.getMinX(), topEdge, view.getWidth(), HEADER_SIZE);
+        g.fillRect(leftEdge, view.getMinY(), HEADER_SIZE, view.getHeight());
+
+        g.setFill(HEADER_TEXT);
+        g.setFont(LABEL_FONT);
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.CENTER);
+        double top = topEdge + HEADER_SIZE / 2.0;
+        double left = leftEdge + HEADER_SIZE / 2.0;
+        // numbers scrolled into the corner where the strips cross are left out
+        for (int col = col0; col <= col1; col++) {
+            double x = ORIGIN + col * PITCH + CELL_SIZE / 2.0;
+            if (x > leftEdge + HEADER_SIZE) {
+                g.fillText(String.valueOf(col), x, top);
+            }
+        }
+        for (int row = row0; row <= row1; row++) {
+            double y = ORIGIN + row * PITCH + CELL_SIZE / 2.0;
+            if (y > topEdge + HEADER_SIZE) {
+                g.fillText(String.valueOf(row), left, y);
+            }
+        }
+    }
+
+    /**
+     * Fills each cell with the colour of its heatmap intensity, moving the heatmap window to the
+     * cycles up to the current one.
+     */
+    private void drawHeatmap(GraphicsContext g, int row0, int row1, int col0, int col1) {
+        if (heatmap == null) {
+            heatmap = new ActivityHeatmap(fabric, nodes, heatmapMetric);
+        }
+        heatmap.setWindow(cycle - heatmapWindow + 1, heatmapWindow);
+        for (int row = row0; row <= row1; row++) {
+            for (int col = col0; col <= col1; col++) {
+                Coordinate coord = new Coordinate(row, col);
+                double t = Math.min(1, heatmap.intensity(coord));
+                g.setFill(HEAT[(int) Math.round(t * (HEAT.length - 1))]);
+                // the gaps are filled too: at this size cells read as pixels
+                g.fillRect(ORIGIN + col * PITCH - GAP / 2.0, ORIGIN + row * PITCH - GAP / 2.0, PITCH, PITCH);
+            }
+        }
+        if (selected != null) {
+            g.setStroke(ROUTE);
+            g.setLineWidth(2 / zoom);
+            g.strokeRect(ORIGIN + selected.col() * PITCH, ORIGIN + selected.row() * PITCH, CELL_SIZE, CELL_SIZE);
+        }
+    }
+
+    private void drawCell(GraphicsContext g, Coordinate coord) {
+        double x = ORIGIN + coord.col() * PITCH;
+        double y = ORIGIN + coord.row() * PITCH;
+        g.setFill(CELL_FILL);
+        g.fillRect(x, y, CELL_SIZE, CELL_SIZE);
+        boolean isSelected = coord.equals(selected);
+        g.setStroke(isSelected ? ROUTE : fabric.typeAt(coord) == ModuleType.PE_MEM ? MEM_STROKE : CELL_STROKE);
+        g.setLineWidth(isSelected ? 2 : 1);
+        g.strokeRect(x + 0.5, y + 0.5, CELL_SIZE - 1, CELL_SIZE - 1);
+
+        PE pe = nodes.get(coord);
+        if (pe != null) {
+            g.setFill(Color.WHITE);
+            g.fillText(pe.labelAt(cycle), x + CELL_SIZE / 2.0, y + CELL_SIZE / 2.0, CELL_SIZE - 4);
+        }
+    }
+
+    /**
+     * Draws the routes of a PE at the current cycle, like FabricMatrixVisualizer.drawRoutes.
+     */
+    private void drawRoutes(GraphicsContext g, PE pe) {
+        long word = pe.packedRoutingAt(cycle);
+        if (!PackedRoutingStore.isPresent(word)) {
+            return;
+        }
+        Coordinate coord = pe.coord();
+        for (Direction dir : Direction.values()) {
+            if (!PackedRoutingStore.isConfigured(word, dir)) {
+                continue;
+            }
+            Coordinate neighbour = getNeighbourCoordinate(coord, dir);
+            if (PackedRoutingStore.hasInput(word, dir)) {
+                drawArrow(g, neighbour, getOppositeDir(dir), coord, dir);
+            }
+            if (PackedRoutingStore.hasOutput(word, dir)) {
+                drawArrow(g, coord, dir, neighbour, getOppositeDir(dir));
+            }
+        }
+    }
+
+    private void drawArrow(GraphicsContext g, Coordinate src, Direction srcDir, Coordinate dest, Direction destDir) {
+        double sx = anchorX(src, srcDir);
+        double sy = anchorY(src, srcDir);
+        double ex = anchorX(dest, destDir);
+        double ey = anchorY(dest, destDir);
+        double angle = Math.atan2(ey - sy, ex - sx);
+        g.strokeLine(sx, sy, ex, ey);
+        g.strokeLine(ex, ey, ex - ARROW_LENGTH * Math.cos(angle - ARROW_ANGLE),
+                ey - ARROW_LENGTH * Math.sin(angle - ARROW_ANGLE));
+        g.strokeLine(ex, ey, ex - ARROW_LENGTH * Math.cos(angle + ARROW_ANGLE),
+                ey - ARROW_LENGTH * Math.sin(angle + ARROW_ANGLE));
+    }
+
+    /**
+     * @return the x of the midpoint of a side of a cell; the cell may lie outside the fabric
+     */
+    private static double anchorX(Coordinate coord, Direction dir) {
+        double x = ORIGIN + coord.col() * PITCH;
+        return switch (dir) {
+            case NORTH, SOUTH -> x + CELL_SIZE / 2.0;
+            case WEST -> x;
+            case EAST -> x + CELL_SIZE;
+        };
+    }
+
+    private static double anchorY(Coordinate coord, Direction dir) {
+        double y = ORIGIN + coord.row() * PITCH;
+        return switch (dir) {
+            case EAST, WEST -> y + CELL_SIZE / 2.0;
+            case NORTH -> y;
+            case SOUTH -> y + CELL_SIZE;
+        };
+    }
+}
@@ -1,37 +1,49 @@
 package morpher.ui;
 
 import javafx.application.Platform;
-import javafx.geometry.Bounds;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Line;
 import javafx.scene.shape.LineTo;
 import javafx.scene.shape.MoveTo;
 import javafx.scene.shape.Path;
-import javafx.scene.shape.PathElement;
+import javafx.scene.shape.Rectangle;
 import javafx.scene.shape.StrokeLineJoin;
 import javafx.scene.text.Font;
 import morpher.ui.visualization.Coordinate;
+import morpher.ui.visualization.CyclePrefetcher;
+import morpher.ui.visualization.CycleStateLoader;
+import morpher.ui.visualization.DataMemoryLoader;
+import morpher.ui.visualization.DesignWatcher;
 import morpher.ui.visualization.FabricMatrix;
+import morpher.ui.visualization.FramePreparer;
 import morpher.ui.visualization.GridBuilder;
 import morpher.ui.visualization.MappingLoader;
 import morpher.ui.visualization.PE;
 import morpher.ui.visualization.PELoader;
-import morpher.ui.visualization.PortRouting;
-import morpher.ui.visualization.Routing;
+import morpher.ui.visualization.PEState;
+import morpher.ui.visualization.RenderFrame;
 import morpher.ui.visualization.RoutingLoader;
 import morpher.ui.visualization.utils.Direction;
-
-import java.util.EnumMap;
+import morpher.ui.visualization.utils.RenderMode;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import static morpher.ui.visualization.Coordinate.getNeighbourCoordinate;
-import static morpher.ui.visualization.utils.Direction.getOppositeDir;
 
 /**
  * A JavaFX component that visualizes a fabric matrix composed of processing elements (PEs).
@@ -41,18 +53,74 @@ import static morpher.ui.visualization.utils.Direction.getOppositeDir;
  * forward and backward through computation cycles.
  *
  * Use init(FabricMatrix, Map) to load a new matrix, and next(), prev() to navigate the cycles.
+ * Hovering over a PE shows its registers at the current cycle; clicking it keeps them in a panel.
+ * The states of the cycles the navigation is heading to are loaded ahead by a {@link CyclePrefetcher}.
+ * A playback tells the stride it steps by with goTo(int, double), so that the cycles loaded and
+ * prepared ahead are those it will show.
+ *
+ * The GridPane renderer is retained: each cell remembers the packed routing word it shows, and a step
+ * only updates the label and routes of the cells whose word differs at the new cycle. Route paths
+ * of cells that changed go back to a pool, hidden but still in the grid, and are reused for the
+ * next routes drawn, so stepping does not create or remove nodes once the pool is warm.
+ * The labels and route geometry of each cycle are computed on worker threads by a
+ * {@link FramePreparer}, ahead of the navigation; the FX thread only applies finished frames, and
+ * a cycle whose frame is not ready yet is shown as soon as it is.
+ *
+ * The fabric is drawn either as a GridPane of nodes or, for large fabrics, onto a {@link FabricCanvas};
+ * see setRenderMode(RenderMode). The initial mode is read from {@code -Dmorpher.renderer=grid|canvas}.
  */
 public class FabricMatrixVisualizer extends StackPane {
-    private final GridPane grid = new GridPane();
+    private static final Logger LOGGER = Logger.getLogger(FabricMatrixVisualizer.class.getName());
+
+    private final GridPane grid = new GridPane() {
+        @Override
+        protected void layoutChildren() {
+            super.layoutChildren();
+            anchorsLaidOut();
+        }
+    };
     private final GridBuilder gridBuilder = new GridBuilder(grid, this);;
     private FabricMatrix fabric;
     private Map<Coordinate,PE> nodes;
     private int curr;
     private int totalCycle = MappingLoader.get().getNumOfCycle();
+    /** The route paths shown by each cell, by row-major index. */
+    private final Map<Integer, List<Path>> routeNodes = new HashMap<>();
+    private final Deque<Path> pathPool = new ArrayDeque<>();
+    /** The label of each cell, by row-major index; created the first time the cell shows a PE. */
+    private Label[] labels = new Label[0];
+    /** The packed routing word each cell shows, valid for the cells set in {@code shown}. */
+    private long[] shownWords = new long[0];
+    private final BitSet shown = new BitSet();
+    private final FramePreparer frames = new FramePreparer();
+    /** The GridBuilder anchors version the frames are prepared with. */
+    private long framesAnchorsVersion = -1;
+    private int shownCycle = -1;
+    /** The number of frames applied to the grid that showed another cycle. */
+    private long gridCyclesShown;
+    /** The cycle rendered before the current one, -1 after init. */
+    private int previousCycle = -1;
+    private DesignWatcher watcher;
+    private static final long WATCH_DEBOUNCE_MS = 300;
+    private final Label statePanel = new Label();
+    private Coordinate selected;
+    private final CyclePrefetcher prefetcher = CyclePrefetcher.forCycleStates();
+    private final FabricCanvas canvas = new FabricCanvas();
+    private RenderMode renderMode = RenderMode.get(System.getProperty("morpher.renderer", "grid"));
+    private ScrollPane centeredIn;
 
     public FabricMatrixVisualizer() {
-        getChildren().add(grid);
+        getChildren().add(renderMode == RenderMode.CANVAS ? canvas : grid);
+        canvas.setOnCellClicked(coord -> select(coord.equals(selected) ? null : coord));
+        canvas.setTooltipText(this::stateText);
+        canvas.layoutBoundsProperty().addListener((o, ov, nv) -> gridBuilder.recenter());
         setAlignment(Pos.CENTER);
+        statePanel.getStyleClass().add("pe-state");
+        statePanel.setVisible(false);
+        statePanel.setMouseTransparent(true);
+        statePanel.setMaxSize(USE_PREF_SIZE, USE_PREF_SIZE);
+        StackPane.setAlignment(statePanel, Pos.TOP_LEFT);
+        getChildren().add(statePanel);
         gridBuilder.buildGrid(5, 5);
         // setPosition();
     }
@@ -74,9 +142,60 @@ public class FabricMatrixVisualizer extends StackPane {
         this.fabric = fabric;
         this.nodes = nodes;
         this.curr = 0;
+        this.previousCycle = -1;
+        selected = null;
+        build();
+        prefetcher.reset(CycleStateLoader.get().getCycleCount());
+        prefetcher.navigated(curr);
+        render(0);
+    }
+
+    /**
+     * Switches between drawing the fabric as a GridPane of nodes and onto a canvas, keeping
+     * the cycle and the selection.
+     *
+     * @param mode the renderer to use
+     */
+    public void setRenderMode(RenderMode mode) {
+        if (mode == renderMode) {
+            return;
+        }
+        renderMode = mode;
+        getChildren().set(0, mode == RenderMode.CANVAS ? canvas : grid);
+        if (fabric != null && nodes != null) {
+            build();
+            render(0);
+        }
+        gridBuilder.recenter();
+    }
+
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * Builds the view of the current fabric for the current renderer; the grid of the other
+     * renderer is dropped so that its nodes do not stay in memory.
+     */
+    private void build() {
         grid.getChildren().clear();
-        gridBuilder.buildGrid(fabric.rows(), fabric.cols());
-        render();
+        routeNodes.clear();
+        pathPool.clear();
+        int cells = fabric.rows() * fabric.cols();
+        labels = new Label[renderMode == RenderMode.CANVAS ? 0 : cells];
+        shownWords = new long[labels.length];
+        shown.clear();
+        if (renderMode == RenderMode.CANVAS) {
+            canvas.setFabric(fabric, nodes);
+            canvas.setSelected(selected);
+        } else {
+            gridBuilder.buildGrid(fabric);
+            installStateHandlers();
+            resetFrames();
+            if (selected != null) {
+                cellBackground(selected).getStyleClass().add("selected");
+            }
+        }
     }
 
     /**
@@ -88,6 +207,8 @@ public class FabricMatrixVisualizer extends StackPane {
      */
     public static void reload(FabricMatrixVisualizer viz, java.nio.file.Path targetDir) {
         RoutingLoader.get().refresh(targetDir);
+        CycleStateLoader.get().refresh(targetDir);
+        DataMemoryLoader.get().refresh(targetDir);
         PELoader.get().refresh();
         Platform.runLater(() -> {
             FabricMatrix fabric = MappingLoader.get().getFabricMatrix();
@@ -96,43 +217,184 @@ public class FabricMatrixVisualizer extends StackPane {
         });
     }
 
+    /**
+     * Reloads the visualizer from the given design directory and keeps watching it:
+     * whenever `.prog` files change, only those PEs are re-parsed, replaced and re-rendered.
+     *
+     * @param designDir the directory containing .prog files
+     * @throws IOException if the directory cannot be watched
+     */
+    public void watch(java.nio.file.Path designDir) throws IOException {
+        stopWatching();
+        reload(this, designDir);
+        watcher = new DesignWatcher(designDir, WATCH_DEBOUNCE_MS, RoutingLoader::isRoutingFile, changed -> {
+            Set<Coordinate> coords = RoutingLoader.get().reload(changed);
+            Platform.runLater(() -> {
+                PELoader.get().refresh(coords);
+                renderCells(PELoader.get().getNodes(), coords);
+            });
+        });
+        watcher.start();
+    }
+
+    /**
+     * Stops watching the design directory, if a watch is active.
+     */
+    public void stopWatching() {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot close the design watcher: {0}", e.getMessage());
+        }
+        watcher = null;
+    }
+
     /**
      * Renders the current state of the grid, including labels and routing paths,
      * based on the current cycle.
+     *
+     * @param stride the cycles the navigation moves by per step, negative backward, or 0 if
+     *               unknown, in which case a step of one cycle since the previous render sets it
      */
-    private void render() {
+    private void render(double stride) {
         if (fabric == null || nodes == null) {
             return;
         }
-        grid.getChildren().removeIf(n -> n instanceof Label || n instanceof Path || n instanceof Line);
-        grid.getChildren().forEach(node -> {
-            if (node instanceof StackPane sp && sp.getChildren().size() > 1) {
-                sp.getChildren().remove(1);
+        if (stride == 0 && previousCycle >= 0 && Math.abs(curr - previousCycle) == 1) {
+            stride = curr - previousCycle;
+        }
+        previousCycle = curr;
+        if (renderMode == RenderMode.CANVAS) {
+            canvas.setCycle(curr);
+        } else {
+            RenderFrame frame = frames.getIfReady(curr);
+            if (frame != null) {
+                apply(frame);
+            } else {
+                frames.request(curr).thenAcceptAsync(this::applyIfCurrent, Platform::runLater);
             }
-        });
+            frames.prepareAround(curr, stride, totalCycle + 1);
+        }
+        updateStatePanel();
 
-        for (int row = 0; row < fabric.rows(); row++) {
-            for (int col = 0; col < fabric.cols(); col++) {
-                Coordinate coord = new Coordinate(row, col);
-                StackPane cell = gridBuilder.getCell(row, col);
+        ScrollPane sp = gridBuilder.findScrollPane(this);
+        if (sp != null && sp != centeredIn) {
+            centeredIn = sp;
+            javafx.application.Platform.runLater(() -> gridBuilder.hookCentering(sp));
+        }
+    }
+
+    /**
+     * Switches to the PEs of a partial refresh and re-renders only the given cells at the
+     * current cycle, leaving the rest of the grid as is.
+     *
+     * @param nodes the PEs after PELoader.refresh(Collection), which replaces the node map
+     * @param coords the coordinates of the cells to redraw
+     */
+    public void renderCells(Map<Coordinate, PE> nodes, Collection<Coordinate> coords) {
+        if (fabric == null || this.nodes == null) {
+            return;
+        }
+        this.nodes = nodes;
+        if (renderMode == RenderMode.CANVAS) {
+            canvas.refresh(nodes);
+            return;
+        }
+        // the PEs were replaced: their frames are stale, and their words may match but not their content
+        resetFrames();
+        for (Coordinate coord : coords) {
+            if (coord.row() < fabric.rows() && coord.col() < fabric.cols()) {
+                shown.clear(coord.row() * fabric.cols() + coord.col());
+            }
+        }
+        render(0);
+    }
+
+    /**
+     * Starts preparing frames from the current PEs and port anchors, dropping the prepared ones.
+     */
+    private void resetFrames() {
+        framesAnchorsVersion = gridBuilder.getAnchorsVersion();
+        frames.reset(fabric, nodes, gridBuilder.getPortAnchors());
+    }
 
-                PE node = nodes.get(coord);
-                Label lab = new Label(node.labelAt(curr));
-                if (node.coord().row() == 0 && node.coord().col() == 0) {
-                    System.out.println(node.coord() + " " + node.labelAt(curr));
+    /**
+     * Called after each layout of the grid: if it moved the cells, the routes shown and prepared
+     * point at stale anchors, e.g. those drawn before the grid was first laid out.
+     */
+    private void anchorsLaidOut() {
+        if (renderMode == RenderMode.GRID && fabric != null && nodes != null
+                && gridBuilder.getAnchorsVersion() != framesAnchorsVersion) {
+            resetFrames();
+            shown.clear();
+            render(0);
+        }
+    }
+
+    private void applyIfCurrent(RenderFrame frame) {
+        // a frame of a cycle left, or of a layout replaced, while it was built is not cached
+        if (renderMode == RenderMode.GRID && frame.cycle() == curr && frames.getIfReady(curr) == frame) {
+            apply(frame);
+        }
+    }
+
+    /**
+     * Brings the grid to a frame: the label and route paths of each cell whose packed routing word
+     * differs from the one it shows are replaced; the word determines both.
+     *
+     * @param frame the frame of the current cycle
+     */
+    private void apply(RenderFrame frame) {
+        int cols = fabric.cols();
+        for (int cell = 0; cell < frame.cellCount(); cell++) {
+            long word = frame.word(cell);
+            if (shown.get(cell) && shownWords[cell] == word) {
+                continue;
+            }
+            shownWords[cell] = word;
+            shown.set(cell);
+
+            List<Path> oldRoutes = routeNodes.remove(cell);
+            if (oldRoutes != null) {
+                for (Path path : oldRoutes) {
+                    path.setVisible(false);
+                    pathPool.push(path);
                 }
+            }
+
+            Label lab = labels[cell];
+            String text = frame.label(cell);
+            if (text == null) {
+                if (lab != null) {
+                    lab.setVisible(false);
+                }
+                continue;
+            }
+            if (lab == null) {
+                lab = new Label();
                 lab.setTextFill(Color.WHITE);
                 lab.setFont(Font.font(12));
-                cell.getChildren().add(lab);
+                labels[cell] = lab;
+                gridBuilder.getCell(cell / cols, cell % cols).getChildren().add(lab);
+            }
+            lab.setText(text);
+            lab.setVisible(true);
 
-                drawRoutes(node);
+            if (frame.firstArrow(cell) < frame.endArrow(cell)) {
+                List<Path> routes = new ArrayList<>(frame.endArrow(cell) - frame.firstArrow(cell));
+                for (int arrow = frame.firstArrow(cell); arrow < frame.endArrow(cell); arrow++) {
+                    routes.add(drawArrow(frame, arrow));
+                }
+                routeNodes.put(cell, routes);
             }
         }
-
-        ScrollPane sp = gridBuilder.findScrollPane(this);
-        if (sp != null) {
-            javafx.application.Platform.runLater(() -> gridBuilder.hookCentering(sp));
+        if (frame.cycle() != shownCycle) {
+            gridCyclesShown++;
         }
+        shownCycle = frame.cycle();
     }
 
     /**
@@ -142,7 +404,8 @@ public class FabricMatrixVisualizer extends StackPane {
     public void next() {
         if (nodes != null && curr < totalCycle) {
             this.curr++;
-            render();
+            prefetcher.navigated(curr);
+            render(1);
         }
     }
 
@@ -152,7 +415,8 @@ public class FabricMatrixVisualizer extends StackPane {
     public void prev() {
         if (nodes != null && curr > 0) {
             this.curr--;
-            render();
+            prefetcher.navigated(curr);
+            render(-1);
         }
     }
 
@@ -161,135 +425,159 @@ public class FabricMatrixVisualizer extends StackPane {
     }
 
     /**
-     * Draws directional routing lines for the given PE at the current cycle.
+     * @return the last cycle that can be shown
+     */
+    public int getLastCycle() {
+        return totalCycle;
+    }
+
+    /**
+     * Counts the cycles actually shown: a cycle navigated to is counted once its labels and routes
+     * are on screen, and not at all if the navigation moved on before its frame was ready.
      *
-     * @param pe the processing element to draw routes for
+     * @return the number of times the view showed another cycle, over both renderers
      */
-    private void drawRoutes(PE pe) {
-        Routing r = pe.routingAt(curr);
-        Coordinate currCoord = pe.coord();
+    public long getCyclesShown() {
+        return gridCyclesShown + canvas.getCyclesDrawn();
+    }
 
-        if (r == null) {
-            return;
-        }
-        EnumMap<Direction, PortRouting> ports = r.getPorts();
-        for (Direction dir: Direction.values()) {
-            PortRouting pr = ports.get(dir);
-            if (pr == null) {
-                continue;
-            }
-            Coordinate neighbourCoord = getNeighbourCoordinate(currCoord, dir);
-            if (pr.haveInput()) {
-                drawDirectLine(neighbourCoord, getOppositeDir(dir), currCoord, dir);
-            }
-            if (pr.haveOutput()) {
-                drawDirectLine(currCoord, dir, neighbourCoord, getOppositeDir(dir));
-            }
-        }
+    /**
+     * @return the prefetcher loading the cycles ahead of the navigation, with its hit/miss counters
+     */
+    public CyclePrefetcher getPrefetcher() {
+        return prefetcher;
     }
 
     /**
-     * Draws a direct line between two PE ports with arrowhead, indicating data flow from src to dest.
+     * Moves to the given cycle, clamped to the cycles of the mapping, and re-renders the grid.
      *
-     * @param src source PE coordinate
-     * @param srcDir port side on source PE
-     * @param dest destination PE coordinate
-     * @param destDir port side on destination PE
+     * @param cycle the cycle to show
      */
-    private void drawDirectLine(Coordinate src, Direction srcDir, Coordinate dest, Direction destDir) {
-        double[] srcPos = getCoordinate(src, srcDir);
-        double[] destPos = getCoordinate(dest, destDir);
-        double sx = srcPos[0];
-        double sy = srcPos[1];
-        double dx = destPos[0];
-        double dy = destPos[1];
-
-        Path path = new Path(
-                new MoveTo(sx, sy),
-                new LineTo(dx, dy)
-        );
-
-        path.setStroke(Color.web("#ff9c23"));
-        path.setStrokeWidth(2);
-        path.setStrokeLineJoin(StrokeLineJoin.MITER);
-        addArrowHead(path);
-        path.setManaged(false);
-        grid.getChildren().add(path);
+    public void goTo(int cycle) {
+        goTo(cycle, 0);
     }
 
     /**
-     * Get middle point coordinate in specific side for a PE
-     * @param coord coordinate of pe
-     * @param dir side
-     * @return coordinate of middle point.
+     * Moves to the given cycle as one step of a navigation that moves by {@code stride} cycles
+     * per step, e.g. a playback, and prepares the cycles of its next steps.
+     *
+     * @param cycle the cycle to show
+     * @param stride the cycles per step, negative backward, or 0 if unknown
      */
-    public double[] getCoordinate(Coordinate coord, Direction dir) {
-        double[] pos = new double[2];
-        StackPane cell = gridBuilder.getCell(coord.row(), coord.col());
-        Bounds bounds = cell.getBoundsInParent();
-        double width = bounds.getWidth();
-        double height = bounds.getHeight();
-        double x = bounds.getMinX();
-        double y = bounds.getMinY();
-
-        switch (dir) {
-        case NORTH:
-            pos[0] = x + width / 2;
-            pos[1] = y;
-            break;
-        case SOUTH:
-            pos[0] = x + width / 2;
-            pos[1] = y + height;
-            break;
-        case WEST:
-            pos[0] = x;
-            pos[1] = y + height / 2;
-            break;
-        case EAST:
-            pos[0] = x + width;
-            pos[1] = y + height / 2;
-            break;
+    public void goTo(int cycle, double stride) {
+        if (nodes != null) {
+            this.curr = Math.max(0, Math.min(cycle, totalCycle));
+            if (stride == 0) {
+                prefetcher.navigated(curr);
+            } else {
+                prefetcher.navigated(curr, stride);
+            }
+            render(stride);
         }
-        return pos;
     }
 
     /**
-     * Adds an arrowhead to the end of a given path, pointing in the direction of data flow.
-     *
-     * @param p the path to modify
+     * Attaches to every cell a tooltip with the PE's state at the current cycle, computed when
+     * it is shown, and a click handler that selects the PE.
      */
-    private void addArrowHead(Path p) {
-        List<PathElement> els = p.getElements();
-        if (els.size() < 2) return;
-
-        PathElement last = els.get(els.size() - 1);
-        PathElement prev = els.get(els.size() - 2);
+    private void installStateHandlers() {
+        for (int row = 0; row < fabric.rows(); row++) {
+            for (int col = 0; col < fabric.cols(); col++) {
+                Coordinate coord = new Coordinate(row, col);
+                StackPane cell = gridBuilder.getCell(row, col);
+                Tooltip tip = new Tooltip();
+                // tooltips live in their own window and do not see the grid stylesheet
+                tip.setFont(Font.font("Monospaced", 11));
+                tip.setOnShowing(e -> tip.setText(stateText(coord)));
+                Tooltip.install(cell, tip);
+                cell.setOnMouseClicked(e -> select(coord.equals(selected) ? null : coord));
+            }
+        }
+    }
 
-        if (!(last instanceof LineTo end)) return;
+    /**
+     * Selects a PE, whose state is then shown in the state panel at every cycle.
+     *
+     * @param coord the PE to select, or null to clear the selection
+     */
+    public void select(Coordinate coord) {
+        if (renderMode == RenderMode.CANVAS) {
+            selected = coord;
+            canvas.setSelected(coord);
+            updateStatePanel();
+            return;
+        }
+        if (selected != null) {
+            cellBackground(selected).getStyleClass().remove("selected");
+        }
+        selected = coord;
+        if (selected != null) {
+            cellBackground(selected).getStyleClass().add("selected");
+        }
+        updateStatePanel();
+    }
 
-        double ex = end.getX(), ey = end.getY();
-        double sx, sy;
+    private Rectangle cellBackground(Coordinate coord) {
+        return (Rectangle) gridBuilder.getCell(coord.row(), coord.col()).getChildren().get(0);
+    }
 
-        if (prev instanceof LineTo pl) {
-            sx = pl.getX(); sy = pl.getY();
-        } else if (prev instanceof MoveTo pm) {
-            sx = pm.getX(); sy = pm.getY();
-        } else {
-            return;
+    private void updateStatePanel() {
+        statePanel.setVisible(selected != null);
+        if (selected != null) {
+            statePanel.setText(stateText(selected));
         }
+    }
 
-        double angle = Math.atan2(ey - sy, ex - sx);
-        double len   = 8, delta = Math.toRadians(35);
+    /**
+     * @return the register dump of a PE at the current cycle, loaded on demand
+     */
+    private String stateText(Coordinate coord) {
+        PEState state = CycleStateLoader.get().get(curr, coord);
+        if (state == null) {
+            return "PE (" + coord.row() + "," + coord.col() + "): no state recorded for cycle " + curr;
+        }
+        return state.describe();
+    }
 
-        double ax1 = ex - len * Math.cos(angle - delta);
-        double ay1 = ey - len * Math.sin(angle - delta);
-        double ax2 = ex - len * Math.cos(angle + delta);
-        double ay2 = ey - len * Math.sin(angle + delta);
+    /**
+     * Draws an arrow of a frame, a line between two PE ports with arrowhead, indicating data flow.
+     * The path is taken from the pool if one is free.
+     *
+     * @param frame the frame
+     * @param arrow the index of the arrow in the frame
+     * @return the drawn path
+     */
+    private Path drawArrow(RenderFrame frame, int arrow) {
+        Path path = pathPool.poll();
+        if (path == null) {
+            path = new Path();
+            path.setStroke(Color.web("#ff9c23"));
+            path.setStrokeWidth(2);
+            path.setStrokeLineJoin(StrokeLineJoin.MITER);
+            path.setManaged(false);
+            grid.getChildren().add(path);
+        }
+        double ex = frame.arrow(arrow, 2);
+        double ey = frame.arrow(arrow, 3);
+        path.getElements().setAll(
+                new MoveTo(frame.arrow(arrow, 0), frame.arrow(arrow, 1)),
+                new LineTo(ex, ey),
+                new MoveTo(ex, ey),
+                new LineTo(frame.arrow(arrow, 4), frame.arrow(arrow, 5)),
+                new MoveTo(ex, ey),
+                new LineTo(frame.arrow(arrow, 6), frame.arrow(arrow, 7)));
+        path.setVisible(true);
+        return path;
+    }
 
-        els.add(new MoveTo(ex, ey));
-        els.add(new LineTo(ax1, ay1));
-        els.add(new MoveTo(ex, ey));
-        els.add(new LineTo(ax2, ay2));
+    /**
+     * Get middle point coordinate in specific side for a PE
+     * @param coord coordinate of pe
+     * @param dir side
+     * @return coordinate of middle point.
+     */
+    public double[] getCoordinate(Coordinate coord, Direction dir) {
+        return gridBuilder.getPortAnchor(coord, dir);
     }
 
     /**
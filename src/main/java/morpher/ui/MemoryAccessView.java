@@ -0,0 +1,227 @@
+package morpher.ui;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.geometry.Pos;
+import javafx.scene.chart.AreaChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import morpher.ui.visualization.DataMemoryLoader;
+import morpher.ui.visualization.DataMemoryLoader;
+import morpher.ui.visualization.MemoryAccessAnalysis;
+
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A UI component showing how the data memory ports are used over a simulation trace.
+ *
+ * The chart plots the share of the peak port bandwidth used in each cycle; long traces are
+ * bucketed so that at most MAX_POINTS points are drawn, each showing the busiest cycle of its
+ * bucket. The list below it shows the bank conflicts, port contention and AGU stream mismatches
+ * found. The list at the bottom shows the address stream of the AGU chosen above it: the cycle,
+ * byte address and instruction of each access it issued. Double-clicking a conflict or an access
+ * jumps to its cycle through the handler set with setOnJumpToCycle(IntConsumer).
+ *
+ * The trace is analyzed on a background thread.
+ */
+public class MemoryAccessView extends VBox {
+    private static final int MAX_POINTS = 512;
+
+    private final Label lblSummary = new Label();
+    private final Button btnRefresh = new Button("Analyze");
+    private final NumberAxis xAxis = new NumberAxis();
+    private final NumberAxis yAxis = new NumberAxis(0, 100, 25);
+    private final AreaChart<Number, Number> chart = new AreaChart<>(xAxis, yAxis);
+    private final ListView<MemoryAccessAnalysis.Conflict> conflicts = new ListView<>();
+    private final ChoiceBox<String> aguChoice = new ChoiceBox<>();
+    private final Label lblAgu = new Label();
+    private final ListView<Integer> issues = new ListView<>();
+
+    private MemoryAccessAnalysis analysis;
+    private int[] issueCycles = new int[0];
+    private int[] issueAddresses = new int[0];
+    private int shownAgu = -1;
+
+    private IntConsumer onJumpToCycle;
+    private int generation;
+
+    public MemoryAccessView() {
+        HBox bar = new HBox(10, lblSummary, btnRefresh);
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.getStyleClass().add("visualization-bar");
+        HBox.setHgrow(lblSummary, Priority.ALWAYS);
+        lblSummary.setMaxWidth(Double.MAX_VALUE);
+
+        xAxis.setLabel("Cycle");
+        xAxis.setForceZeroInRange(true);
+        yAxis.setLabel("Port bandwidth (%)");
+        chart.setLegendVisible(false);
+        chart.setCreateSymbols(false);
+        chart.setAnimated(false);
+        chart.getStyleClass().add("bandwidth-chart");
+        VBox.setVgrow(chart, Priority.ALWAYS);
+
+        conflicts.setPrefHeight(150);
+        conflicts.setPlaceholder(new Label("No conflicts"));
+        conflicts.setOnMouseClicked(e -> {
+            MemoryAccessAnalysis.Conflict conflict = conflicts.getSelectionModel().getSelectedItem();
+            if (e.getClickCount() == 2 && conflict != null && onJumpToCycle != null) {
+                onJumpToCycle.accept(conflict.cycle());
+            }
+        });
+
+        HBox aguBar = new HBox(10, aguChoice, lblAgu);
+        aguBar.setAlignment(Pos.CENTER_LEFT);
+        aguBar.getStyleClass().add("visualization-bar");
+        issues.setPrefHeight(150);
+        issues.setPlaceholder(new Label("No AGU accesses"));
+        issues.setCellFactory(list -> new IssueCell());
+        issues.setOnMouseClicked(e -> {
+            Integer issue = issues.getSelectionModel().getSelectedItem();
+            if (e.getClickCount() == 2 && issue != null && onJumpToCycle != null) {
+                onJumpToCycle.accept(issueCycles[issue]);
+            }
+        });
+        aguChoice.getSelectionModel().selectedIndexProperty().addListener((obs, old, agu) -> showAgu(agu.intValue()));
+
+        getStyleClass().add("memory-view");
+        setSpacing(5);
+        getChildren().addAll(bar, chart, conflicts, aguBar, issues);
+        btnRefresh.setOnAction(e -> refresh());
+        refresh();
+    }
+
+    /**
+     * Sets the handler called with a cycle number when the user asks to jump to it.
+     *
+     * @param handler the handler, typically moving the FabricMatrixVisualizer to the cycle
+     */
+    public void setOnJumpToCycle(IntConsumer handler) {
+        this.onJumpToCycle = handler;
+    }
+
+    /**
+     * Analyzes the design directory currently read by the DataMemoryLoader in the background and
+     * shows the result when it is ready. The result of a previous analysis still running is dropped.
+     */
+    public void refresh() {
+        Path dir = DataMemoryLoader.get().getDesignDirectory();
+        int gen = ++generation;
+        lblSummary.setText("Analyzing " + dir.getFileName() + "...");
+        btnRefresh.setDisable(true);
+        Thread thread = new Thread(() -> {
+            try {
+                MemoryAccessAnalysis analysis = MemoryAccessAnalysis.analyze(dir);
+                Platform.runLater(() -> {
+                    if (gen == generation) {
+                        show(analysis);
+                    }
+                });
+            } catch (Exception e) {
+                Platform.runLater(() -> {
+                    if (gen != generation) {
+                        return;
+                    }
+                    lblSummary.setText("Cannot analyze " + dir.getFileName() + ": " + e.getMessage());
+                    btnRefresh.setDisable(false);
+                });
+            }
+        }, "memory-access-analysis");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void show(MemoryAccessAnalysis analysis) {
+        this.analysis = analysis;
+        lblSummary.setText(analysis.toString());
+        btnRefresh.setDisable(false);
+
+        int cycles = analysis.cycles();
+        int bucket = Math.max(1, (cycles + MAX_POINTS - 1) / MAX_POINTS);
+        List<XYChart.Data<Number, Number>> points = new ArrayList<>(cycles / bucket + 1);
+        for (int from = 0; from < cycles; from += bucket) {
+            double peak = 0;
+            for (int c = from; c < Math.min(cycles, from + bucket); c++) {
+                peak = Math.max(peak, analysis.utilization(c));
+            }
+            points.add(new XYChart.Data<>(from, 100 * peak));
+        }
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+        series.getData().setAll(points);
+        chart.getData().setAll(List.of(series));
+
+        conflicts.getItems().setAll(analysis.conflicts());
+
+        aguChoice.getItems().setAll(analysis.programs().stream().map(p -> "agu" + p.index()).toList());
+        if (aguChoice.getItems().isEmpty()) {
+            showAgu(-1);
+        } else {
+            aguChoice.getSelectionModel().selectFirst();
+            showAgu(0);
+        }
+    }
+
+    /**
+     * Lists the accesses issued by an AGU.
+     *
+     * @param agu the position of the AGU in the analysis programs, -1 for none
+     */
+    private void showAgu(int agu) {
+        shownAgu = agu;
+        issueCycles = agu < 0 ? new int[0] : analysis.issueCycles(agu);
+        issueAddresses = agu < 0 ? new int[0] : analysis.issueAddresses(agu);
+        int count = issueCycles.length;
+        if (agu < 0) {
+            lblAgu.setText("No AGU");
+            issues.getItems().clear();
+            return;
+        }
+        int expected = analysis.programs().get(agu).accessCount();
+        lblAgu.setText(String.format("%d of %s accesses, on %s", count,
+                expected < 0 ? "?" : Integer.toString(expected), String.join(", ", analysis.portsOf(agu))));
+        // the access positions are computed on access rather than stored, one Integer per visible cell
+        issues.setItems(FXCollections.observableList(new AbstractList<>() {
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        }));
+    }
+
+    /**
+     * Renders one access of the AGU shown: its cycle, byte address and instruction.
+     */
+    private class IssueCell extends ListCell<Integer> {
+        IssueCell() {
+            getStyleClass().add("memory-row");
+        }
+
+        @Override
+        protected void updateItem(Integer issue, boolean empty) {
+            super.updateItem(issue, empty);
+            if (empty || issue == null || issue >= issueCycles.length) {
+                setText(null);
+                return;
+            }
+            setText(String.format("cycle %6d  0x%04x  %s", issueCycles[issue], issueAddresses[issue],
+                    analysis.issueInstruction(shownAgu, issue)));
+        }
+    }
+}
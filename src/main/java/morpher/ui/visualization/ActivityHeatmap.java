@@ -0,0 +1,140 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.Direction;
+import morpher.ui.visualization.utils.HeatmapMetric;
+import morpher.ui.visualization.utils.OpcodeCategory;
+
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The activity of every PE of a fabric summed over a window of cycles, for drawing the fabric as
+ * a heatmap when it is too small on screen for labels and routes.
+ *
+ * What a PE adds per cycle is given by a {@link HeatmapMetric}, read from its packed routing word
+ * and, for the operation, the {@link Opcode} metadata of the {@link OpcodeRegistry}.
+ * The counts are computed with a parallel stream over the cells. Moving the window only adds the
+ * cycles that entered it and subtracts those that left, so stepping a trailing window by one cycle
+ * costs two cycles of work whatever its length; a window that does not overlap the previous one is
+ * summed from scratch.
+ */
+public final class ActivityHeatmap {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final FabricMatrix fabric;
+    private final PE[] pes;
+    private final HeatmapMetric metric;
+    private final int[] counts;
+    private int start;
+    private int length;
+
+    /**
+     * Creates an empty heatmap; set its window with setWindow(int, int).
+     *
+     * @param fabric the fabric layout
+     * @param nodes the PEs; cells without one stay at 0
+     * @param metric what a PE adds per cycle
+     */
+    public ActivityHeatmap(FabricMatrix fabric, Map<Coordinate, PE> nodes, HeatmapMetric metric) {
+        this.fabric = fabric;
+        this.metric = metric;
+        this.pes = new PE[fabric.rows() * fabric.cols()];
+        for (int cell = 0; cell < pes.length; cell++) {
+            pes[cell] = nodes.get(new Coordinate(cell / fabric.cols(), cell % fabric.cols()));
+        }
+        this.counts = new int[pes.length];
+    }
+
+    /**
+     * Moves the window to the cycles [start, start + length); cycles before 0 are left out.
+     *
+     * @param start the first cycle
+     * @param length the number of cycles
+     */
+    public void setWindow(int start, int length) {
+        int end = start + Math.max(0, length);
+        start = Math.max(0, start);
+        end = Math.max(start, end);
+        int oldEnd = this.start + this.length;
+        if (start >= oldEnd || end <= this.start) {
+            IntStream.range(0, counts.length).parallel().forEach(i -> counts[i] = 0);
+            add(start, end, 1);
+        } else {
+            add(this.start, start, -1);
+            add(start, this.start, 1);
+            add(oldEnd, end, 1);
+            add(end, oldEnd, -1);
+        }
+        this.start = start;
+        this.length = end - start;
+    }
+
+    /**
+     * Adds the values of the cycles [from, to) to the counts, times sign; nothing if to <= from.
+     */
+    private void add(int from, int to, int sign) {
+        if (to <= from) {
+            return;
+        }
+        IntStream.range(0, counts.length).parallel().forEach(i -> {
+            PE pe = pes[i];
+            if (pe == null) {
+                return;
+            }
+            int sum = 0;
+            for (int cycle = from; cycle < to; cycle++) {
+                sum += value(pe.packedRoutingAt(cycle));
+            }
+            counts[i] += sign * sum;
+        });
+    }
+
+    /**
+     * @return what a PE with the given packed routing word adds in its cycle
+     */
+    private int value(long word) {
+        if (!PackedRoutingStore.isPresent(word)) {
+            return 0;
+        }
+        return switch (metric) {
+            case ACTIVITY -> OpcodeRegistry.get().get(PackedRoutingStore.opCodeId(word)).category()
+                    == OpcodeCategory.CONTROL ? 0 : 1;
+            case MEMORY -> OpcodeRegistry.get().get(PackedRoutingStore.opCodeId(word)).memory() ? 1 : 0;
+            case LINKS -> {
+                int links = 0;
+                for (Direction dir : DIRECTIONS) {
+                    if (PackedRoutingStore.hasOutput(word, dir)) {
+                        links++;
+                    }
+                }
+                yield links;
+            }
+        };
+    }
+
+    public HeatmapMetric getMetric() {
+        return metric;
+    }
+
+    public int getWindowStart() {
+        return start;
+    }
+
+    public int getWindowLength() {
+        return length;
+    }
+
+    /**
+     * @return the sum over the window for a cell
+     */
+    public int count(Coordinate coord) {
+        return counts[coord.row() * fabric.cols() + coord.col()];
+    }
+
+    /**
+     * @return the sum over the window for a cell, as a fraction of the most it could be
+     */
+    public double intensity(Coordinate coord) {
+        return length == 0 ? 0 : (double) count(coord) / (length * metric.maxPerCycle());
+    }
+}
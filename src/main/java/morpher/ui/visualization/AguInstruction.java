@@ -0,0 +1,88 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.MemoryAccessMode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One instruction of an address generation unit (AGU), as listed in `agu<n>.cm` and in the
+ * per-cycle `cycle_N/agu<n>` states.
+ *
+ * Each access reads or writes {@code widthBytes} bytes at the instruction's address register,
+ * which then advances by {@code stride} elements.
+ *
+ * @param store true for STORE, false for LOAD
+ * @param mode the addressing mode, e.g. "STRIDED"
+ * @param widthBytes the number of bytes accessed, e.g. 2 for B16
+ * @param stride the address step in elements of {@code widthBytes}
+ */
+public record AguInstruction(boolean store, String mode, int widthBytes, int stride) {
+    /**
+     * Parses an instruction written either as in the `.cm` file ("LOAD, STRIDED, B16, 1") or as
+     * in a cycle state ("Instruction { inst_type: LOAD, inst_mode: STRIDED, data_width: B16,
+     * stride: 1 }").
+     *
+     * @param text the instruction
+     * @return the instruction
+     * @throws IllegalArgumentException if the text is not an AGU instruction
+     */
+    public static AguInstruction parse(String text) {
+        String s = text.trim();
+        String type;
+        String mode;
+        String width;
+        String stride;
+        if (s.startsWith("Instruction")) {
+            int open = s.indexOf('{');
+            int close = s.lastIndexOf('}');
+            if (open < 0 || close < open) {
+                throw new IllegalArgumentException("Bad AGU instruction: " + text);
+            }
+            Map<String, String> fields = new HashMap<>();
+            for (String field : s.substring(open + 1, close).split(",")) {
+                int colon = field.indexOf(':');
+                if (colon > 0) {
+                    fields.put(field.substring(0, colon).trim(), field.substring(colon + 1).trim());
+                }
+            }
+            type = fields.get("inst_type");
+            mode = fields.get("inst_mode");
+            width = fields.get("data_width");
+            stride = fields.get("stride");
+        } else {
+            String[] parts = s.split(",");
+            if (parts.length < 4) {
+                throw new IllegalArgumentException("Bad AGU instruction: " + text);
+            }
+            type = parts[0].trim();
+            mode = parts[1].trim();
+            width = parts[2].trim();
+            stride = parts[3].trim();
+        }
+        if (type == null || mode == null || width == null || stride == null || !width.startsWith("B")) {
+            throw new IllegalArgumentException("Bad AGU instruction: " + text);
+        }
+        return new AguInstruction("STORE".equalsIgnoreCase(type), mode,
+                Integer.parseInt(width.substring(1)) / Byte.SIZE, Integer.parseInt(stride));
+    }
+
+    /**
+     * @return the port mode of the accesses, e.g. READ16 for "LOAD, ..., B16"
+     */
+    public MemoryAccessMode accessMode() {
+        return MemoryAccessMode.get((store ? "WRITE" : "READ") + widthBytes * Byte.SIZE);
+    }
+
+    /**
+     * @return the address step between two accesses, in bytes
+     */
+    public int step() {
+        return stride * widthBytes;
+    }
+
+    @Override
+    public String toString() {
+        return (store ? "STORE" : "LOAD") + ", " + mode + ", B" + widthBytes * Byte.SIZE + ", " + stride;
+    }
+}
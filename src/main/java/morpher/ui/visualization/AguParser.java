@@ -0,0 +1,180 @@
+package morpher.ui.visualization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parser for the address generation unit files of a design directory or trace archive.
+ *
+ * `agu<n>` lists the configuration in sections, followed by its encoding:
+ * <pre>
+ *   CM:
+ *   LOAD, STRIDED, B16, 1
+ *
+ *   ARF:
+ *   0
+ *
+ *   MAX COUNT:
+ *   4
+ *   00010001
+ * </pre>
+ * The lines after the MAX COUNT value are the binary encoding of the CM and ARF sections, which is
+ * also what `agu<n>.cm` and `agu<n>.arf` contain. The text sections are used when present; the
+ * binary files are decoded otherwise. A CM word is 8 bits, most significant first:
+ * <pre>
+ *   bit 7     type: 0 LOAD, 1 STORE
+ *   bit 6     mode: 0 STRIDED
+ *   bits 5-4  data width: 00 B8, 01 B16, 10 B32, 11 B64
+ *   bits 3-0  stride
+ * </pre>
+ * and an ARF line is an unsigned binary address. This layout reproduces the text sections of the
+ * bundled designs.
+ *
+ * The per-cycle state `cycle_N/agu<n>` is a list of "name: value" lines:
+ * <pre>
+ *   PC: 0
+ *   CM: [Instruction { inst_type: LOAD, ... }]
+ *   ARF: [2]
+ *   MAX COUNT: 4
+ *   COUNT: 1
+ * </pre>
+ */
+final class AguParser {
+    private AguParser() {
+    }
+
+    /**
+     * Reads the configuration of AGU {@code index}.
+     *
+     * @param trace the design directory or trace archive
+     * @param index the AGU number
+     * @return the program
+     * @throws IOException if no file describes the AGU, or one cannot be read or is malformed
+     */
+    static AguProgram readProgram(TraceSource trace, int index) throws IOException {
+        String main = "agu" + index;
+        String cmFile = main + ".cm";
+        String arfFile = main + ".arf";
+        Map<String, List<String>> sections = trace.exists(main) ? readSections(trace.readText(main)) : Map.of();
+        List<String> cm = sections.get("CM");
+        List<String> arf = sections.get("ARF");
+        List<String> max = sections.get("MAX COUNT");
+        try {
+            if (cm == null && trace.exists(cmFile)) {
+                cm = nonBlankLines(trace.readText(cmFile)).stream().map(AguParser::decodeInstruction).toList();
+            }
+            if (arf == null && trace.exists(arfFile)) {
+                arf = nonBlankLines(trace.readText(arfFile)).stream().map(bits -> String.valueOf(Integer.parseInt(bits, 2))).toList();
+            }
+            if (cm == null || arf == null) {
+                throw new IOException("No instruction or address register file for AGU " + index + " in " + trace.location());
+            }
+            List<AguInstruction> instructions = new ArrayList<>(cm.size());
+            for (String line : cm) {
+                instructions.add(AguInstruction.parse(line));
+            }
+            int[] bases = new int[instructions.size()];
+            for (int i = 0; i < bases.length && i < arf.size(); i++) {
+                bases[i] = Integer.parseInt(arf.get(i).trim());
+            }
+            int maxCount = max == null || max.isEmpty() ? -1 : Integer.parseInt(max.get(0).trim());
+            return new AguProgram(index, List.copyOf(instructions), bases, maxCount);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad configuration for AGU " + index + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses the state of an AGU at the end of a cycle.
+     *
+     * @param trace the design directory or trace archive
+     * @param cycle the cycle number
+     * @param name the `agu<n>` file name
+     * @return the state
+     * @throws IOException if the file cannot be read or a value is malformed
+     */
+    static AguState readState(TraceSource trace, int cycle, String name) throws IOException {
+        int pc = 0;
+        int[] arf = new int[0];
+        int maxCount = -1;
+        int count = 0;
+        for (String line : trace.readText(cycle, name).lines().toList()) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            try {
+                switch (key) {
+                    case "PC" -> pc = Integer.parseInt(value);
+                    case "ARF" -> arf = parseList(value);
+                    case "MAX COUNT" -> maxCount = Integer.parseInt(value);
+                    case "COUNT" -> count = Integer.parseInt(value);
+                    default -> {
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad value for " + key + " in " + name + ": " + value, e);
+            }
+        }
+        return new AguState(pc, arf, maxCount, count);
+    }
+
+    /**
+     * Decodes an 8-bit CM word into the text form of the instruction, e.g. "LOAD, STRIDED, B16, 1".
+     */
+    private static String decodeInstruction(String bits) {
+        int word = Integer.parseInt(bits, 2);
+        String type = (word & 0x80) != 0 ? "STORE" : "LOAD";
+        String mode = (word & 0x40) != 0 ? "MODE1" : "STRIDED";
+        int width = Byte.SIZE << ((word >> 4) & 0x3);
+        return type + ", " + mode + ", B" + width + ", " + (word & 0xF);
+    }
+
+    /**
+     * Parses "[8, 16]" into its numbers.
+     */
+    private static int[] parseList(String value) {
+        String body = value.replace("[", "").replace("]", "").trim();
+        if (body.isEmpty()) {
+            return new int[0];
+        }
+        String[] parts = body.split(",");
+        int[] out = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            out[i] = Integer.parseInt(parts[i].trim());
+        }
+        return out;
+    }
+
+    /**
+     * Splits a file into its "NAME:" sections. A section ends at the first blank line.
+     */
+    private static Map<String, List<String>> readSections(String text) {
+        Map<String, List<String>> sections = new HashMap<>();
+        List<String> current = null;
+        for (String line : text.lines().toList()) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                current = null;
+            } else if (trimmed.endsWith(":")) {
+                current = new ArrayList<>();
+                sections.put(trimmed.substring(0, trimmed.length() - 1).trim(), current);
+            } else if (current != null) {
+                current.add(trimmed);
+            }
+        }
+        return sections;
+    }
+
+    private static List<String> nonBlankLines(String text) {
+        return text.lines()
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+}
@@ -0,0 +1,33 @@
+package morpher.ui.visualization;
+
+import java.util.List;
+
+/**
+ * Static configuration of an address generation unit (AGU): its instruction memory
+ * (`agu<n>.cm`), the initial value of its address registers (`agu<n>.arf`, one per instruction)
+ * and its loop count (the "MAX COUNT" section of `agu<n>`).
+ *
+ * The AGU issues its instructions in order, one access per issue, and restarts from the first one
+ * until it has gone through them {@code maxCount} times. Each access advances the address
+ * register of its instruction by the instruction's step.
+ *
+ * @param index the AGU number n
+ * @param instructions the instruction memory
+ * @param bases the initial address register of each instruction
+ * @param maxCount the number of passes over the instructions, -1 if unknown
+ */
+public record AguProgram(int index, List<AguInstruction> instructions, int[] bases, int maxCount) {
+    /**
+     * @return the initial state of the AGU
+     */
+    public AguState initialState() {
+        return new AguState(0, bases.clone(), maxCount, 0);
+    }
+
+    /**
+     * @return the number of accesses of the whole program, -1 if the loop count is unknown
+     */
+    public int accessCount() {
+        return maxCount < 0 ? -1 : maxCount * instructions.size();
+    }
+}
@@ -0,0 +1,28 @@
+package morpher.ui.visualization;
+
+import java.util.Arrays;
+
+/**
+ * State of an address generation unit at the end of a cycle, as dumped in `cycle_N/agu<n>`.
+ *
+ * @param pc the instruction to issue next
+ * @param arf the address registers, one per instruction
+ * @param maxCount the number of passes over the instructions
+ * @param count the number of completed passes
+ */
+public record AguState(int pc, int[] arf, int maxCount, int count) {
+    /**
+     * @return true if the AGU issued an access in the cycle that led from {@code prev} to this
+     *         state, i.e. if its program counter, pass count or an address register moved
+     */
+    public boolean issuedSince(AguState prev) {
+        return pc != prev.pc || count != prev.count || !Arrays.equals(arf, prev.arf);
+    }
+
+    /**
+     * @return the address the next issue will access, -1 if the register file is shorter
+     */
+    public int nextAddress() {
+        return pc >= 0 && pc < arf.length ? arf[pc] : -1;
+    }
+}
@@ -0,0 +1,277 @@
+package morpher.ui.visualization;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import morpher.ui.visualization.utils.ModuleType;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming loader of the CGRA architecture JSON into a {@link FabricMatrix}.
+ *
+ * The document is read token by token with Jackson's {@link JsonParser}, so no tree of the
+ * whole file is built; the per-cell connection templates of grid submodules and any other
+ * section that the UI does not use are skipped without being materialised. The recognised
+ * structure is
+ * <pre>
+ *   { "CGRA": { "SUBMODS": [ { "PATTERN": "GRID", "DIMS": { "X": 5, "Y": 5 },
+ *                              "MODS": [ { "X": 0, "Y": 0, "MOD": "PE_MEM", "name": ".." }, ... ] },
+ *                            { "SPM_B0_WRAPPER": [ { "name": "SPM_B0_WRAPPER_INS" } ], ... } ],
+ *               "CONNECTIONS": { "PE_MEM_X0_Y0.MEMPORT": [ "SPM_B0_WRAPPER_INS.MEMPORT_P0" ], ... } } }
+ * </pre>
+ * X is the column and Y the row of a module, as in the `PE-Y&lt;r&gt;X&lt;c&gt;` file names.
+ */
+public final class ArchitectureLoader {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private ArchitectureLoader() {
+    }
+
+    /**
+     * Parses an architecture JSON document.
+     *
+     * @param input the architecture JSON
+     * @return the fabric, sized after the first submodule
+     * @throws IOException if the document cannot be read or has no submodule
+     */
+    public static FabricMatrix load(InputStream input) throws IOException {
+        List<FabricSubmodule> submodules = new ArrayList<>();
+        Map<String, List<String>> connections = new LinkedHashMap<>();
+        try (JsonParser p = FACTORY.createParser(input)) {
+            expect(p, p.nextToken(), JsonToken.START_OBJECT);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                if ("CGRA".equals(field) && p.currentToken() == JsonToken.START_OBJECT) {
+                    readCgra(p, submodules, connections);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        if (submodules.isEmpty()) {
+            throw new IOException("Architecture has no CGRA submodule");
+        }
+        FabricSubmodule primary = submodules.get(0);
+        return new FabricMatrix(primary.rows(), primary.cols(), submodules, connections);
+    }
+
+    private static void readCgra(JsonParser p, List<FabricSubmodule> submodules,
+                                 Map<String, List<String>> connections) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if ("SUBMODS".equals(field) && p.currentToken() == JsonToken.START_ARRAY) {
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    submodules.add(readSubmodule(p));
+                }
+            } else if ("CONNECTIONS".equals(field) && p.currentToken() == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String from = p.currentName();
+                    List<String> to = new ArrayList<>();
+                    if (p.nextToken() == JsonToken.START_ARRAY) {
+                        while (p.nextToken() != JsonToken.END_ARRAY) {
+                            to.add(p.getValueAsString());
+                        }
+                    } else {
+                        to.add(p.getValueAsString());
+                    }
+                    connections.put(from, List.copyOf(to));
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    private static FabricSubmodule readSubmodule(JsonParser p) throws IOException {
+        FabricSubmodule.Builder builder = new FabricSubmodule.Builder();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "PATTERN" -> builder.pattern(p.getValueAsString(""));
+                case "DIMS" -> {
+                    expect(p, value, JsonToken.START_OBJECT);
+                    int x = 0;
+                    int y = 0;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String dim = p.currentName();
+                        p.nextToken();
+                        if ("X".equals(dim)) {
+                            x = p.getValueAsInt();
+                        } else if ("Y".equals(dim)) {
+                            y = p.getValueAsInt();
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    builder.dims(y, x);
+                }
+                case "MODS" -> {
+                    expect(p, value, JsonToken.START_ARRAY);
+                    while (p.nextToken() == JsonToken.START_OBJECT) {
+                        readModule(p, builder);
+                    }
+                }
+                case "CONNECTIONS" -> p.skipChildren();
+                default -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        readInstances(p, field, builder);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static void readModule(JsonParser p, FabricSubmodule.Builder builder) throws IOException {
+        int x = -1;
+        int y = -1;
+        ModuleType type = ModuleType.OTHER;
+        String name = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "X" -> x = p.getValueAsInt(-1);
+                case "Y" -> y = p.getValueAsInt(-1);
+                case "MOD" -> type = ModuleType.get(p.getValueAsString(""));
+                case "name" -> name = p.getValueAsString();
+                default -> p.skipChildren();
+            }
+        }
+        builder.module(y, x, type, name);
+    }
+
+    /**
+     * Reads the named instances of a module that is not placed on the grid.
+     */
+    private static void readInstances(JsonParser p, String module, FabricSubmodule.Builder builder) throws IOException {
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (p.currentToken() != JsonToken.START_OBJECT) {
+                // not an instance description
+                p.skipChildren();
+                continue;
+            }
+            String name = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                if ("name".equals(field)) {
+                    name = p.getValueAsString();
+                } else {
+                    p.skipChildren();
+                }
+            }
+            builder.instance(module, name);
+        }
+    }
+
+    private static void expect(JsonParser p, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(p, "Expected " + expected + " but found " + actual);
+        }
+    }
+
+    /**
+     * Binary form of a fabric for the {@link SnapshotCache}.
+     */
+    static final SnapshotCache.Codec<FabricMatrix> CODEC = new SnapshotCache.Codec<>() {
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public void write(DataOutputStream out, FabricMatrix fabric) throws IOException {
+            out.writeInt(fabric.rows());
+            out.writeInt(fabric.cols());
+            out.writeInt(fabric.submodules().size());
+            for (FabricSubmodule sub : fabric.submodules()) {
+                SnapshotCache.writeString(out, sub.pattern());
+                out.writeInt(sub.rows());
+                out.writeInt(sub.cols());
+                for (int row = 0; row < sub.rows(); row++) {
+                    for (int col = 0; col < sub.cols(); col++) {
+                        Coordinate c = new Coordinate(row, col);
+                        String name = sub.nameAt(c);
+                        out.writeByte(sub.typeAt(c).ordinal());
+                        out.writeBoolean(name != null);
+                        if (name != null) {
+                            SnapshotCache.writeString(out, name);
+                        }
+                    }
+                }
+                out.writeInt(sub.instances().size());
+                for (FabricSubmodule.Instance inst : sub.instances()) {
+                    SnapshotCache.writeString(out, inst.module());
+                    SnapshotCache.writeString(out, inst.name() == null ? "" : inst.name());
+                }
+            }
+            out.writeInt(fabric.connections().size());
+            for (var entry : fabric.connections().entrySet()) {
+                SnapshotCache.writeString(out, entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String to : entry.getValue()) {
+                    SnapshotCache.writeString(out, to);
+                }
+            }
+        }
+
+        @Override
+        public FabricMatrix read(ByteBuffer in) {
+            int rows = in.getInt();
+            int cols = in.getInt();
+            int count = in.getInt();
+            ModuleType[] types = ModuleType.values();
+            List<FabricSubmodule> submodules = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                FabricSubmodule.Builder builder = new FabricSubmodule.Builder()
+                        .pattern(SnapshotCache.readString(in));
+                int subRows = in.getInt();
+                int subCols = in.getInt();
+                builder.dims(subRows, subCols);
+                for (int row = 0; row < subRows; row++) {
+                    for (int col = 0; col < subCols; col++) {
+                        ModuleType type = types[in.get()];
+                        String name = in.get() != 0 ? SnapshotCache.readString(in) : null;
+                        if (type != ModuleType.OTHER || name != null) {
+                            builder.module(row, col, type, name);
+                        }
+                    }
+                }
+                int instances = in.getInt();
+                for (int k = 0; k < instances; k++) {
+                    String module = SnapshotCache.readString(in);
+                    String name = SnapshotCache.readString(in);
+                    builder.instance(module, name.isEmpty() ? null : name);
+                }
+                submodules.add(builder.build());
+            }
+            Map<String, List<String>> connections = new LinkedHashMap<>();
+            int bindings = in.getInt();
+            for (int i = 0; i < bindings; i++) {
+                String from = SnapshotCache.readString(in);
+                List<String> to = new ArrayList<>();
+                int n = in.getInt();
+                for (int k = 0; k < n; k++) {
+                    to.add(SnapshotCache.readString(in));
+                }
+                connections.put(from, List.copyOf(to));
+            }
+            return new FabricMatrix(rows, cols, submodules, connections);
+        }
+    };
+}
@@ -0,0 +1,173 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.Direction;
+import morpher.ui.visualization.utils.RoutingType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decoder for the raw PE configuration bitstream (the `PE-Y&lt;r&gt;X&lt;c&gt;` file next to each `.prog`).
+ *
+ * The file holds one 64-bit instruction word per cycle, written as ASCII '0'/'1' characters,
+ * most significant bit first. The words are read from a memory-mapped buffer straight into
+ * {@code long}s and decoded with shifts and masks, following a {@link BitstreamLayout}: the
+ * position of the opcode, memory flag, JUMP loop bounds and switch source-select fields, and the
+ * meaning of their codes. A switch field that holds its "open" code drives nothing.
+ *
+ * A word with an opcode or switch code that the layout does not define is rejected rather than
+ * guessed at, so a bitstream decodes to the schedule its `.prog` would show or not at all. The
+ * decoder cannot tell when a layout is wrong about a code it does define: the bundled layout
+ * only covers the bundled design, whose PE-Y0X0 JUMP word lacks the "ALUOut -> east_out" route
+ * its `.prog` lists; the layout file records this under "KNOWN_DIFFERENCES".
+ */
+final class BitstreamDecoder {
+    static final int WORD_BITS = 64;
+
+    private static final int JUMP = OpcodeRegistry.get().intern("JUMP");
+
+    private BitstreamDecoder() {
+    }
+
+    /**
+     * Decodes a bitstream file into a RoutingBatch.
+     *
+     * @param path the path to the bitstream file
+     * @return the routing schedule described by the file
+     * @throws IOException if the file cannot be read, is not a bitstream, or holds a code that
+     *         the layout does not define
+     */
+    static RoutingBatch decode(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return decode(readWords(buf), BitstreamLayout.get());
+        }
+    }
+
+    /**
+     * Decodes instruction words into a RoutingBatch, one Routing per word.
+     *
+     * @param words the instruction words, in cycle order
+     * @param layout the layout of the words
+     * @return the routing schedule
+     * @throws IOException if a word holds a code that the layout does not define
+     */
+    static RoutingBatch decode(long[] words, BitstreamLayout layout) throws IOException {
+        List<Routing> routes = new ArrayList<>(words.length);
+        int jumpStart = -1;
+        int jumpEnd = -1;
+        for (int cycle = 0; cycle < words.length; cycle++) {
+            long word = words[cycle];
+            int op = opCodeOf(word, layout, cycle);
+            if (op == JUMP) {
+                jumpStart = field(word, layout.jumpStart());
+                jumpEnd = field(word, layout.jumpEnd());
+            }
+            Routing routing = new Routing();
+            routing.setOpCodeId(op);
+            decodeSwitch(word, layout, cycle, routing);
+            routes.add(routing);
+        }
+        return new RoutingBatch(Collections.unmodifiableList(routes), jumpStart, jumpEnd);
+    }
+
+    /**
+     * Packs the ASCII '0'/'1' characters between the buffer's position and limit into words.
+     * Whitespace is ignored.
+     *
+     * @param buf the bytes of a bitstream file
+     * @return the instruction words, in file order
+     * @throws IOException if the buffer holds other characters or a partial word
+     */
+    static long[] readWords(ByteBuffer buf) throws IOException {
+        long[] words = new long[Math.max(1, buf.remaining() / WORD_BITS)];
+        int count = 0;
+        long word = 0;
+        int bits = 0;
+        for (int i = buf.position(); i < buf.limit(); i++) {
+            byte b = buf.get(i);
+            if (b == '0' || b == '1') {
+                word = (word << 1) | (b - '0');
+                if (++bits == WORD_BITS) {
+                    if (count == words.length) {
+                        words = Arrays.copyOf(words, count * 2);
+                    }
+                    words[count++] = word;
+                    word = 0;
+                    bits = 0;
+                }
+            } else if (b > ' ') {
+                throw new IOException("Unexpected character '" + (char) b + "' at offset " + i);
+            }
+        }
+        if (bits != 0) {
+            throw new IOException("Bitstream ends with a partial word of " + bits + " bits");
+        }
+        return Arrays.copyOf(words, count);
+    }
+
+    /**
+     * @return the {@link OpcodeRegistry} id of the operation encoded in a word
+     * @throws IOException if the layout does not define the opcode
+     */
+    static int opCodeOf(long word, BitstreamLayout layout, int cycle) throws IOException {
+        int code = field(word, layout.opcode());
+        boolean memory = field(word, layout.memory()) != 0;
+        String name = layout.opcodeName(code, memory);
+        if (name == null) {
+            throw new IOException(String.format("Unknown %sopcode %s in word %d",
+                    memory ? "memory " : "", bits(code, layout.opcode().width()), cycle));
+        }
+        return OpcodeRegistry.get().intern(name);
+    }
+
+    /**
+     * Applies the switch configuration of a word to a Routing, following the same rules as
+     * {@link ProgFileParser}: a driven neighbour port gets an OUTPUT, and a neighbour used as
+     * a source gets an input of type OTHER.
+     *
+     * @throws IOException if a field holds a source code that the layout does not define
+     */
+    private static void decodeSwitch(long word, BitstreamLayout layout, int cycle, Routing routing)
+            throws IOException {
+        for (BitstreamLayout.SwitchField f : layout.switchFields()) {
+            int code = field(word, f.field());
+            if (code == f.open()) {
+                continue;
+            }
+            if (!f.sources().containsKey(code)) {
+                throw new IOException(String.format("Unknown source %s for %s in word %d",
+                        bits(code, f.field().width()), f.out() == null ? "ALU operand" : f.out(), cycle));
+            }
+            Direction source = f.sources().get(code);
+            if (source != null) {
+                routing.setInput(source, RoutingType.OTHER);
+            }
+            if (f.out() != null) {
+                routing.setOutput(f.out(), RoutingType.OUTPUT);
+            }
+        }
+    }
+
+    /**
+     * Extracts a field of a word.
+     */
+    private static int field(long word, BitstreamLayout.Field f) {
+        return (int) ((word >>> (WORD_BITS - f.pos() - f.width())) & ((1L << f.width()) - 1));
+    }
+
+    /**
+     * @return a code as a binary string of the field's width, as written in the layout
+     */
+    private static String bits(int code, int width) {
+        String s = Integer.toBinaryString(code);
+        return "0".repeat(Math.max(0, width - s.length())) + s;
+    }
+}
@@ -0,0 +1,267 @@
+package morpher.ui.visualization;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import morpher.ui.visualization.utils.Direction;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The instruction word layout of a PE bitstream: where each field lies and what its codes mean.
+ *
+ * A layout is read from a JSON description of the PE configuration, as written for the CGRA
+ * generator. Positions count characters from the start of a word (position 0 is bit 63) and codes
+ * are written as binary strings of the field's width:
+ * <pre>
+ *   { "OPCODE": { "POS": 24, "WIDTH": 8 },
+ *     "MEMORY": { "POS": 57, "WIDTH": 1 },
+ *     "JUMP_START": { "POS": 40, "WIDTH": 3 },
+ *     "JUMP_END": { "POS": 43, "WIDTH": 5 },
+ *     "OPCODES": { "00000000": "NOP", ... },
+ *     "MEMORY_OPCODES": { "00000000": "LOAD", ... },
+ *     "SWITCH": [ { "POS": 2, "WIDTH": 3, "OUT": "south", "OPEN": "111", "SOURCES": { "100": "alu" } }, ... ] }
+ * </pre>
+ * "OUT" names the neighbour port a switch field drives and is left out for ALU operands; a source
+ * is a neighbour direction or "alu" for the ALU result. Any other member is ignored, such as
+ * "KNOWN_DIFFERENCES", which lists the words of the bundled design that do not decode as their
+ * `.prog` shows them.
+ *
+ * {@link #get()} returns the layout named by {@code -Dmorpher.bitstream.layout}, a file path, or
+ * else the bundled one of the single-sided HyCUBE PE.
+ */
+final class BitstreamLayout {
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final String DEFAULT_RESOURCE = "/bitstream/hycube_pe.json";
+    private static BitstreamLayout instance;
+
+    /**
+     * A field of a word.
+     *
+     * @param pos first character of the field
+     * @param width number of bits
+     */
+    record Field(int pos, int width) {}
+
+    /**
+     * One source-select field of the switch configuration.
+     *
+     * @param field the position of the field
+     * @param out the neighbour port this field drives, or null for an ALU operand
+     * @param open the code meaning "not driven"
+     * @param sources the source of each known code; a null source is the ALU result
+     */
+    record SwitchField(Field field, Direction out, int open, Map<Integer, Direction> sources) {}
+
+    private final Field opcode;
+    private final Field memory;
+    private final Field jumpStart;
+    private final Field jumpEnd;
+    private final Map<Integer, String> opcodes;
+    private final Map<Integer, String> memoryOpcodes;
+    private final List<SwitchField> switchFields;
+
+    private BitstreamLayout(Field opcode, Field memory, Field jumpStart, Field jumpEnd,
+                            Map<Integer, String> opcodes, Map<Integer, String> memoryOpcodes,
+                            List<SwitchField> switchFields) {
+        this.opcode = opcode;
+        this.memory = memory;
+        this.jumpStart = jumpStart;
+        this.jumpEnd = jumpEnd;
+        this.opcodes = opcodes;
+        this.memoryOpcodes = memoryOpcodes;
+        this.switchFields = switchFields;
+    }
+
+    /**
+     * Returns the layout used to decode bitstreams, loading it on first call.
+     *
+     * @return the layout of {@code -Dmorpher.bitstream.layout}, or the bundled one
+     * @throws UncheckedIOException if the layout cannot be read
+     */
+    static synchronized BitstreamLayout get() {
+        if (instance == null) {
+            String custom = System.getProperty("morpher.bitstream.layout");
+            try (InputStream input = custom != null
+                    ? Files.newInputStream(Paths.get(custom))
+                    : BitstreamLayout.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+                if (input == null) {
+                    throw new IOException("Resource not found: " + DEFAULT_RESOURCE);
+                }
+                instance = load(input);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read bitstream layout "
+                        + (custom != null ? custom : DEFAULT_RESOURCE), e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Parses a layout description.
+     *
+     * @param input the layout JSON
+     * @return the layout
+     * @throws IOException if the document cannot be read or lacks a field
+     */
+    static BitstreamLayout load(InputStream input) throws IOException {
+        Field opcode = null;
+        Field memory = null;
+        Field jumpStart = null;
+        Field jumpEnd = null;
+        Map<Integer, String> opcodes = Map.of();
+        Map<Integer, String> memoryOpcodes = Map.of();
+        List<SwitchField> switchFields = new ArrayList<>();
+        try (JsonParser p = FACTORY.createParser(input)) {
+            expect(p, p.nextToken(), JsonToken.START_OBJECT);
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (name) {
+                    case "OPCODE" -> opcode = readField(p, value);
+                    case "MEMORY" -> memory = readField(p, value);
+                    case "JUMP_START" -> jumpStart = readField(p, value);
+                    case "JUMP_END" -> jumpEnd = readField(p, value);
+                    case "OPCODES" -> opcodes = readNames(p, value);
+                    case "MEMORY_OPCODES" -> memoryOpcodes = readNames(p, value);
+                    case "SWITCH" -> {
+                        expect(p, value, JsonToken.START_ARRAY);
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            switchFields.add(readSwitchField(p));
+                        }
+                    }
+                    default -> p.skipChildren();
+                }
+            }
+        }
+        if (opcode == null || memory == null || jumpStart == null || jumpEnd == null) {
+            throw new IOException("Bitstream layout needs OPCODE, MEMORY, JUMP_START and JUMP_END");
+        }
+        return new BitstreamLayout(opcode, memory, jumpStart, jumpEnd, opcodes, memoryOpcodes,
+                List.copyOf(switchFields));
+    }
+
+    private static Field readField(JsonParser p, JsonToken value) throws IOException {
+        expect(p, value, JsonToken.START_OBJECT);
+        int pos = -1;
+        int width = -1;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            p.nextToken();
+            switch (name) {
+                case "POS" -> pos = p.getValueAsInt(-1);
+                case "WIDTH" -> width = p.getValueAsInt(-1);
+                default -> p.skipChildren();
+            }
+        }
+        if (pos < 0 || width < 1 || pos + width > BitstreamDecoder.WORD_BITS) {
+            throw new JsonParseException(p, "Field [" + pos + ", +" + width + "] is outside a word");
+        }
+        return new Field(pos, width);
+    }
+
+    private static Map<Integer, String> readNames(JsonParser p, JsonToken value) throws IOException {
+        expect(p, value, JsonToken.START_OBJECT);
+        Map<Integer, String> names = new HashMap<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            int code = code(p, p.currentName());
+            p.nextToken();
+            names.put(code, p.getValueAsString());
+        }
+        return Map.copyOf(names);
+    }
+
+    private static SwitchField readSwitchField(JsonParser p) throws IOException {
+        int pos = -1;
+        int width = -1;
+        Direction out = null;
+        Integer open = null;
+        Map<Integer, Direction> sources = new HashMap<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (name) {
+                case "POS" -> pos = p.getValueAsInt(-1);
+                case "WIDTH" -> width = p.getValueAsInt(-1);
+                case "OUT" -> out = direction(p, p.getValueAsString(""));
+                case "OPEN" -> open = code(p, p.getValueAsString(""));
+                case "SOURCES" -> {
+                    expect(p, value, JsonToken.START_OBJECT);
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        int code = code(p, p.currentName());
+                        p.nextToken();
+                        String source = p.getValueAsString("");
+                        // HashMap keeps the null of an ALU source, unlike Map.copyOf
+                        sources.put(code, "alu".equals(source) ? null : direction(p, source));
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+        if (pos < 0 || width < 1 || pos + width > BitstreamDecoder.WORD_BITS || open == null) {
+            throw new JsonParseException(p, "Switch field needs POS, WIDTH and OPEN");
+        }
+        return new SwitchField(new Field(pos, width), out, open, sources);
+    }
+
+    private static Direction direction(JsonParser p, String name) throws IOException {
+        Direction dir = Direction.getDirection(name);
+        if (dir == null) {
+            throw new JsonParseException(p, "Unknown direction '" + name + "'");
+        }
+        return dir;
+    }
+
+    private static int code(JsonParser p, String bits) throws IOException {
+        try {
+            return Integer.parseInt(bits, 2);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(p, "Code '" + bits + "' is not a binary number");
+        }
+    }
+
+    private static void expect(JsonParser p, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(p, "Expected " + expected + " but found " + actual);
+        }
+    }
+
+    Field opcode() {
+        return opcode;
+    }
+
+    Field memory() {
+        return memory;
+    }
+
+    Field jumpStart() {
+        return jumpStart;
+    }
+
+    Field jumpEnd() {
+        return jumpEnd;
+    }
+
+    /**
+     * @param code the opcode field of a word
+     * @param memory whether the word's memory field is set
+     * @return the operation name, or null if the layout does not define the code
+     */
+    String opcodeName(int code, boolean memory) {
+        return (memory ? memoryOpcodes : opcodes).get(code);
+    }
+
+    List<SwitchField> switchFields() {
+        return switchFields;
+    }
+}
@@ -2,7 +2,15 @@ package morpher.ui.visualization;
 
 import morpher.ui.visualization.utils.Direction;
 
+import java.util.Comparator;
+
 public record Coordinate(int row, int col) {
+    /**
+     * Orders coordinates row by row, then column by column.
+     */
+    public static final Comparator<Coordinate> ROW_MAJOR =
+            Comparator.comparingInt(Coordinate::row).thenComparingInt(Coordinate::col);
+
     /**
      * @param c coordinate.
      * @param d direction of its neighbour.
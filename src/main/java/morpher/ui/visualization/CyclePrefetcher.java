@@ -0,0 +1,221 @@
+package morpher.ui.visualization;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the cycles the user is likely to step to next on a background thread, so that stepping
+ * through a trace finds them already loaded.
+ *
+ * The prefetcher is told every cycle the user moves to with {@link #navigated(int)}. A step of
+ * one cycle sets the predicted direction, and the next {@code depth} cycles that way are queued,
+ * nearest first. Any other move is a jump: the direction is unknown, so {@code depth / 2} cycles
+ * (at least one) are queued on each side. A navigation that knows its stride, such as a playback
+ * skipping cycles, tells it with {@link #navigated(int, double)}, and the cycles of its next
+ * {@code depth} steps are queued. Queued cycles that fall outside the new window are
+ * cancelled, so a jump drops the prefetches of the previous position; a load already running is
+ * left to finish.
+ *
+ * Every move is counted as a hit if the cycle was ready when the user reached it and as a miss
+ * otherwise, as told by the {@code ready} predicate, e.g. {@link CycleStateLoader#isCached(int)}.
+ */
+public final class CyclePrefetcher implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(CyclePrefetcher.class.getName());
+    public static final int DEFAULT_DEPTH = Integer.getInteger("morpher.prefetch.depth", 4);
+
+    private final IntConsumer loader;
+    private final IntPredicate ready;
+    private final ExecutorService executor;
+    private final Map<Integer, Future<?>> pending = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+
+    private int depth;
+    private int cycleCount;
+    private int last = -1;
+    private int direction;
+
+    /**
+     * @param loader loads a cycle, e.g. {@link CycleStateLoader#get(int)}; called on the background thread
+     * @param ready whether a cycle is already loaded; called on the navigating thread
+     * @param depth the number of cycles to load ahead
+     */
+    public CyclePrefetcher(IntConsumer loader, IntPredicate ready, int depth) {
+        this.loader = loader;
+        this.ready = ready;
+        this.depth = Math.max(0, depth);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "cycle-prefetch");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Prefetches the PE states of the {@link CycleStateLoader} with the default depth
+     * ({@code -Dmorpher.prefetch.depth}, 4 cycles).
+     *
+     * @return the prefetcher
+     */
+    public static CyclePrefetcher forCycleStates() {
+        CycleStateLoader states = CycleStateLoader.get();
+        return new CyclePrefetcher(states::get, states::isCached, DEFAULT_DEPTH);
+    }
+
+    /**
+     * Sets the number of cycles of the trace; cycles outside [0, cycleCount) are never queued.
+     * Cancels every queued prefetch and forgets the direction, as after loading another trace.
+     *
+     * @param cycleCount the number of cycles
+     */
+    public synchronized void reset(int cycleCount) {
+        this.cycleCount = Math.max(0, cycleCount);
+        this.last = -1;
+        this.direction = 0;
+        cancelOutside(0, -1);
+    }
+
+    /**
+     * Sets the number of cycles to load ahead; 0 turns prefetching off.
+     *
+     * @param depth the number of cycles
+     */
+    public synchronized void setDepth(int depth) {
+        this.depth = Math.max(0, depth);
+    }
+
+    /**
+     * Records a move to a cycle, counts it as a hit or a miss, and queues the cycles predicted
+     * to come next.
+     *
+     * @param cycle the cycle now shown
+     */
+    public synchronized void navigated(int cycle) {
+        if (ready.test(cycle)) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        int step = last < 0 ? 0 : cycle - last;
+        prefetch(cycle, Math.abs(step) == 1 ? step : 0);
+    }
+
+    /**
+     * Records a move to a cycle made by a navigation that moves by {@code stride} cycles per step,
+     * counts it as a hit or a miss, and queues the cycles of its next steps.
+     *
+     * @param cycle the cycle now shown
+     * @param stride the cycles per step, negative backward, or 0 if unknown
+     */
+    public synchronized void navigated(int cycle, double stride) {
+        if (ready.test(cycle)) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        prefetch(cycle, stride);
+    }
+
+    private void prefetch(int cycle, double stride) {
+        direction = (int) Math.signum(stride);
+        last = cycle;
+
+        int ahead = direction == 0 ? Math.max(1, depth / 2) : depth;
+        int reach = direction == 0 ? ahead : (int) Math.round(Math.abs(stride) * ahead);
+        cancelOutside(direction > 0 ? cycle : cycle - reach, direction < 0 ? cycle : cycle + reach);
+        if (depth == 0) {
+            return;
+        }
+        for (int d = 1; d <= ahead; d++) {
+            if (direction == 0) {
+                queue(cycle + d);
+                queue(cycle - d);
+            } else {
+                queue(cycle + (int) Math.round(d * stride));
+            }
+        }
+    }
+
+    private void queue(int cycle) {
+        if (cycle < 0 || cycle >= cycleCount || ready.test(cycle)) {
+            return;
+        }
+        Future<?> queued = pending.get(cycle);
+        if (queued != null && !queued.isDone()) {
+            return;
+        }
+        issued.increment();
+        pending.put(cycle, executor.submit(() -> {
+            try {
+                loader.accept(cycle);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Cannot prefetch cycle {0}: {1}", new Object[]{cycle, e.getMessage()});
+            }
+        }));
+    }
+
+    /**
+     * Cancels the queued prefetches of cycles outside [from, to] and forgets finished ones.
+     */
+    private void cancelOutside(int from, int to) {
+        Iterator<Map.Entry<Integer, Future<?>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Future<?>> entry = it.next();
+            Future<?> future = entry.getValue();
+            if (future.isDone()) {
+                it.remove();
+            } else if (entry.getKey() < from || entry.getKey() > to) {
+                if (future.cancel(false)) {
+                    cancelled.increment();
+                }
+                it.remove();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return a one-line summary of the hits, misses, and prefetches issued and cancelled
+     */
+    public synchronized String getStats() {
+        long total = hits.sum() + misses.sum();
+        return String.format("prefetch: %d hits, %d misses (%.0f%% hit rate), %d issued, %d cancelled, "
+                        + "depth %d, direction %s",
+                hits.sum(), misses.sum(), total == 0 ? 0.0 : 100.0 * hits.sum() / total,
+                issued.sum(), cancelled.sum(), depth,
+                direction > 0 ? "forward" : direction < 0 ? "backward" : "unknown");
+    }
+
+    /**
+     * Cancels every queued prefetch and stops the background thread.
+     */
+    @Override
+    public synchronized void close() {
+        cancelOutside(0, -1);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return getStats();
+    }
+}
@@ -0,0 +1,305 @@
+package morpher.ui.visualization;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Singleton class giving access to the per-cycle PE state snapshots of a design directory or a
+ * {@link TraceArchive} (`cycle_N/PE-Y<row>X<col>.state`).
+ *
+ * A cycle is read only when it is first requested; its state files are parsed in parallel on the
+ * fork-join pool. The most recently used cycles are kept in a bounded LRU cache
+ * ({@code -Dmorpher.state.cache}, 16 cycles by default), so memory use does not grow with the
+ * length of the trace.
+ *
+ * In resident mode ({@code -Dmorpher.state.resident=true} or {@link #setResident(boolean)}) the
+ * whole trace is read once into a delta-encoded {@link CycleStateStore}, with a keyframe every
+ * {@code -Dmorpher.state.keyframe} cycles (32 by default), and cache misses are served from it
+ * instead of the state files. The store is built on a background thread, without holding the
+ * loader's lock, and cache misses are served from the state files until it is done.
+ */
+public class CycleStateLoader {
+    private static final Logger LOGGER = Logger.getLogger(CycleStateLoader.class.getName());
+    private static final Pattern STATE_FILE = Pattern.compile("PE-Y(\\d+)X(\\d+)\\.state");
+    private static final int DEFAULT_CAPACITY = Integer.getInteger("morpher.state.cache", 16);
+    private static final int DEFAULT_KEYFRAME_INTERVAL =
+            Integer.getInteger("morpher.state.keyframe", CycleStateStore.DEFAULT_KEYFRAME_INTERVAL);
+    private static CycleStateLoader instance;
+
+    private TraceSource source;
+    private int cycleCount;
+    private int capacity = DEFAULT_CAPACITY;
+    private boolean resident = Boolean.getBoolean("morpher.state.resident");
+    private int keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+    private CycleStateStore store;
+    /** The build of the store under way, null if none. */
+    private CompletableFuture<CycleStateStore> building;
+    private final ExecutorService storeBuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "cycle-state-store");
+        t.setDaemon(true);
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+    private final Map<Integer, Map<Coordinate, PEState>> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private CycleStateLoader() {
+        refresh(RoutingLoader.getDemoDirectory());
+    }
+
+    public static synchronized CycleStateLoader get() {
+        if (instance == null) {
+            instance = new CycleStateLoader();
+        }
+        return instance;
+    }
+
+    /**
+     * Switches to another design directory or trace archive and drops every cached cycle.
+     *
+     * @param dir the directory containing the `cycle_N` directories, or a trace archive
+     */
+    public synchronized void refresh(Path dir) {
+        this.cache.clear();
+        dropStore();
+        try {
+            this.source = TraceSource.open(dir);
+            this.cycleCount = source.cycleCount();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot open {0}: {1}", new Object[]{dir, e.getMessage()});
+            this.source = null;
+            this.cycleCount = 0;
+        }
+        if (resident) {
+            buildStore();
+        }
+    }
+
+    /**
+     * Switches resident mode on or off. Turning it on starts building the resident store; turning
+     * it off drops it.
+     *
+     * @param resident true to keep the whole trace in memory, delta-encoded
+     */
+    public synchronized void setResident(boolean resident) {
+        this.resident = resident;
+        if (resident) {
+            buildStore();
+        } else {
+            dropStore();
+        }
+    }
+
+    /**
+     * Sets the number of cycles between two keyframes of the resident store. An existing store
+     * is dropped and, in resident mode, rebuilt.
+     *
+     * @param interval the keyframe interval, at least 1
+     */
+    public synchronized void setKeyframeInterval(int interval) {
+        this.keyframeInterval = Math.max(1, interval);
+        dropStore();
+        if (resident) {
+            buildStore();
+        }
+    }
+
+    /**
+     * @return the resident store of the current design directory, or null if it is not built
+     *         (yet)
+     */
+    public synchronized CycleStateStore getStore() {
+        return store;
+    }
+
+    /**
+     * Starts building the resident store of the current design directory on a background thread,
+     * unless it is built or being built already. The store is used once the build is done, unless
+     * the directory or the keyframe interval changed meanwhile.
+     *
+     * @return the store, completed when it is built
+     */
+    public synchronized CompletableFuture<CycleStateStore> buildStore() {
+        if (store != null) {
+            return CompletableFuture.completedFuture(store);
+        }
+        if (building == null) {
+            TraceSource trace = source;
+            int cycles = cycleCount;
+            int interval = keyframeInterval;
+            CompletableFuture<CycleStateStore> future = new CompletableFuture<>();
+            storeBuilder.execute(() -> {
+                try {
+                    // a dropped build stops at the next cycle instead of holding up the next one
+                    future.complete(CycleStateStore.build(cycles, interval, c -> {
+                        if (future.isDone()) {
+                            throw new CancellationException();
+                        }
+                        return loadCycle(trace, c);
+                    }));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+            building = future;
+            future.whenComplete((built, e) -> stored(future, built, e));
+        }
+        return building;
+    }
+
+    /**
+     * Publishes a store that finished building, unless it was dropped while it was built.
+     */
+    private synchronized void stored(CompletableFuture<CycleStateStore> future, CycleStateStore built, Throwable e) {
+        if (future != building) {
+            return;
+        }
+        building = null;
+        if (built != null) {
+            store = built;
+            LOGGER.info(store.getReport());
+        } else {
+            LOGGER.log(Level.WARNING, "Cannot build the resident cycle state store: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the resident store, and the result of a build under way.
+     */
+    private void dropStore() {
+        store = null;
+        CompletableFuture<CycleStateStore> dropped = building;
+        building = null;
+        if (dropped != null) {
+            dropped.cancel(false);
+        }
+    }
+
+    /**
+     * @return the number of cycles with a state dump (the highest N of `cycle_N` plus one)
+     */
+    public synchronized int getCycleCount() {
+        return cycleCount;
+    }
+
+    /**
+     * Sets the number of cycles kept in memory, evicting the least recently used ones if needed.
+     *
+     * @param capacity the maximum number of cached cycles, at least 1
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        trim();
+    }
+
+    /**
+     * Returns the state of one PE at a cycle, loading the cycle if it is not cached.
+     *
+     * @param cycle the cycle number
+     * @param coord the coordinate of the PE
+     * @return the snapshot, or null if none was dumped
+     */
+    public PEState get(int cycle, Coordinate coord) {
+        return get(cycle).get(coord);
+    }
+
+    /**
+     * Returns the state of every PE at a cycle, loading the cycle if it is not cached.
+     *
+     * @param cycle the cycle number
+     * @return the snapshots by coordinate, in row-major order; empty if the cycle was not dumped
+     */
+    public Map<Coordinate, PEState> get(int cycle) {
+        TraceSource trace;
+        CycleStateStore encoded;
+        synchronized (this) {
+            Map<Coordinate, PEState> cached = cache.get(cycle);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+            trace = source;
+            encoded = resident ? store : null;
+            if (resident && encoded == null) {
+                buildStore();
+            }
+        }
+        // decode or parse outside the lock so that other cycles stay readable meanwhile
+        Map<Coordinate, PEState> loaded = encoded != null ? encoded.get(cycle) : loadCycle(trace, cycle);
+        synchronized (this) {
+            if (trace == source) {
+                cache.put(cycle, loaded);
+                trim();
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return true if the cycle is currently cached
+     */
+    public synchronized boolean isCached(int cycle) {
+        return cache.containsKey(cycle);
+    }
+
+    /**
+     * @return a one-line summary of the cache hits, misses and evictions
+     */
+    public synchronized String getStats() {
+        String stats = String.format("cycle states: %d hits, %d misses, %d evicted, %d/%d cached",
+                hits.sum(), misses.sum(), evictions.sum(), cache.size(), capacity);
+        return store == null ? stats : stats + "; " + store.getReport();
+    }
+
+    private void trim() {
+        var it = cache.entrySet().iterator();
+        while (cache.size() > capacity && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Parses every state file of one cycle in parallel. Files that cannot be parsed are logged
+     * and left out.
+     */
+    private static Map<Coordinate, PEState> loadCycle(TraceSource trace, int cycle) {
+        if (trace == null) {
+            return Collections.emptyMap();
+        }
+        List<String> files = trace.cycleFiles(cycle).stream()
+                .filter(name -> STATE_FILE.matcher(name).matches())
+                .toList();
+        Map<Coordinate, PEState> states = new ConcurrentSkipListMap<>(Coordinate.ROW_MAJOR);
+        files.parallelStream().forEach(name -> {
+            Matcher m = STATE_FILE.matcher(name);
+            m.matches();
+            Coordinate coord = new Coordinate(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+            try {
+                states.put(coord, StateFileParser.parse(trace, cycle, name, coord));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot parse {0}: {1}",
+                        new Object[]{trace.location().resolve("cycle_" + cycle).resolve(name), e.getMessage()});
+            }
+        });
+        return Collections.unmodifiableMap(states);
+    }
+}
@@ -0,0 +1,356 @@
+package morpher.ui.visualization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Resident store of the PE states of every cycle of a trace, delta-encoded.
+ *
+ * Every field of every PE state is a {@code long} slot of one flat vector per cycle: presence,
+ * PC, predicate, loop bounds, operation, a bit mask of the wires carrying a value, then one slot
+ * per register and per wire, and one bit mask slot per 64 register and wire names telling which
+ * of them the state lists. Slots are assigned the first time a PE or a name is seen, so a state
+ * reads back with the names it was stored with, also when other cycles list more. A full
+ * copy of the vector (a keyframe) is kept every {@code interval} cycles; the cycles in between
+ * only keep the slots that changed since the previous cycle, as (slot, value) pairs in two flat
+ * arrays indexed by cycle. Reading a cycle copies the nearest keyframe at or before it and applies
+ * at most {@code interval - 1} deltas.
+ *
+ * A PE has at most 64 wires, one bit each in its wire mask.
+ */
+public final class CycleStateStore {
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 32;
+
+    /** Cycles read ahead in parallel while building. */
+    private static final int LOAD_BATCH = 64;
+
+    private static final int PRESENT = 0;
+    private static final int PC = 1;
+    private static final int PREDICATE = 2;
+    private static final int LOOP_START = 3;
+    private static final int LOOP_END = 4;
+    private static final int OPERATION = 5;
+    private static final int WIRE_MASK = 6;
+    private static final int FIXED_SLOTS = 7;
+
+    /**
+     * Slots of one PE.
+     */
+    private static final class Layout {
+        final Coordinate coord;
+        final int base;
+        final Map<String, Integer> registers = new LinkedHashMap<>();
+        final Map<String, Integer> wires = new LinkedHashMap<>();
+        /** The bit of each register and wire name in the name masks. */
+        final Map<String, Integer> nameBits = new HashMap<>();
+        /** The slots of the name masks, 64 names each. */
+        final List<Integer> nameMasks = new ArrayList<>();
+
+        Layout(Coordinate coord, int base) {
+            this.coord = coord;
+            this.base = base;
+        }
+    }
+
+    private final int cycles;
+    private final int interval;
+    private final int slotCount;
+    private final Layout[] layouts;
+    private final Map<Coordinate, Layout> byCoord;
+    private final List<String> operations;
+    private final long[][] keyframes;
+    private final int[] deltaStart;
+    private final int[] deltaSlot;
+    private final long[] deltaValue;
+
+    private CycleStateStore(Builder b) {
+        this.cycles = b.cycles;
+        this.interval = b.interval;
+        this.slotCount = b.slotCount;
+        this.layouts = b.layouts.values().stream()
+                .sorted((x, y) -> Coordinate.ROW_MAJOR.compare(x.coord, y.coord))
+                .toArray(Layout[]::new);
+        this.byCoord = b.layouts;
+        this.operations = List.copyOf(b.operations);
+        this.keyframes = b.keyframes.toArray(new long[0][]);
+        this.deltaStart = b.deltaStart;
+        this.deltaSlot = Arrays.copyOf(b.deltaSlot, b.deltaCount);
+        this.deltaValue = Arrays.copyOf(b.deltaValue, b.deltaCount);
+    }
+
+    /**
+     * Builds the store from a source of per-cycle states. Cycles are requested in batches read in
+     * parallel and encoded in cycle order, so only one batch of decoded states is held at a time.
+     *
+     * @param cycles the number of cycles
+     * @param interval the number of cycles between two keyframes, at least 1
+     * @param source the states of the PEs at a cycle, e.g. parsed from `cycle_N/*.state`
+     * @return the store
+     */
+    public static CycleStateStore build(int cycles, int interval, IntFunction<Map<Coordinate, PEState>> source) {
+        Builder b = new Builder(cycles, Math.max(1, interval));
+        for (int from = 0; from < cycles; from += LOAD_BATCH) {
+            List<Map<Coordinate, PEState>> batch = IntStream.range(from, Math.min(cycles, from + LOAD_BATCH))
+                    .parallel()
+                    .mapToObj(source)
+                    .toList();
+            for (Map<Coordinate, PEState> states : batch) {
+                b.add(states);
+            }
+        }
+        return new CycleStateStore(b);
+    }
+
+    /**
+     * Encoder state while building.
+     */
+    private static final class Builder {
+        final int cycles;
+        final int interval;
+        final Map<Coordinate, Layout> layouts = new HashMap<>();
+        final List<String> operations = new ArrayList<>();
+        final Map<String, Integer> operationIds = new HashMap<>();
+        final List<long[]> keyframes = new ArrayList<>();
+        final int[] deltaStart;
+        int[] deltaSlot = new int[1024];
+        long[] deltaValue = new long[1024];
+        int deltaCount;
+        int slotCount;
+        int cycle;
+        long[] prev = new long[0];
+
+        Builder(int cycles, int interval) {
+            this.cycles = cycles;
+            this.interval = interval;
+            this.deltaStart = new int[cycles + 1];
+        }
+
+        void add(Map<Coordinate, PEState> states) {
+            for (PEState state : states.values()) {
+                assignSlots(state);
+            }
+            long[] curr = new long[slotCount];
+            for (PEState state : states.values()) {
+                encode(state, curr);
+            }
+            if (cycle % interval == 0) {
+                keyframes.add(curr);
+            } else {
+                for (int s = 0; s < curr.length; s++) {
+                    if (curr[s] != (s < prev.length ? prev[s] : 0L)) {
+                        appendDelta(s, curr[s]);
+                    }
+                }
+            }
+            deltaStart[cycle + 1] = deltaCount;
+            prev = curr;
+            cycle++;
+        }
+
+        private void assignSlots(PEState state) {
+            Layout layout = layouts.get(state.coord());
+            if (layout == null) {
+                layout = new Layout(state.coord(), slotCount);
+                slotCount += FIXED_SLOTS;
+                layouts.put(state.coord(), layout);
+            }
+            for (String name : state.registers().keySet()) {
+                if (!layout.registers.containsKey(name)) {
+                    layout.registers.put(name, slotCount++);
+                    assignNameBit(layout, name);
+                }
+            }
+            for (String name : state.wires().keySet()) {
+                if (!layout.wires.containsKey(name)) {
+                    if (layout.wires.size() == Long.SIZE) {
+                        throw new IllegalStateException("More than 64 wires on PE " + state.coord());
+                    }
+                    layout.wires.put(name, slotCount++);
+                    assignNameBit(layout, name);
+                }
+            }
+        }
+
+        private void assignNameBit(Layout layout, String name) {
+            int bit = layout.nameBits.size();
+            if (bit % Long.SIZE == 0) {
+                layout.nameMasks.add(slotCount++);
+            }
+            layout.nameBits.put(name, bit);
+        }
+
+        private void encode(PEState state, long[] v) {
+            Layout layout = layouts.get(state.coord());
+            int base = layout.base;
+            v[base + PRESENT] = 1;
+            v[base + PC] = state.pc();
+            v[base + PREDICATE] = state.predicate() ? 1 : 0;
+            v[base + LOOP_START] = state.loopStart();
+            v[base + LOOP_END] = state.loopEnd();
+            v[base + OPERATION] = operationIds.computeIfAbsent(state.operation(), op -> {
+                operations.add(op);
+                return operations.size() - 1;
+            });
+            state.registers().forEach((name, value) -> {
+                v[layout.registers.get(name)] = value;
+                setNameBit(layout, name, v);
+            });
+            for (String name : state.wires().keySet()) {
+                setNameBit(layout, name, v);
+            }
+            long mask = 0;
+            int bit = 0;
+            for (Map.Entry<String, Integer> wire : layout.wires.entrySet()) {
+                Long value = state.wires().get(wire.getKey());
+                if (value != null) {
+                    v[wire.getValue()] = value;
+                    mask |= 1L << bit;
+                }
+                bit++;
+            }
+            v[base + WIRE_MASK] = mask;
+        }
+
+        private static void setNameBit(Layout layout, String name, long[] v) {
+            int bit = layout.nameBits.get(name);
+            v[layout.nameMasks.get(bit / Long.SIZE)] |= 1L << (bit % Long.SIZE);
+        }
+
+        private void appendDelta(int slot, long value) {
+            if (deltaCount == deltaSlot.length) {
+                deltaSlot = Arrays.copyOf(deltaSlot, deltaCount * 2);
+                deltaValue = Arrays.copyOf(deltaValue, deltaCount * 2);
+            }
+            deltaSlot[deltaCount] = slot;
+            deltaValue[deltaCount] = value;
+            deltaCount++;
+        }
+    }
+
+    public int cycles() {
+        return cycles;
+    }
+
+    public int keyframeInterval() {
+        return interval;
+    }
+
+    /**
+     * Reconstructs the state of every PE at a cycle.
+     *
+     * @param cycle the cycle number
+     * @return the snapshots by coordinate, in row-major order; empty outside the trace
+     */
+    public Map<Coordinate, PEState> get(int cycle) {
+        if (cycle < 0 || cycle >= cycles) {
+            return Collections.emptyMap();
+        }
+        long[] v = vectorAt(cycle);
+        Map<Coordinate, PEState> states = new TreeMap<>(Coordinate.ROW_MAJOR);
+        for (Layout layout : layouts) {
+            if (v[layout.base + PRESENT] != 0) {
+                states.put(layout.coord, decode(layout, v));
+            }
+        }
+        return Collections.unmodifiableMap(states);
+    }
+
+    /**
+     * Reconstructs the state of one PE at a cycle.
+     *
+     * @param cycle the cycle number
+     * @param coord the coordinate of the PE
+     * @return the snapshot, or null if none was recorded
+     */
+    public PEState get(int cycle, Coordinate coord) {
+        if (cycle < 0 || cycle >= cycles) {
+            return null;
+        }
+        Layout layout = byCoord.get(coord);
+        if (layout == null) {
+            return null;
+        }
+        long[] v = vectorAt(cycle);
+        return v[layout.base + PRESENT] != 0 ? decode(layout, v) : null;
+    }
+
+    private long[] vectorAt(int cycle) {
+        int key = cycle / interval;
+        long[] v = Arrays.copyOf(keyframes[key], slotCount);
+        for (int d = deltaStart[key * interval + 1]; d < deltaStart[cycle + 1]; d++) {
+            v[deltaSlot[d]] = deltaValue[d];
+        }
+        return v;
+    }
+
+    private PEState decode(Layout layout, long[] v) {
+        int base = layout.base;
+        Map<String, Long> registers = new LinkedHashMap<>();
+        layout.registers.forEach((name, slot) -> {
+            if (listed(layout, name, v)) {
+                registers.put(name, v[slot]);
+            }
+        });
+        Map<String, Long> wires = new LinkedHashMap<>();
+        long mask = v[base + WIRE_MASK];
+        int bit = 0;
+        for (Map.Entry<String, Integer> wire : layout.wires.entrySet()) {
+            if (listed(layout, wire.getKey(), v)) {
+                wires.put(wire.getKey(), (mask & (1L << bit)) != 0 ? v[wire.getValue()] : null);
+            }
+            bit++;
+        }
+        return new PEState(layout.coord, (int) v[base + PC], Collections.unmodifiableMap(registers),
+                Collections.unmodifiableMap(wires), v[base + PREDICATE] != 0, (int) v[base + LOOP_START],
+                (int) v[base + LOOP_END], operations.get((int) v[base + OPERATION]));
+    }
+
+    /**
+     * @return true if the state of a PE in a vector lists a register or wire name
+     */
+    private static boolean listed(Layout layout, String name, long[] v) {
+        int bit = layout.nameBits.get(name);
+        return (v[layout.nameMasks.get(bit / Long.SIZE)] & (1L << (bit % Long.SIZE))) != 0;
+    }
+
+    /**
+     * @return the bytes held by the keyframes and deltas
+     */
+    public long memoryBytes() {
+        long keyframeBytes = Arrays.stream(keyframes).mapToLong(k -> (long) k.length * Long.BYTES).sum();
+        return keyframeBytes + (long) deltaSlot.length * (Integer.BYTES + Long.BYTES)
+                + (long) deltaStart.length * Integer.BYTES;
+    }
+
+    /**
+     * @return the bytes a full vector per cycle would take
+     */
+    public long fullSnapshotBytes() {
+        return (long) cycles * slotCount * Long.BYTES;
+    }
+
+    /**
+     * @return a one-line summary of the memory used and saved against full snapshots
+     */
+    public String getReport() {
+        long full = fullSnapshotBytes();
+        long used = memoryBytes();
+        return String.format("cycle store: %d cycles x %d slots, keyframe every %d, %d deltas, "
+                        + "%d KB vs %d KB full snapshots (%.1f%% saved)",
+                cycles, slotCount, interval, deltaSlot.length, used / 1024, full / 1024,
+                full == 0 ? 0.0 : 100.0 * (full - used) / full);
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+}
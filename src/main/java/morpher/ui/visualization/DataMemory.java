@@ -0,0 +1,174 @@
+package morpher.ui.visualization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Contents of one data memory bank, as dumped by the simulator in `dm<bank>`, `dm<bank>_expected`
+ * and `cycle_N/dm<bank>`.
+ *
+ * A dump lists the memory as ASCII '0'/'1' characters, 8 bytes per line, byte 0 first and each
+ * byte most significant bit first. Spaces inside a line only group the bits for reading and are
+ * ignored. The memory is addressed in bytes; a {@link #WORD_BYTES 16-bit} word is little-endian,
+ * like the values on the memory ports.
+ */
+public final class DataMemory {
+    public static final int WORD_BYTES = 2;
+    public static final int ROW_BYTES = 8;
+
+    /** Bytes compared per task by {@link #diffWords(DataMemory)}; a multiple of the word size. */
+    private static final int DIFF_CHUNK = 1 << 16;
+
+    private final byte[] bytes;
+
+    private DataMemory(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Reads a memory dump from a memory-mapped file.
+     *
+     * @param path the dump
+     * @return the memory contents
+     * @throws IOException if the file cannot be read or is not a memory dump
+     */
+    public static DataMemory read(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Reads a memory dump, e.g. one returned by a {@link TraceSource}.
+     *
+     * @param buf the characters of the dump, between the buffer's position and limit
+     * @return the memory contents
+     * @throws IOException if the buffer is not a memory dump
+     */
+    public static DataMemory read(ByteBuffer buf) throws IOException {
+        return new DataMemory(readBytes(buf));
+    }
+
+    /**
+     * Packs the ASCII '0'/'1' characters between the buffer's position and limit into bytes.
+     * Whitespace is ignored.
+     *
+     * @param buf the characters of a memory dump
+     * @return the memory bytes, in address order
+     * @throws IOException if the buffer holds other characters or a partial byte
+     */
+    static byte[] readBytes(ByteBuffer buf) throws IOException {
+        byte[] out = new byte[buf.remaining() / Byte.SIZE];
+        int count = 0;
+        int value = 0;
+        int bits = 0;
+        for (int i = buf.position(); i < buf.limit(); i++) {
+            byte b = buf.get(i);
+            if (b == '0' || b == '1') {
+                value = (value << 1) | (b - '0');
+                if (++bits == Byte.SIZE) {
+                    out[count++] = (byte) value;
+                    value = 0;
+                    bits = 0;
+                }
+            } else if (b > ' ') {
+                throw new IOException("Unexpected character '" + (char) b + "' at offset " + i);
+            }
+        }
+        if (bits != 0) {
+            throw new IOException("Memory dump ends with a partial byte of " + bits + " bits");
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    /**
+     * @return the size of the memory in bytes
+     */
+    public int size() {
+        return bytes.length;
+    }
+
+    /**
+     * @return the number of 16-bit words, counting a trailing odd byte as a word
+     */
+    public int wordCount() {
+        return (bytes.length + WORD_BYTES - 1) / WORD_BYTES;
+    }
+
+    /**
+     * @return the number of {@link #ROW_BYTES}-byte rows of the dump
+     */
+    public int rowCount() {
+        return (bytes.length + ROW_BYTES - 1) / ROW_BYTES;
+    }
+
+    /**
+     * @return the unsigned byte at an address, 0 outside the memory
+     */
+    public int byteAt(int address) {
+        return address >= 0 && address < bytes.length ? bytes[address] & 0xFF : 0;
+    }
+
+    /**
+     * @return the unsigned little-endian 16-bit word with the given index, 0 outside the memory
+     */
+    public int wordAt(int word) {
+        int address = word * WORD_BYTES;
+        return byteAt(address) | byteAt(address + 1) << 8;
+    }
+
+    /**
+     * Compares this memory with another one word by word. The common part is split into chunks
+     * compared in parallel with {@link Arrays#mismatch(byte[], int, int, byte[], int, int)},
+     * which the JDK vectorizes; words present in only one of the two memories always differ.
+     *
+     * @param other the memory to compare with, typically the expected contents
+     * @return the indices of the differing words, in increasing order
+     */
+    public int[] diffWords(DataMemory other) {
+        byte[] a = bytes;
+        byte[] b = other.bytes;
+        int commonWords = Math.min(a.length, b.length) / WORD_BYTES;
+        int commonBytes = commonWords * WORD_BYTES;
+        int totalWords = Math.max(wordCount(), other.wordCount());
+        int chunks = (commonBytes + DIFF_CHUNK - 1) / DIFF_CHUNK;
+
+        IntStream chunked = IntStream.range(0, chunks);
+        if (chunks > 1) {
+            chunked = chunked.parallel();
+        }
+        IntStream common = chunked.flatMap(chunk -> {
+            int from = chunk * DIFF_CHUNK;
+            int to = Math.min(commonBytes, from + DIFF_CHUNK);
+            IntStream.Builder words = IntStream.builder();
+            while (from < to) {
+                int i = Arrays.mismatch(a, from, to, b, from, to);
+                if (i < 0) {
+                    break;
+                }
+                int word = (from + i) / WORD_BYTES;
+                words.add(word);
+                from = (word + 1) * WORD_BYTES;
+            }
+            return words.build();
+        });
+        return IntStream.concat(common, IntStream.range(commonWords, totalWords)).toArray();
+    }
+
+    /**
+     * @return a copy of the bytes in [from, to)
+     */
+    public byte[] bytes(int from, int to) {
+        return Arrays.copyOfRange(bytes, from, to);
+    }
+
+    @Override
+    public String toString() {
+        return bytes.length + " bytes";
+    }
+}
@@ -0,0 +1,305 @@
+package morpher.ui.visualization;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Singleton class giving access to the data memory dumps of a design directory or a
+ * {@link TraceArchive}: the final contents (`dm<bank>`), the expected contents (`dm<bank>_expected`), the per-cycle contents
+ * (`cycle_N/dm<bank>`) and the per-cycle port activity (`cycle_N/dm<bank>_port<n>`).
+ *
+ * Final and expected contents are read once per bank and kept with their word-level diff. The
+ * cycle at which each address was first written is derived from the port dumps the first time it
+ * is asked for; banks without port dumps fall back to the first cycle at which the per-cycle
+ * contents changed.
+ */
+public class DataMemoryLoader {
+    private static final Logger LOGGER = Logger.getLogger(DataMemoryLoader.class.getName());
+    private static final Pattern BANK_FILE = Pattern.compile("dm(\\d+)");
+    private static final Pattern PORT_FILE = Pattern.compile("(dm\\d+)_port(\\d+)");
+    private static final String EXPECTED_SUFFIX = "_expected";
+    private static DataMemoryLoader instance;
+
+    private Path designDir;
+    private TraceSource source;
+    private int cycleCount;
+    private List<String> banks = List.of();
+    private final Map<String, DataMemory> actual = new HashMap<>();
+    private final Map<String, DataMemory> expected = new HashMap<>();
+    private final Map<String, int[]> diffs = new HashMap<>();
+    private final Map<String, int[]> firstWrites = new HashMap<>();
+
+    private DataMemoryLoader() {
+        refresh(RoutingLoader.getDemoDirectory());
+    }
+
+    public static synchronized DataMemoryLoader get() {
+        if (instance == null) {
+            instance = new DataMemoryLoader();
+        }
+        return instance;
+    }
+
+    /**
+     * Switches to another design directory or trace archive and drops everything read so far.
+     *
+     * @param dir the directory containing the `dm*` dumps and the `cycle_N` directories, or a
+     *            trace archive
+     */
+    public synchronized void refresh(Path dir) {
+        this.designDir = dir;
+        actual.clear();
+        expected.clear();
+        diffs.clear();
+        firstWrites.clear();
+        try {
+            source = TraceSource.open(dir);
+            banks = source.files().stream()
+                    .map(BANK_FILE::matcher)
+                    .filter(Matcher::matches)
+                    .sorted(Comparator.comparingInt(m -> Integer.parseInt(m.group(1))))
+                    .map(Matcher::group)
+                    .toList();
+            cycleCount = source.cycleCount();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot open {0}: {1}", new Object[]{dir, e.getMessage()});
+            source = null;
+            banks = List.of();
+            cycleCount = 0;
+        }
+    }
+
+    /**
+     * @return the design directory or trace archive currently read
+     */
+    public synchronized Path getDesignDirectory() {
+        return designDir;
+    }
+
+    /**
+     * @return the names of the memory banks with a final dump, e.g. "dm0", in bank order
+     */
+    public synchronized List<String> getBanks() {
+        return banks;
+    }
+
+    /**
+     * @return the number of cycles of the trace (the highest N of `cycle_N` plus one)
+     */
+    public synchronized int getCycleCount() {
+        return cycleCount;
+    }
+
+    /**
+     * @param bank the bank name, e.g. "dm0"
+     * @return the final contents of the bank, or null if there is no readable dump
+     */
+    public synchronized DataMemory getActual(String bank) {
+        return actual.computeIfAbsent(bank, b -> readOrNull(source, -1, b));
+    }
+
+    /**
+     * @param bank the bank name, e.g. "dm0"
+     * @return the expected contents of the bank, or null if there is no readable dump
+     */
+    public synchronized DataMemory getExpected(String bank) {
+        return expected.computeIfAbsent(bank, b -> readOrNull(source, -1, b + EXPECTED_SUFFIX));
+    }
+
+    /**
+     * Reads the contents of a bank at a cycle. The result is not cached.
+     *
+     * @param bank the bank name, e.g. "dm0"
+     * @param cycle the cycle number
+     * @return the contents, or null if the cycle has no readable dump of the bank
+     */
+    public DataMemory getAtCycle(String bank, int cycle) {
+        TraceSource trace;
+        synchronized (this) {
+            trace = source;
+        }
+        return readOrNull(trace, cycle, bank);
+    }
+
+    /**
+     * Reads the activity of every port of a bank at a cycle.
+     *
+     * @param bank the bank name, e.g. "dm0"
+     * @param cycle the cycle number
+     * @return the port activity by port number, in port order; empty if the cycle has no port dump
+     */
+    public Map<Integer, PortAccess> getPorts(String bank, int cycle) {
+        TraceSource trace;
+        synchronized (this) {
+            trace = source;
+        }
+        return readPorts(trace, bank, cycle);
+    }
+
+    /**
+     * Compares the final contents of a bank with the expected ones.
+     *
+     * @param bank the bank name, e.g. "dm0"
+     * @return the indices of the 16-bit words that differ; empty if either dump is missing
+     */
+    public synchronized int[] diff(String bank) {
+        int[] cached = diffs.get(bank);
+        if (cached == null) {
+            DataMemory a = getActual(bank);
+            DataMemory e = getExpected(bank);
+            cached = a == null || e == null ? new int[0] : a.diffWords(e);
+            diffs.put(bank, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Returns the first cycle at which an address of a bank was written.
+     *
+     * @param bank the bank name, e.g. "dm0"
+     * @param address the byte address
+     * @return the cycle number, or -1 if the address was never written
+     */
+    public int firstWriteCycle(String bank, int address) {
+        int[] cycles = firstWrites(bank);
+        return address >= 0 && address < cycles.length ? cycles[address] : -1;
+    }
+
+    /**
+     * Returns the first cycle at which any byte of a 16-bit word of a bank was written.
+     *
+     * @param bank the bank name, e.g. "dm0"
+     * @param word the word index
+     * @return the cycle number, or -1 if the word was never written
+     */
+    public int firstWriteCycleOfWord(String bank, int word) {
+        int first = -1;
+        for (int k = 0; k < DataMemory.WORD_BYTES; k++) {
+            int c = firstWriteCycle(bank, word * DataMemory.WORD_BYTES + k);
+            if (c >= 0 && (first < 0 || c < first)) {
+                first = c;
+            }
+        }
+        return first;
+    }
+
+    private int[] firstWrites(String bank) {
+        TraceSource trace;
+        int cycles;
+        int size;
+        synchronized (this) {
+            int[] cached = firstWrites.get(bank);
+            if (cached != null) {
+                return cached;
+            }
+            trace = source;
+            cycles = cycleCount;
+            DataMemory a = getActual(bank);
+            DataMemory e = getExpected(bank);
+            size = Math.max(a == null ? 0 : a.size(), e == null ? 0 : e.size());
+        }
+        // scan outside the lock; the cycles are read in parallel and folded in cycle order
+        int[] first = new int[size];
+        Arrays.fill(first, -1);
+        List<Map<Integer, PortAccess>> ports = IntStream.range(0, cycles).parallel()
+                .mapToObj(c -> readPorts(trace, bank, c))
+                .toList();
+        boolean anyPort = false;
+        for (int c = 0; c < cycles; c++) {
+            anyPort |= !ports.get(c).isEmpty();
+            for (PortAccess access : ports.get(c).values()) {
+                if (access.isWrite()) {
+                    int end = Math.min(first.length, access.address() + access.mode().bytes());
+                    for (int addr = access.address(); addr < end; addr++) {
+                        if (first[addr] < 0) {
+                            first[addr] = c;
+                        }
+                    }
+                }
+            }
+        }
+        if (!anyPort) {
+            firstChanges(trace, bank, cycles, first);
+        }
+        synchronized (this) {
+            if (trace == source) {
+                firstWrites.put(bank, first);
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Fills {@code first} with the first cycle at which each byte differs from the previous
+     * cycle's dump.
+     */
+    private static void firstChanges(TraceSource trace, String bank, int cycles, int[] first) {
+        DataMemory prev = null;
+        for (int c = 0; c < cycles; c++) {
+            DataMemory curr = readOrNull(trace, c, bank);
+            if (curr == null) {
+                continue;
+            }
+            if (prev != null) {
+                for (int word : curr.diffWords(prev)) {
+                    for (int k = 0; k < DataMemory.WORD_BYTES; k++) {
+                        int addr = word * DataMemory.WORD_BYTES + k;
+                        if (addr < first.length && first[addr] < 0 && curr.byteAt(addr) != prev.byteAt(addr)) {
+                            first[addr] = c;
+                        }
+                    }
+                }
+            }
+            prev = curr;
+        }
+    }
+
+    private static Map<Integer, PortAccess> readPorts(TraceSource trace, String bank, int cycle) {
+        if (trace == null) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, PortAccess> ports = new TreeMap<>();
+        for (String name : trace.cycleFiles(cycle)) {
+            Matcher m = PORT_FILE.matcher(name);
+            if (!m.matches() || !m.group(1).equals(bank)) {
+                continue;
+            }
+            try {
+                ports.put(Integer.parseInt(m.group(2)), StateFileParser.parsePort(trace, cycle, name));
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Cannot parse {0}: {1}",
+                        new Object[]{trace.location().resolve("cycle_" + cycle).resolve(name), e.getMessage()});
+            }
+        }
+        return Collections.unmodifiableMap(ports);
+    }
+
+    /**
+     * Reads a dump of a bank.
+     *
+     * @param cycle the cycle number, or -1 for a top-level dump
+     */
+    private static DataMemory readOrNull(TraceSource trace, int cycle, String name) {
+        if (trace == null || !(cycle < 0 ? trace.exists(name) : trace.exists(cycle, name))) {
+            return null;
+        }
+        try {
+            return DataMemory.read(cycle < 0 ? trace.read(name) : trace.read(cycle, name));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot read {0}: {1}", new Object[]{name, e.getMessage()});
+            return null;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package morpher.ui.visualization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Watches a design directory for created, modified or deleted files and reports them in
+ * debounced batches.
+ *
+ * Mappers typically rewrite a handful of files in quick succession, so events are collected
+ * until the directory has been quiet for the debounce interval and then delivered together
+ * on the watcher's daemon thread. If the platform drops events (overflow), every matching
+ * file in the directory is reported.
+ */
+public class DesignWatcher implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(DesignWatcher.class.getName());
+    private final Path dir;
+    private final long debounceMillis;
+    private final Predicate<Path> filter;
+    private final Consumer<Set<Path>> onChange;
+    private final WatchService service;
+    private Thread thread;
+
+    /**
+     * @param dir the directory to watch
+     * @param debounceMillis how long the directory must stay quiet before a batch is delivered
+     * @param filter selects the files of interest
+     * @param onChange receives each batch of changed files
+     * @throws IOException if the directory cannot be registered
+     */
+    public DesignWatcher(Path dir, long debounceMillis, Predicate<Path> filter,
+                         Consumer<Set<Path>> onChange) throws IOException {
+        this.dir = dir;
+        this.debounceMillis = debounceMillis;
+        this.filter = filter;
+        this.onChange = onChange;
+        this.service = FileSystems.getDefault().newWatchService();
+        dir.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    /**
+     * Starts delivering change batches on a background daemon thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "design-watcher-" + dir.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        service.close();
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    private void run() {
+        Set<Path> pending = new LinkedHashSet<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = pending.isEmpty()
+                        ? service.take()
+                        : service.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    // quiet for a full debounce interval
+                    deliver(pending);
+                    pending = new LinkedHashSet<>();
+                    continue;
+                }
+                collect(key, pending);
+                if (!key.reset()) {
+                    LOGGER.log(Level.WARNING, "Design directory {0} is no longer accessible", dir);
+                    deliver(pending);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> pending) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    files.filter(filter).forEach(pending::add);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Cannot rescan {0}: {1}", new Object[]{dir, e.getMessage()});
+                }
+                continue;
+            }
+            Path changed = dir.resolve((Path) event.context());
+            if (filter.test(changed)) {
+                pending.add(changed);
+            }
+        }
+    }
+
+    private void deliver(Set<Path> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        try {
+            onChange.accept(changed);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to apply changes in " + dir, e);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package morpher.ui.visualization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact, immutable in-memory model of a Data Flow Graph.
+ *
+ * Nodes are stored in parallel primitive arrays (opcode id, ASAP/ALAP schedule, basic block,
+ * constant, shift and offset), addressed through their DFG node index. Data edges and
+ * recurrence edges are kept in compressed sparse row form in both directions, so the fan-in
+ * and fan-out of a node are contiguous array slices:
+ * <pre>
+ *   for (int k = 0; k &lt; g.fanOut(idx); k++) { int succ = g.successor(idx, k); ... }
+ * </pre>
+ * Node indices can be any int, negative or sparse: they are found by a binary search over a
+ * sorted copy, so the memory used does not depend on how large they are.
+ *
+ * Graphs are built with a {@link Builder}, usually by {@link DfgLoader}.
+ */
+public class DfgGraph {
+    private final int[] ids;
+    private final int[] sortedIds;
+    private final int[] denseOf;
+    private final int[] opIds;
+    private final int[] asap;
+    private final int[] alap;
+    private final int[] bb;
+    private final int[] constant;
+    private final int[] shift;
+    private final int[] offset;
+
+    private final int[] outStart;
+    private final int[] outTarget;
+    private final byte[] outNextIter;
+    private final byte[] outType;
+    private final int[] inStart;
+    private final int[] inSource;
+    private final int[] inEdge;
+    private final int[] recOutStart;
+    private final int[] recOutTarget;
+    private final int[] recInStart;
+    private final int[] recInSource;
+    private final String[] edgeTypes;
+    private final int iterStride;
+    private final int iterMaxCount;
+
+    private DfgGraph(Builder b) {
+        int n = b.nodes;
+        this.ids = Arrays.copyOf(b.ids, n);
+        this.opIds = Arrays.copyOf(b.opIds, n);
+        this.asap = Arrays.copyOf(b.asap, n);
+        this.alap = Arrays.copyOf(b.alap, n);
+        this.bb = Arrays.copyOf(b.bb, n);
+        this.constant = Arrays.copyOf(b.constant, n);
+        this.shift = Arrays.copyOf(b.shift, n);
+        this.offset = Arrays.copyOf(b.offset, n);
+        this.edgeTypes = b.edgeTypes.toArray(new String[0]);
+        this.iterStride = b.iterStride;
+        this.iterMaxCount = b.iterMaxCount;
+
+        // node ids in ascending order, each with its index; a repeated id maps to its last node
+        long[] byId = new long[n];
+        for (int i = 0; i < n; i++) {
+            byId[i] = ((long) ids[i] << 32) | i;
+        }
+        Arrays.sort(byId);
+        int distinct = 0;
+        for (int k = 0; k < n; k++) {
+            if (k + 1 < n && (int) (byId[k + 1] >> 32) == (int) (byId[k] >> 32)) {
+                continue;
+            }
+            byId[distinct++] = byId[k];
+        }
+        this.sortedIds = new int[distinct];
+        this.denseOf = new int[distinct];
+        for (int k = 0; k < distinct; k++) {
+            sortedIds[k] = (int) (byId[k] >> 32);
+            denseOf[k] = (int) byId[k];
+        }
+
+        // data edges, dropping those that point at unknown nodes
+        int[] src = new int[b.edges];
+        int[] dst = new int[b.edges];
+        int[] kept = new int[b.edges];
+        int m = 0;
+        for (int e = 0; e < b.edges; e++) {
+            int s = dense(b.edgeSrc[e]);
+            int d = dense(b.edgeDst[e]);
+            if (s >= 0 && d >= 0) {
+                src[m] = s;
+                dst[m] = d;
+                kept[m] = e;
+                m++;
+            }
+        }
+        this.outStart = new int[n + 1];
+        this.outTarget = new int[m];
+        this.outNextIter = new byte[m];
+        this.outType = new byte[m];
+        int[] outOrder = csr(src, m, n, outStart);
+        for (int k = 0; k < m; k++) {
+            int e = outOrder[k];
+            outTarget[k] = dst[e];
+            outNextIter[k] = (byte) b.edgeNextIter[kept[e]];
+            outType[k] = (byte) b.edgeType[kept[e]];
+        }
+        // fan-in: transpose of the out-edge arrays, remembering the out-edge of each in-edge
+        int[] outSrc = new int[m];
+        for (int i = 0; i < n; i++) {
+            for (int k = outStart[i]; k < outStart[i + 1]; k++) {
+                outSrc[k] = i;
+            }
+        }
+        this.inStart = new int[n + 1];
+        this.inSource = new int[m];
+        this.inEdge = csr(outTarget, m, n, inStart);
+        for (int k = 0; k < m; k++) {
+            inSource[k] = outSrc[inEdge[k]];
+        }
+
+        // recurrence edges: parent -> child
+        int[] rSrc = new int[b.recEdges];
+        int[] rDst = new int[b.recEdges];
+        int r = 0;
+        for (int e = 0; e < b.recEdges; e++) {
+            int s = dense(b.recParent[e]);
+            int d = dense(b.recChild[e]);
+            if (s >= 0 && d >= 0) {
+                rSrc[r] = s;
+                rDst[r] = d;
+                r++;
+            }
+        }
+        this.recOutStart = new int[n + 1];
+        this.recOutTarget = new int[r];
+        int[] recOrder = csr(rSrc, r, n, recOutStart);
+        for (int k = 0; k < r; k++) {
+            recOutTarget[k] = rDst[recOrder[k]];
+        }
+        this.recInStart = new int[n + 1];
+        this.recInSource = new int[r];
+        int[] recInOrder = csr(rDst, r, n, recInStart);
+        for (int k = 0; k < r; k++) {
+            recInSource[k] = rSrc[recInOrder[k]];
+        }
+    }
+
+    /**
+     * Counting sort of {@code m} edges by their key: fills {@code start} with the first slot of
+     * every key and returns, per slot, the index of the edge placed there.
+     */
+    private static int[] csr(int[] key, int m, int n, int[] start) {
+        for (int e = 0; e < m; e++) {
+            start[key[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            start[i + 1] += start[i];
+        }
+        int[] fill = Arrays.copyOf(start, n);
+        int[] order = new int[m];
+        for (int e = 0; e < m; e++) {
+            order[fill[key[e]]++] = e;
+        }
+        return order;
+    }
+
+    private int dense(int id) {
+        int k = Arrays.binarySearch(sortedIds, id);
+        return k >= 0 ? denseOf[k] : -1;
+    }
+
+    private int require(int id) {
+        int i = dense(id);
+        if (i < 0) {
+            throw new IllegalArgumentException("Unknown DFG node: " + id);
+        }
+        return i;
+    }
+
+    /**
+     * @return the number of nodes in the graph
+     */
+    public int nodeCount() {
+        return ids.length;
+    }
+
+    /**
+     * @return the number of data edges in the graph
+     */
+    public int edgeCount() {
+        return outTarget.length;
+    }
+
+    /**
+     * @param i position in [0, nodeCount())
+     * @return the DFG index of the i-th node, in file order
+     */
+    public int nodeAt(int i) {
+        return ids[i];
+    }
+
+    public boolean contains(int idx) {
+        return dense(idx) >= 0;
+    }
+
+    /**
+     * @return the {@link OpcodeRegistry} id of the node's operation
+     */
+    public int opId(int idx) {
+        return opIds[require(idx)];
+    }
+
+    public int asap(int idx) {
+        return asap[require(idx)];
+    }
+
+    public int alap(int idx) {
+        return alap[require(idx)];
+    }
+
+    /**
+     * @return the scheduling slack of the node, ALAP - ASAP
+     */
+    public int mobility(int idx) {
+        int i = require(idx);
+        return alap[i] - asap[i];
+    }
+
+    public int basicBlock(int idx) {
+        return bb[require(idx)];
+    }
+
+    public int constant(int idx) {
+        return constant[require(idx)];
+    }
+
+    public int shift(int idx) {
+        return shift[require(idx)];
+    }
+
+    public int offset(int idx) {
+        return offset[require(idx)];
+    }
+
+    public int fanOut(int idx) {
+        int i = require(idx);
+        return outStart[i + 1] - outStart[i];
+    }
+
+    /**
+     * @return the DFG index of the k-th consumer of node {@code idx}
+     */
+    public int successor(int idx, int k) {
+        return ids[outTarget[outStart[require(idx)] + k]];
+    }
+
+    /**
+     * @return the nextiter flag of the k-th output edge (1 if the value is consumed in the next iteration)
+     */
+    public int outputNextIter(int idx, int k) {
+        return outNextIter[outStart[require(idx)] + k];
+    }
+
+    /**
+     * @return the type of the k-th output edge, e.g. "I1"
+     */
+    public String outputType(int idx, int k) {
+        return edgeTypes[outType[outStart[require(idx)] + k]];
+    }
+
+    public int fanIn(int idx) {
+        int i = require(idx);
+        return inStart[i + 1] - inStart[i];
+    }
+
+    /**
+     * @return the DFG index of the k-th producer feeding node {@code idx}
+     */
+    public int predecessor(int idx, int k) {
+        return ids[inSource[inStart[require(idx)] + k]];
+    }
+
+    /**
+     * @return the nextiter flag of the k-th input edge of node {@code idx}
+     */
+    public int inputNextIter(int idx, int k) {
+        return outNextIter[inEdge[inStart[require(idx)] + k]];
+    }
+
+    /**
+     * @return the number of recurrence parents of node {@code idx}
+     */
+    public int recParentCount(int idx) {
+        int i = require(idx);
+        return recInStart[i + 1] - recInStart[i];
+    }
+
+    public int recParent(int idx, int k) {
+        return ids[recInSource[recInStart[require(idx)] + k]];
+    }
+
+    /**
+     * @return the number of nodes that name {@code idx} as a recurrence parent
+     */
+    public int recChildCount(int idx) {
+        int i = require(idx);
+        return recOutStart[i + 1] - recOutStart[i];
+    }
+
+    public int recChild(int idx, int k) {
+        return ids[recOutTarget[recOutStart[require(idx)] + k]];
+    }
+
+    /**
+     * @return the DFG indices of all consumers of node {@code idx}
+     */
+    public int[] successors(int idx) {
+        int i = require(idx);
+        int[] res = new int[outStart[i + 1] - outStart[i]];
+        for (int k = 0; k < res.length; k++) {
+            res[k] = ids[outTarget[outStart[i] + k]];
+        }
+        return res;
+    }
+
+    /**
+     * @return the DFG indices of all producers feeding node {@code idx}
+     */
+    public int[] predecessors(int idx) {
+        int i = require(idx);
+        int[] res = new int[inStart[i + 1] - inStart[i]];
+        for (int k = 0; k < res.length; k++) {
+            res[k] = ids[inSource[inStart[i] + k]];
+        }
+        return res;
+    }
+
+    public int iterStride() {
+        return iterStride;
+    }
+
+    public int iterMaxCount() {
+        return iterMaxCount;
+    }
+
+    /**
+     * Accumulates nodes and edges in file order and builds an immutable graph.
+     */
+    public static class Builder {
+        private int nodes;
+        private int[] ids = new int[16];
+        private int[] opIds = new int[16];
+        private int[] asap = new int[16];
+        private int[] alap = new int[16];
+        private int[] bb = new int[16];
+        private int[] constant = new int[16];
+        private int[] shift = new int[16];
+        private int[] offset = new int[16];
+        private int edges;
+        private int[] edgeSrc = new int[16];
+        private int[] edgeDst = new int[16];
+        private int[] edgeNextIter = new int[16];
+        private int[] edgeType = new int[16];
+        private int recEdges;
+        private int[] recParent = new int[4];
+        private int[] recChild = new int[4];
+        private final List<String> edgeTypes = new ArrayList<>();
+        private int iterStride;
+        private int iterMaxCount;
+
+        public Builder addNode(int idx, String op, int asap, int alap, int bb,
+                               int constant, int shift, int offset) {
+            if (nodes == ids.length) {
+                int capacity = nodes * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                opIds = Arrays.copyOf(opIds, capacity);
+                this.asap = Arrays.copyOf(this.asap, capacity);
+                this.alap = Arrays.copyOf(this.alap, capacity);
+                this.bb = Arrays.copyOf(this.bb, capacity);
+                this.constant = Arrays.copyOf(this.constant, capacity);
+                this.shift = Arrays.copyOf(this.shift, capacity);
+                this.offset = Arrays.copyOf(this.offset, capacity);
+            }
+            ids[nodes] = idx;
+            opIds[nodes] = OpcodeRegistry.get().intern(op);
+            this.asap[nodes] = asap;
+            this.alap[nodes] = alap;
+            this.bb[nodes] = bb;
+            this.constant[nodes] = constant;
+            this.shift[nodes] = shift;
+            this.offset[nodes] = offset;
+            nodes++;
+            return this;
+        }
+
+        /**
+         * Adds a data edge from node {@code src} to node {@code dst}.
+         */
+        public Builder addEdge(int src, int dst, int nextIter, String type) {
+            if (edges == edgeSrc.length) {
+                int capacity = edges * 2;
+                edgeSrc = Arrays.copyOf(edgeSrc, capacity);
+                edgeDst = Arrays.copyOf(edgeDst, capacity);
+                edgeNextIter = Arrays.copyOf(edgeNextIter, capacity);
+                edgeType = Arrays.copyOf(edgeType, capacity);
+            }
+            int t = edgeTypes.indexOf(type);
+            if (t < 0) {
+                t = edgeTypes.size();
+                edgeTypes.add(type);
+            }
+            edgeSrc[edges] = src;
+            edgeDst[edges] = dst;
+            edgeNextIter[edges] = nextIter;
+            edgeType[edges] = t;
+            edges++;
+            return this;
+        }
+
+        /**
+         * Adds a recurrence edge: node {@code child} lists {@code parent} in its RecParents.
+         */
+        public Builder addRecEdge(int parent, int child) {
+            if (recEdges == recParent.length) {
+                recParent = Arrays.copyOf(recParent, recEdges * 2);
+                recChild = Arrays.copyOf(recChild, recEdges * 2);
+            }
+            recParent[recEdges] = parent;
+            recChild[recEdges] = child;
+            recEdges++;
+            return this;
+        }
+
+        public Builder iteration(int stride, int maxCount) {
+            this.iterStride = stride;
+            this.iterMaxCount = maxCount;
+            return this;
+        }
+
+        public DfgGraph build() {
+            return new DfgGraph(this);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package morpher.ui.visualization;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Streaming loader of DFG XML files into a {@link DfgGraph}.
+ *
+ * The file is read with a StAX cursor, one element at a time, so memory use is bounded by the
+ * graph itself rather than by a DOM of the whole document. The recognised structure is
+ * <pre>
+ *   &lt;ITER stride=".." max_count=".."/&gt;
+ *   &lt;Node idx ASAP ALAP BB CONST SHIFT OFFSET&gt;
+ *     &lt;OP&gt;ADD&lt;/OP&gt;
+ *     &lt;Outputs&gt;&lt;Output idx nextiter type/&gt;...&lt;/Outputs&gt;
+ *     &lt;RecParents&gt;&lt;RecParent idx/&gt;...&lt;/RecParents&gt;
+ *   &lt;/Node&gt;
+ * </pre>
+ * Data edges are taken from the Outputs of each node; the Inputs list carries the same edges
+ * seen from the consumer and is skipped.
+ */
+public final class DfgLoader {
+    private static final XMLInputFactory FACTORY = XMLInputFactory.newFactory();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private DfgLoader() {
+    }
+
+    /**
+     * Parses a DFG XML document.
+     *
+     * @param input the DFG xml
+     * @return the graph described by the document
+     * @throws XMLStreamException if the document is malformed
+     */
+    public static DfgGraph load(InputStream input) throws XMLStreamException {
+        DfgGraph.Builder builder = new DfgGraph.Builder();
+        XMLStreamReader xml = FACTORY.createXMLStreamReader(input);
+        try {
+            int node = -1;
+            int asap = 0, alap = 0, bb = 0, constant = 0, shift = 0, offset = 0;
+            String op = "";
+            boolean inOutputs = false;
+            boolean inRecParents = false;
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "ITER" -> builder.iteration(intAttr(xml, "stride"), intAttr(xml, "max_count"));
+                        case "Node" -> {
+                            node = intAttr(xml, "idx");
+                            asap = intAttr(xml, "ASAP");
+                            alap = intAttr(xml, "ALAP");
+                            bb = intAttr(xml, "BB");
+                            constant = intAttr(xml, "CONST");
+                            shift = intAttr(xml, "SHIFT");
+                            offset = intAttr(xml, "OFFSET");
+                            op = "";
+                        }
+                        case "OP" -> op = xml.getElementText().trim();
+                        case "Outputs" -> inOutputs = true;
+                        case "RecParents" -> inRecParents = true;
+                        default -> {
+                            if (node >= 0 && inOutputs) {
+                                String type = xml.getAttributeValue(null, "type");
+                                builder.addEdge(node, intAttr(xml, "idx"), intAttr(xml, "nextiter"),
+                                        type == null ? "" : type);
+                            } else if (node >= 0 && inRecParents) {
+                                builder.addRecEdge(intAttr(xml, "idx"), node);
+                            }
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    switch (xml.getLocalName()) {
+                        case "Node" -> {
+                            builder.addNode(node, op, asap, alap, bb, constant, shift, offset);
+                            node = -1;
+                        }
+                        case "Outputs" -> inOutputs = false;
+                        case "RecParents" -> inRecParents = false;
+                        default -> {
+                        }
+                    }
+                }
+            }
+        } finally {
+            xml.close();
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the integer value of an attribute, or 0 if it is missing or not a number
+     */
+    private static int intAttr(XMLStreamReader xml, String name) {
+        String value = xml.getAttributeValue(null, name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Binary form of a graph for the {@link SnapshotCache}. Opcodes are stored by name since
+     * registry ids are only stable within one run.
+     */
+    static final SnapshotCache.Codec<DfgGraph> CODEC = new SnapshotCache.Codec<>() {
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public void write(DataOutputStream out, DfgGraph g) throws IOException {
+            out.writeInt(g.iterStride());
+            out.writeInt(g.iterMaxCount());
+            out.writeInt(g.nodeCount());
+            for (int i = 0; i < g.nodeCount(); i++) {
+                int idx = g.nodeAt(i);
+                out.writeInt(idx);
+                SnapshotCache.writeString(out, OpcodeRegistry.get().name(g.opId(idx)));
+                out.writeInt(g.asap(idx));
+                out.writeInt(g.alap(idx));
+                out.writeInt(g.basicBlock(idx));
+                out.writeInt(g.constant(idx));
+                out.writeInt(g.shift(idx));
+                out.writeInt(g.offset(idx));
+            }
+            out.writeInt(g.edgeCount());
+            for (int i = 0; i < g.nodeCount(); i++) {
+                int idx = g.nodeAt(i);
+                for (int k = 0; k < g.fanOut(idx); k++) {
+                    out.writeInt(idx);
+                    out.writeInt(g.successor(idx, k));
+                    out.writeByte(g.outputNextIter(idx, k));
+                    SnapshotCache.writeString(out, g.outputType(idx, k));
+                }
+            }
+            int rec = 0;
+            for (int i = 0; i < g.nodeCount(); i++) {
+                rec += g.recParentCount(g.nodeAt(i));
+            }
+            out.writeInt(rec);
+            for (int i = 0; i < g.nodeCount(); i++) {
+                int idx = g.nodeAt(i);
+                for (int k = 0; k < g.recParentCount(idx); k++) {
+                    out.writeInt(g.recParent(idx, k));
+                    out.writeInt(idx);
+                }
+            }
+        }
+
+        @Override
+        public DfgGraph read(ByteBuffer in) {
+            DfgGraph.Builder builder = new DfgGraph.Builder().iteration(in.getInt(), in.getInt());
+            int nodes = in.getInt();
+            for (int i = 0; i < nodes; i++) {
+                int idx = in.getInt();
+                String op = SnapshotCache.readString(in);
+                builder.addNode(idx, op, in.getInt(), in.getInt(), in.getInt(),
+                        in.getInt(), in.getInt(), in.getInt());
+            }
+            int edges = in.getInt();
+            for (int i = 0; i < edges; i++) {
+                int src = in.getInt();
+                int dst = in.getInt();
+                int nextIter = in.get();
+                builder.addEdge(src, dst, nextIter, SnapshotCache.readString(in));
+            }
+            int rec = in.getInt();
+            for (int i = 0; i < rec; i++) {
+                builder.addRecEdge(in.getInt(), in.getInt());
+            }
+            return builder.build();
+        }
+    };
+}
@@ -0,0 +1,104 @@
+package morpher.ui.visualization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * {@link TraceSource} over a design directory. Files are memory-mapped when read.
+ */
+final class DirectoryTraceSource implements TraceSource {
+    private static final Pattern CYCLE_DIR = Pattern.compile("cycle_(\\d+)");
+
+    private final Path dir;
+    private final List<String> files;
+    private final int cycleCount;
+
+    DirectoryTraceSource(Path dir) throws IOException {
+        this.dir = dir;
+        try (Stream<Path> list = Files.list(dir)) {
+            List<Path> entries = list.toList();
+            this.files = entries.stream()
+                    .filter(Files::isRegularFile)
+                    .map(p -> p.getFileName().toString())
+                    .sorted()
+                    .toList();
+            this.cycleCount = entries.stream()
+                    .map(p -> CYCLE_DIR.matcher(p.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToInt(m -> Integer.parseInt(m.group(1)) + 1)
+                    .max()
+                    .orElse(0);
+        }
+    }
+
+    @Override
+    public Path location() {
+        return dir;
+    }
+
+    @Override
+    public List<String> files() {
+        return files;
+    }
+
+    @Override
+    public int cycleCount() {
+        return cycleCount;
+    }
+
+    @Override
+    public List<String> cycleFiles(int cycle) {
+        Path cycleDir = cycleDir(cycle);
+        if (!Files.isDirectory(cycleDir)) {
+            return List.of();
+        }
+        try (Stream<Path> list = Files.list(cycleDir)) {
+            return list.filter(Files::isRegularFile).map(p -> p.getFileName().toString()).sorted().toList();
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return Files.isRegularFile(dir.resolve(name));
+    }
+
+    @Override
+    public boolean exists(int cycle, String name) {
+        return Files.isRegularFile(cycleDir(cycle).resolve(name));
+    }
+
+    @Override
+    public ByteBuffer read(String name) throws IOException {
+        return map(dir.resolve(name));
+    }
+
+    @Override
+    public ByteBuffer read(int cycle, String name) throws IOException {
+        return map(cycleDir(cycle).resolve(name));
+    }
+
+    private Path cycleDir(int cycle) {
+        return dir.resolve("cycle_" + cycle);
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return dir.toString();
+    }
+}
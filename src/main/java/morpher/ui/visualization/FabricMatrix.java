@@ -1,8 +1,58 @@
 package morpher.ui.visualization;
 
+import morpher.ui.visualization.utils.ModuleType;
+
+import java.util.List;
+import java.util.Map;
+
 /**
  * Represents the Fabric Matrix
  * @param rows of matrix
  * @param cols of matrix
+ * @param submodules every submodule of the architecture; the first one is the fabric shown in the UI
+ * @param connections the top-level port bindings, e.g. "PE_MEM_X0_Y0.MEMPORT" to its memory bank ports
  */
-public record FabricMatrix(int rows, int cols) {}
\ No newline at end of file
+public record FabricMatrix(int rows, int cols, List<FabricSubmodule> submodules,
+                           Map<String, List<String>> connections) {
+    public FabricMatrix {
+        submodules = List.copyOf(submodules);
+        connections = Map.copyOf(connections);
+    }
+
+    /**
+     * Creates a fabric of the given size without any module information.
+     */
+    public FabricMatrix(int rows, int cols) {
+        this(rows, cols, List.of(), Map.of());
+    }
+
+    /**
+     * @return the ports a top-level port is connected to, empty if it has no binding
+     */
+    public List<String> connectionsOf(String port) {
+        return connections.getOrDefault(port, List.of());
+    }
+
+    /**
+     * @return the submodule shown in the UI, or null if the architecture is unknown
+     */
+    public FabricSubmodule primary() {
+        return submodules.isEmpty() ? null : submodules.get(0);
+    }
+
+    /**
+     * @return the kind of module at a cell of the primary submodule, PE if unknown
+     */
+    public ModuleType typeAt(Coordinate c) {
+        FabricSubmodule sub = primary();
+        return sub == null ? ModuleType.PE : sub.typeAt(c);
+    }
+
+    /**
+     * @return the name of the module at a cell of the primary submodule, or null
+     */
+    public String nameAt(Coordinate c) {
+        FabricSubmodule sub = primary();
+        return sub == null ? null : sub.nameAt(c);
+    }
+}
@@ -0,0 +1,180 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.ModuleType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One submodule of the CGRA architecture: a grid of modules laid out in {@code pattern}, with
+ * the kind and optional name of the module in every cell.
+ *
+ * Cells are stored row-major in primitive-backed arrays; a cell that the architecture file does
+ * not list is reported as {@link ModuleType#OTHER} without a name. Submodules that are not laid
+ * out on a grid (e.g. the scratchpad memory wrappers) have no cells, only named
+ * {@link Instance}s.
+ */
+public final class FabricSubmodule {
+    private static final ModuleType[] TYPES = ModuleType.values();
+
+    private final String pattern;
+    private final int rows;
+    private final int cols;
+    private final byte[] types;
+    private final String[] names;
+    private final List<Instance> instances;
+
+    /**
+     * A named instance of a module that is not placed on the grid.
+     *
+     * @param module the module kind, e.g. "SPM_B0_WRAPPER"
+     * @param name the instance name, e.g. "SPM_B0_WRAPPER_INS"
+     */
+    public record Instance(String module, String name) {}
+
+    /**
+     * @param pattern the layout pattern, e.g. "GRID"
+     * @param rows number of rows (DIMS.Y)
+     * @param cols number of columns (DIMS.X)
+     * @param types the module type of every cell, row-major, {@code -1} for unlisted cells
+     * @param names the name of every cell, row-major, null for unnamed cells
+     * @param instances the named instances outside the grid
+     */
+    FabricSubmodule(String pattern, int rows, int cols, byte[] types, String[] names, List<Instance> instances) {
+        this.pattern = pattern;
+        this.rows = rows;
+        this.cols = cols;
+        this.types = types;
+        this.names = names;
+        this.instances = List.copyOf(instances);
+    }
+
+    public String pattern() {
+        return pattern;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public List<Instance> instances() {
+        return instances;
+    }
+
+    public boolean contains(Coordinate c) {
+        return c.row() >= 0 && c.col() >= 0 && c.row() < rows && c.col() < cols;
+    }
+
+    /**
+     * @return the kind of module at a cell, {@link ModuleType#OTHER} if none is listed
+     */
+    public ModuleType typeAt(Coordinate c) {
+        if (!contains(c)) {
+            return ModuleType.OTHER;
+        }
+        byte t = types[c.row() * cols + c.col()];
+        return t < 0 ? ModuleType.OTHER : TYPES[t];
+    }
+
+    /**
+     * @return the name given to the module at a cell, or null if it has none
+     */
+    public String nameAt(Coordinate c) {
+        return contains(c) ? names[c.row() * cols + c.col()] : null;
+    }
+
+    /**
+     * @return the number of cells holding a module of the given type
+     */
+    public int count(ModuleType type) {
+        int n = 0;
+        for (byte t : types) {
+            if (t == type.ordinal()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        if (rows * cols == 0) {
+            return instances.toString();
+        }
+        return pattern + " " + rows + "x" + cols + " " + Arrays.stream(TYPES)
+                .map(t -> t + "=" + count(t))
+                .toList();
+    }
+
+    /**
+     * Collects the modules of a submodule, growing the grid when a module lies outside DIMS.
+     */
+    static class Builder {
+        private String pattern = "";
+        private int rows;
+        private int cols;
+        private int[] cellRows = new int[16];
+        private int[] cellCols = new int[16];
+        private byte[] cellTypes = new byte[16];
+        private String[] cellNames = new String[16];
+        private int size;
+        private final List<Instance> instances = new ArrayList<>();
+
+        Builder pattern(String pattern) {
+            this.pattern = pattern;
+            return this;
+        }
+
+        Builder dims(int rows, int cols) {
+            this.rows = Math.max(this.rows, rows);
+            this.cols = Math.max(this.cols, cols);
+            return this;
+        }
+
+        Builder module(int row, int col, ModuleType type, String name) {
+            if (row < 0 || col < 0) {
+                return this;
+            }
+            if (size == cellRows.length) {
+                cellRows = Arrays.copyOf(cellRows, size * 2);
+                cellCols = Arrays.copyOf(cellCols, size * 2);
+                cellTypes = Arrays.copyOf(cellTypes, size * 2);
+                cellNames = Arrays.copyOf(cellNames, size * 2);
+            }
+            cellRows[size] = row;
+            cellCols[size] = col;
+            cellTypes[size] = (byte) type.ordinal();
+            cellNames[size] = name;
+            size++;
+            return this;
+        }
+
+        Builder instance(String module, String name) {
+            instances.add(new Instance(module, name));
+            return this;
+        }
+
+        FabricSubmodule build() {
+            int r = rows;
+            int c = cols;
+            for (int i = 0; i < size; i++) {
+                r = Math.max(r, cellRows[i] + 1);
+                c = Math.max(c, cellCols[i] + 1);
+            }
+            byte[] types = new byte[r * c];
+            String[] names = new String[r * c];
+            Arrays.fill(types, (byte) -1);
+            for (int i = 0; i < size; i++) {
+                int k = cellRows[i] * c + cellCols[i];
+                types[k] = cellTypes[i];
+                names[k] = cellNames[i];
+            }
+            return new FabricSubmodule(pattern, r, c, types, names, instances);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.Direction;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds the {@link RenderFrame} of each cycle on worker threads, ahead of the navigation, and
+ * keeps the most recently used ones in a bounded cache.
+ *
+ * A frame is built from a snapshot of the grid layout taken on the FX thread by
+ * {@link #reset(FabricMatrix, Map, double[])}: the fabric, a copy of the PE map, and the port
+ * anchors of {@link GridBuilder#getPortAnchors()}. Arrows between a cell and its neighbour run
+ * from the cell's port to the point GridBuilder.GAP away from it, which is the facing port of the
+ * neighbour, also for neighbours outside the fabric. A reset drops the cached frames and the ones
+ * being built for the previous snapshot.
+ *
+ * {@link #prepareAround(int, double, int)} queues the cycle shown and the cycles the navigation is
+ * heading to, like {@link CyclePrefetcher}, and cancels the queued ones it no longer heads to. A
+ * navigation that skips cycles, such as a fast playback, gets only the cycles it will show.
+ */
+public final class FramePreparer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(FramePreparer.class.getName());
+    public static final int DEFAULT_CAPACITY = Integer.getInteger("morpher.frames.cache", 32);
+    public static final int DEFAULT_AHEAD = Integer.getInteger("morpher.frames.ahead", 8);
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int capacity;
+    private final int ahead;
+    private final ExecutorService workers;
+    private final Map<Integer, RenderFrame> cache;
+    private final Map<Integer, CompletableFuture<RenderFrame>> pending = new HashMap<>();
+    private final AtomicInteger generation = new AtomicInteger();
+    private final LongAdder built = new LongAdder();
+    private final LongAdder buildNanos = new LongAdder();
+    private Snapshot snapshot;
+
+    /** What a frame is built from; arrays and maps are not modified once handed over. */
+    private record Snapshot(int generation, FabricMatrix fabric, Map<Coordinate, PE> nodes, double[] anchors) {}
+
+    /**
+     * @param capacity the number of frames kept
+     * @param ahead the number of cycles prepared ahead of the one shown, at most capacity / 2
+     * @param threads the number of worker threads
+     */
+    public FramePreparer(int capacity, int ahead, int threads) {
+        this.capacity = Math.max(1, capacity);
+        this.ahead = Math.max(0, Math.min(ahead, this.capacity / 2));
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, RenderFrame> eldest) {
+                return size() > FramePreparer.this.capacity;
+            }
+        };
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "frame-prepare-" + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+    }
+
+    /**
+     * Prepares frames with the default capacity ({@code -Dmorpher.frames.cache}, 32 frames) and
+     * look-ahead ({@code -Dmorpher.frames.ahead}, 8 cycles), on all but one of the processors.
+     */
+    public FramePreparer() {
+        this(DEFAULT_CAPACITY, DEFAULT_AHEAD, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * Starts preparing frames for another layout, dropping every frame of the previous one.
+     *
+     * @param fabric the fabric layout
+     * @param nodes the PEs, copied; the {@link PackedRoutingStore} they refer to must not change
+     *              while frames are built from it, see PELoader.refresh(Collection)
+     * @param anchors the port anchors of the grid, see GridBuilder.getPortAnchors()
+     */
+    public synchronized void reset(FabricMatrix fabric, Map<Coordinate, PE> nodes, double[] anchors) {
+        snapshot = new Snapshot(generation.incrementAndGet(), fabric, Map.copyOf(nodes), anchors);
+        cache.clear();
+        for (CompletableFuture<RenderFrame> future : pending.values()) {
+            future.cancel(false);
+        }
+        pending.clear();
+    }
+
+    /**
+     * @return the frame of a cycle if it is built, otherwise null
+     */
+    public synchronized RenderFrame getIfReady(int cycle) {
+        return cache.get(cycle);
+    }
+
+    public synchronized boolean isReady(int cycle) {
+        return cache.containsKey(cycle);
+    }
+
+    /**
+     * Queues the frame of a cycle unless it is built or queued already.
+     *
+     * @param cycle the cycle
+     * @return the frame, completed on a worker thread; cancelled if the frame is dropped
+     *         before it is built
+     */
+    public synchronized CompletableFuture<RenderFrame> request(int cycle) {
+        RenderFrame frame = cache.get(cycle);
+        if (frame != null) {
+            return CompletableFuture.completedFuture(frame);
+        }
+        CompletableFuture<RenderFrame> future = pending.get(cycle);
+        if (future != null) {
+            return future;
+        }
+        Snapshot source = snapshot;
+        if (source == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No layout to prepare frames for"));
+        }
+        future = CompletableFuture.supplyAsync(() -> build(source, cycle), workers);
+        pending.put(cycle, future);
+        CompletableFuture<RenderFrame> queued = future;
+        future.whenComplete((done, e) -> finished(source, cycle, queued, done, e));
+        return future;
+    }
+
+    /**
+     * Caches a frame built for the current layout; a cancelled one was removed by its canceller.
+     */
+    private synchronized void finished(Snapshot source, int cycle, CompletableFuture<RenderFrame> future,
+                                       RenderFrame frame, Throwable e) {
+        if (source.generation() != generation.get() || e instanceof CancellationException) {
+            return;
+        }
+        pending.remove(cycle, future);
+        if (frame != null) {
+            cache.put(cycle, frame);
+        } else {
+            LOGGER.log(Level.WARNING, "Cannot prepare frame of cycle {0}: {1}", new Object[]{cycle, e.getMessage()});
+        }
+    }
+
+    /**
+     * Queues the frame of the cycle shown, then those of the cycles the navigation is heading
+     * to, nearest first, and cancels the other queued frames.
+     *
+     * @param cycle the cycle shown
+     * @param stride the cycles the navigation moves by per step, positive forward, negative
+     *               backward; the cycles of the next steps are prepared. 0 if unknown, in which
+     *               case the cycles next to the one shown are prepared, half on each side
+     * @param cycleCount the number of cycles; later ones are not prepared
+     */
+    public synchronized void prepareAround(int cycle, double stride, int cycleCount) {
+        Set<Integer> wanted = new LinkedHashSet<>();
+        wanted.add(cycle);
+        for (int d = 1; d <= (stride == 0 ? ahead / 2 : ahead); d++) {
+            if (stride == 0) {
+                wanted.add(cycle + d);
+                wanted.add(cycle - d);
+            } else {
+                wanted.add(cycle + (int) Math.round(d * stride));
+            }
+        }
+        wanted.removeIf(c -> c < 0 || c >= cycleCount);
+        Iterator<Map.Entry<Integer, CompletableFuture<RenderFrame>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, CompletableFuture<RenderFrame>> entry = it.next();
+            if (!wanted.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+        for (int c : wanted) {
+            request(c);
+        }
+    }
+
+    /**
+     * Builds the frame of a cycle.
+     */
+    private RenderFrame build(Snapshot source, int cycle) {
+        long start = System.nanoTime();
+        FabricMatrix fabric = source.fabric();
+        double[] anchors = source.anchors();
+        int cells = fabric.rows() * fabric.cols();
+        long[] words = new long[cells];
+        String[] labels = new String[cells];
+        int[] arrowStart = new int[cells + 1];
+        float[] arrows = new float[RenderFrame.ARROW_FLOATS * 64];
+        int count = 0;
+
+        for (int cell = 0; cell < cells; cell++) {
+            arrowStart[cell] = count;
+            PE pe = source.nodes().get(new Coordinate(cell / fabric.cols(), cell % fabric.cols()));
+            if (pe == null) {
+                continue;
+            }
+            long word = pe.packedRoutingAt(cycle);
+            words[cell] = word;
+            labels[cell] = pe.labelAt(cycle);
+            if (!PackedRoutingStore.isPresent(word)) {
+                continue;
+            }
+            for (Direction dir : DIRECTIONS) {
+                if (!PackedRoutingStore.isConfigured(word, dir)) {
+                    continue;
+                }
+                int i = (cell * DIRECTIONS.length + dir.ordinal()) * 2;
+                double px = anchors[i];
+                double py = anchors[i + 1];
+                double nx = px + dx(dir) * GridBuilder.GAP;
+                double ny = py + dy(dir) * GridBuilder.GAP;
+                if (arrows.length < (count + 2) * RenderFrame.ARROW_FLOATS) {
+                    arrows = Arrays.copyOf(arrows, arrows.length * 2);
+                }
+                if (PackedRoutingStore.hasInput(word, dir)) {
+                    putArrow(arrows, count++, nx, ny, px, py);
+                }
+                if (PackedRoutingStore.hasOutput(word, dir)) {
+                    putArrow(arrows, count++, px, py, nx, ny);
+                }
+            }
+        }
+        arrowStart[cells] = count;
+        RenderFrame frame = new RenderFrame(cycle, words, labels, arrowStart,
+                Arrays.copyOf(arrows, count * RenderFrame.ARROW_FLOATS));
+        built.increment();
+        buildNanos.add(System.nanoTime() - start);
+        return frame;
+    }
+
+    /**
+     * Stores the line from (sx, sy) to (ex, ey) and its arrowhead, as FabricMatrixVisualizer
+     * draws them: two strokes of 8 px at 35 degrees on either side of the line.
+     */
+    private static void putArrow(float[] arrows, int arrow, double sx, double sy, double ex, double ey) {
+        double angle = Math.atan2(ey - sy, ex - sx);
+        double len = 8, delta = Math.toRadians(35);
+        int o = arrow * RenderFrame.ARROW_FLOATS;
+        arrows[o] = (float) sx;
+        arrows[o + 1] = (float) sy;
+        arrows[o + 2] = (float) ex;
+        arrows[o + 3] = (float) ey;
+        arrows[o + 4] = (float) (ex - len * Math.cos(angle - delta));
+        arrows[o + 5] = (float) (ey - len * Math.sin(angle - delta));
+        arrows[o + 6] = (float) (ex - len * Math.cos(angle + delta));
+        arrows[o + 7] = (float) (ey - len * Math.sin(angle + delta));
+    }
+
+    private static int dx(Direction dir) {
+        return dir == Direction.EAST ? 1 : dir == Direction.WEST ? -1 : 0;
+    }
+
+    private static int dy(Direction dir) {
+        return dir == Direction.SOUTH ? 1 : dir == Direction.NORTH ? -1 : 0;
+    }
+
+    /**
+     * @return a one-line summary of the frames built, cached and queued
+     */
+    public synchronized String getStats() {
+        long n = built.sum();
+        long bytes = cache.values().stream().mapToLong(RenderFrame::sizeInBytes).sum();
+        return String.format("frames: %d built (%.2f ms avg), %d/%d cached (%d KB), %d queued",
+                n, n == 0 ? 0.0 : buildNanos.sum() / 1e6 / n, cache.size(), capacity, bytes / 1024, pending.size());
+    }
+
+    /**
+     * Cancels every queued frame and stops the worker threads.
+     */
+    @Override
+    public synchronized void close() {
+        for (CompletableFuture<RenderFrame> future : pending.values()) {
+            future.cancel(false);
+        }
+        pending.clear();
+        workers.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return getStats();
+    }
+}
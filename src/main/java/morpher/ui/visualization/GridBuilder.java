@@ -7,14 +7,29 @@ import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.shape.Rectangle;
+import morpher.ui.visualization.utils.Direction;
+import morpher.ui.visualization.utils.ModuleType;
 
 /**
  * Build and visualize the Fabric Matrix
+ *
+ * The cells of the last grid built are indexed by coordinate, and the midpoint of each side of
+ * each cell (its port anchor, where routes attach) is kept up to date from the cell's bounds, so
+ * both are looked up in constant time whatever else the grid holds.
  */
 public class GridBuilder {
     private final GridPane grid;
     private final StackPane wrapper;
-    private static final int CELL_SIZE = 60;
+    public static final int CELL_SIZE = 60;
+    public static final int GAP = 40;
+    /** Width of the row header column and height of the column header row, as in grid.css. */
+    public static final int HEADER_SIZE = 30;
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private StackPane[][] cells = new StackPane[0][0];
+    /** x, y of each port anchor, indexed by ((row * cols + col) * 4 + direction) * 2. */
+    private double[] anchors = new double[0];
+    private Runnable recenter = () -> {};
+    private long anchorsVersion;
 
     public GridBuilder(GridPane grid, StackPane wrapper) {
         this.grid = grid;
@@ -22,9 +37,23 @@ public class GridBuilder {
     }
 
     public void buildGrid(int rows, int cols) {
-        grid.setHgap(40);
-        grid.setVgap(40);
+        buildGrid(new FabricMatrix(rows, cols));
+    }
+
+    /**
+     * Builds the grid of a fabric, marking cells that hold a memory PE.
+     * @param fabric the fabric layout
+     */
+    public void buildGrid(FabricMatrix fabric) {
+        int rows = fabric.rows();
+        int cols = fabric.cols();
+        grid.setHgap(GAP);
+        grid.setVgap(GAP);
         grid.add(blankCell(), 0, 0);
+        cells = new StackPane[rows][cols];
+        double[] cellAnchors = new double[rows * cols * DIRECTIONS.length * 2];
+        anchors = cellAnchors;
+        anchorsVersion++;
 
         for (int col = 0; col < cols; col++) {
             grid.add(headerLabel(String.valueOf(col)), col + 1, 0);
@@ -33,19 +62,31 @@ public class GridBuilder {
         for (int row = 0; row < rows; row++) {
             grid.add(headerLabel(String.valueOf(row)), 0, row + 1);
             for (int col = 0; col < cols; col++) {
-                grid.add(createCell(), col + 1, row + 1);
+                StackPane cell = createCell(fabric.typeAt(new Coordinate(row, col)));
+                int index = row * cols + col;
+                cell.boundsInParentProperty().addListener((o, ov, bounds) -> {
+                    storeAnchors(cellAnchors, index, bounds);
+                    anchorsVersion++;
+                });
+                cells[row][col] = cell;
+                grid.add(cell, col + 1, row + 1);
+                storeAnchors(cellAnchors, index, cell.getBoundsInParent());
             }
         }
     }
 
     /**
      * Creates a single styled grid cell.
+     * @param type the kind of module in the cell
      * @return a StackPane representing one grid cell with a styled background
      */
-    private StackPane createCell() {
+    private StackPane createCell(ModuleType type) {
         StackPane cell = new StackPane();
         Rectangle bg = new Rectangle(CELL_SIZE, CELL_SIZE);
         bg.getStyleClass().add("grid-cell");
+        if (type == ModuleType.PE_MEM) {
+            bg.getStyleClass().add("mem");
+        }
         cell.getChildren().add(bg);
         return cell;
     }
@@ -79,16 +120,77 @@ public class GridBuilder {
 
 
     public StackPane getCell(int row, int col) {
-        int uiRow = row + 1;
-        int uiCol = col + 1;
-        for (javafx.scene.Node n : grid.getChildren()) {
-            Integer r = GridPane.getRowIndex(n);
-            Integer c = GridPane.getColumnIndex(n);
-            if (r != null && c != null && r == uiRow && c == uiCol) {
-                return (StackPane) n;
+        if (row < 0 || row >= cells.length || col < 0 || col >= cells[row].length) {
+            throw new IllegalArgumentException("Cell not found: (" + row + "," + col + ")");
+        }
+        return cells[row][col];
+    }
+
+    /**
+     * Returns the midpoint of one side of a cell, in the coordinates of the grid.
+     *
+     * @param coord the coordinate of the cell
+     * @param dir the side
+     * @return the x and y of the point
+     */
+    public double[] getPortAnchor(Coordinate coord, Direction dir) {
+        getCell(coord.row(), coord.col());
+        int i = anchorIndex(coord.row() * cells[0].length + coord.col(), dir);
+        return new double[]{anchors[i], anchors[i + 1]};
+    }
+
+    /**
+     * Returns a copy of every port anchor of the grid, for use off the FX thread: the x and y of
+     * side {@code dir} of the cell at row-major index {@code cell} are at
+     * {@code (cell * 4 + dir.ordinal()) * 2}.
+     *
+     * @return the anchors
+     */
+    public double[] getPortAnchors() {
+        return anchors.clone();
+    }
+
+    /**
+     * @return a number that changes whenever a port anchor moves or the grid is rebuilt
+     */
+    public long getAnchorsVersion() {
+        return anchorsVersion;
+    }
+
+    private static int anchorIndex(int cell, Direction dir) {
+        return (cell * DIRECTIONS.length + dir.ordinal()) * 2;
+    }
+
+    /**
+     * Stores the port anchors of a cell; {@code anchors} is the array of the grid the cell was
+     * built for, so a cell of a previous grid never writes into the current one.
+     */
+    private static void storeAnchors(double[] anchors, int cell, Bounds bounds) {
+        double x = bounds.getMinX();
+        double y = bounds.getMinY();
+        double w = bounds.getWidth();
+        double h = bounds.getHeight();
+        for (Direction dir : DIRECTIONS) {
+            int i = anchorIndex(cell, dir);
+            switch (dir) {
+                case NORTH -> {
+                    anchors[i] = x + w / 2;
+                    anchors[i + 1] = y;
+                }
+                case SOUTH -> {
+                    anchors[i] = x + w / 2;
+                    anchors[i + 1] = y + h;
+                }
+                case WEST -> {
+                    anchors[i] = x;
+                    anchors[i + 1] = y + h / 2;
+                }
+                case EAST -> {
+                    anchors[i] = x + w;
+                    anchors[i + 1] = y + h / 2;
+                }
             }
         }
-        throw new IllegalArgumentException("Cell not found: (" + row + "," + col + ")");
     }
 
     /**
@@ -107,6 +209,7 @@ public class GridBuilder {
     /**
      * Adjusts the padding of the wrapper so that the content in the ScrollPane is centered
      * within the viewport whenever the viewport size or grid layout bounds change.
+     * The content is the first child of the wrapper, the grid or whatever replaced it.
      * @param sp whose content should be centered
      */
     public void hookCentering(ScrollPane sp) {
@@ -117,8 +220,10 @@ public class GridBuilder {
             Bounds vp = sp.getViewportBounds();
             if (vp == null) return;
 
-            double gw = grid.getLayoutBounds().getWidth();
-            double gh = grid.getLayoutBounds().getHeight();
+            Bounds content = wrapper.getChildren().isEmpty()
+                    ? grid.getLayoutBounds() : wrapper.getChildren().get(0).getLayoutBounds();
+            double gw = content.getWidth();
+            double gh = content.getHeight();
 
             double padX = Math.max(0, (vp.getWidth()  - gw) / 2);
             double padY = Math.max(0, (vp.getHeight() - gh) / 2);
@@ -127,7 +232,16 @@ public class GridBuilder {
         };
         sp.viewportBoundsProperty().addListener((o, ov, nv) -> recompute.run());
         grid.layoutBoundsProperty().addListener((o, ov, nv)   -> recompute.run());
+        recenter = recompute;
 
         recompute.run();
     }
+
+    /**
+     * Centers the content again, after it was replaced or resized; does nothing before
+     * hookCentering(ScrollPane).
+     */
+    public void recenter() {
+        recenter.run();
+    }
 }
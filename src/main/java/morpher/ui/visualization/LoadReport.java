@@ -0,0 +1,40 @@
+package morpher.ui.visualization;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Summary of a single loader run, listing how long each source file took to parse
+ * and which files could not be parsed.
+ *
+ * @param files the per-file results, in the order the files were loaded
+ * @param totalNanos the wall-clock time spent on the whole run, in nanoseconds
+ */
+public record LoadReport(List<FileResult> files, long totalNanos) {
+    /**
+     * Result of parsing one source file.
+     *
+     * @param file the parsed file
+     * @param coord the coordinate of the PE described by the file
+     * @param parseNanos the time spent parsing the file, in nanoseconds
+     * @param error the failure message, or null if the file was parsed successfully
+     */
+    public record FileResult(Path file, Coordinate coord, long parseNanos, String error) {
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    /**
+     * @return the results of the files that could not be parsed.
+     */
+    public List<FileResult> failures() {
+        return files.stream().filter(FileResult::failed).toList();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files in %.2f ms, %d failed",
+                files.size(), totalNanos / 1e6, failures().size());
+    }
+}
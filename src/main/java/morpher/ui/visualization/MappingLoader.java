@@ -1,49 +1,56 @@
 package morpher.ui.visualization;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class MappingLoader {
     private static MappingLoader instance;
     private final FabricMatrix fabric;
-    private final Map<Coordinate, List<Mapping>> mappingTable;
-    private final Map<Integer, String> operationMappings;
-    private int numOfCycle;
+    private final SparseMappingTable mappingTable;
+    private final DfgGraph dfg;
+    private final int numOfCycle;
+
+    private static final String DIMS_RESOURCE = "/docs/hycube_original_updatemem4x4.json";
+    private static final String DFG_RESOURCE = "/docs/gemm_systolic_1.xml";
+    private static final String MAPPING_RESOURCE = "/docs/mapping.txt";
 
     public MappingLoader() throws Exception {
-        this.fabric = loadDims(); // parse config file to get dimension of matrix
-        this.operationMappings = loadOperations(); // get operation mappings from xml file
-        this.mappingTable = loadMappingTable();
+        // parse config file to get the layout of the fabric
+        this.fabric = loadResource(DIMS_RESOURCE, "arch", ArchitectureLoader.CODEC, ArchitectureLoader::load);
+        // get the data flow graph, including the operation of every node, from xml file
+        this.dfg = loadResource(DFG_RESOURCE, "dfg", DfgLoader.CODEC, DfgLoader::load);
+        this.mappingTable = loadResource(MAPPING_RESOURCE, "mapping", MAPPING_CODEC, this::loadMappingTable);
+        this.numOfCycle = mappingTable.getNumOfCycle();
     }
 
     /**
-     * @return dimension of fabric matrix
+     * @return dimension and module layout of fabric matrix
      */
     public FabricMatrix getFabricMatrix() {
         return fabric;
     }
 
-    public Map<Coordinate, List<Mapping>> getMappingTable() {
+    /**
+     * @return the node mapped onto each PE at each cycle
+     */
+    public SparseMappingTable getMappingTable() {
         return mappingTable;
     }
 
-    //FIXME Remove this part if using prog file op. info.
-    public Map<Integer, String> getOperationMappings() {
-        return operationMappings;
+    /**
+     * @return the data flow graph that was mapped onto the fabric
+     */
+    public DfgGraph getDfg() {
+        return dfg;
     }
 
     public int getNumOfCycle() {
@@ -68,57 +75,76 @@ public class MappingLoader {
      * @return Operation of node.
      */
     public String getOpFor(int index)  {
-        if (index == -1) {
+        int id = getOpIdFor(index);
+        if (id == OpcodeRegistry.NONE) {
             return "NAN";
         }
-        return operationMappings.getOrDefault(index, "NAN");
+        return OpcodeRegistry.get().name(id);
     }
 
+    //FIXME Remove this part if using prog file op. info.
     /**
-     * Load the dimension of fabric matrix from configuration file.
-     * @return Fabric matrix object represents dimension.
-     * @throws IOException
+     * Return the {@link OpcodeRegistry} id of the operation for a specific node.
+     * @param index of node.
+     * @return Opcode id of node, or {@link OpcodeRegistry#NONE} if the node is unknown.
      */
-    private FabricMatrix loadDims() throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        try (InputStream input = getClass().getResourceAsStream("/docs/hycube_original_updatemem4x4.json")) {
-            JsonNode root = mapper.readTree(input);
-            JsonNode dims = root.at("/CGRA/SUBMODS/0/DIMS");
-            return new FabricMatrix(dims.get("X").asInt(), dims.get("Y").asInt());
+    public int getOpIdFor(int index) {
+        if (!dfg.contains(index)) {
+            return OpcodeRegistry.NONE;
         }
+        return dfg.opId(index);
     }
 
+    /**
+     * Parses a bundled resource, going through the {@link SnapshotCache} when the resource
+     * is a plain file on disk.
+     *
+     * @param resource the classpath resource
+     * @param kind the cache entry kind
+     * @param codec the binary encoding of the parsed model
+     * @param parser the text parser of the resource
+     * @return the parsed model
+     * @throws Exception if the resource cannot be parsed
+     */
+    private <T> T loadResource(String resource, String kind, SnapshotCache.Codec<T> codec,
+                               StreamParser<T> parser) throws Exception {
+        Path path = resourcePath(resource);
+        if (path == null) {
+            try (InputStream input = getClass().getResourceAsStream(resource)) {
+                return parser.parse(input);
+            }
+        }
+        return SnapshotCache.get().load(kind, path, codec, p -> {
+            try (InputStream input = Files.newInputStream(p)) {
+                return parser.parse(input);
+            }
+        });
+    }
 
-    //FIXME Remove this part if using prog file op. info.
     /**
-     * Load operations for each PE from xml config file
-     * @return Map of PE index and operation.
-     * @throws Exception
+     * @return the file system path of a classpath resource, or null if it is not a plain file
      */
-    private Map<Integer,String> loadOperations() throws Exception {
-        Map<Integer,String> map = new HashMap<>();
-        try (InputStream is = getClass().getResourceAsStream("/docs/gemm_systolic_1.xml")) {
-            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(is);
-            NodeList nodes = doc.getElementsByTagName("Node");
-            for (int i = 0; i < nodes.getLength(); i++) {
-                org.w3c.dom.Element elem = (org.w3c.dom.Element) nodes.item(i);
-                int idx = Integer.parseInt(elem.getAttribute("idx"));
-                String op = elem.getElementsByTagName("OP").item(0).getTextContent().trim();
-                map.put(idx, op);
+    private static Path resourcePath(String resource) {
+        try {
+            URL url = MappingLoader.class.getResource(resource);
+            if (url == null || !"file".equals(url.getProtocol())) {
+                return null;
             }
+            return Paths.get(url.toURI());
+        } catch (Exception e) {
+            return null;
         }
-        return map;
     }
 
     /**
-     * Load Mapping information for each cycle.
-     * @return a list of mapping information for each cycle, sorted in ascending order of cycle index.
+     * Load Mapping information for each cycle, streaming the file straight into a sparse table.
+     * @param src the mapping text
+     * @return the mappings of every cycle, indexed by cycle and by coordinate.
      * @throws IOException
      */
-    private Map<Coordinate, List<Mapping>> loadMappingTable() throws IOException {
-        Map<Integer, List<Mapping>> tmp = new HashMap<>();
-        try (InputStream src = getClass().getResourceAsStream("/docs/mapping.txt");
-             BufferedReader buffer = new BufferedReader(new InputStreamReader(src, StandardCharsets.UTF_8))) {
+    private SparseMappingTable loadMappingTable(InputStream src) throws IOException {
+        SparseMappingTable.Builder builder = new SparseMappingTable.Builder();
+        try (BufferedReader buffer = new BufferedReader(new InputStreamReader(src, StandardCharsets.UTF_8))) {
             String line;
             int curr = -1;
             while ((line = buffer.readLine()) != null) {
@@ -127,30 +153,95 @@ public class MappingLoader {
                 if (line.startsWith("cycle")) {
                     String num = line.replace("cycle", "").replace(":", "").trim();
                     curr = Integer.parseInt(num);
+                    builder.numOfCycle(curr);
                     continue;
                 }
 
                 if (curr >= 0) {
-                    tmp.computeIfAbsent(curr, k -> new ArrayList<>()).addAll(Mapping.parseLine(line));
+                    addTuples(line, curr, builder);
                 }
             }
-            this.numOfCycle = curr;
         }
+        return builder.build();
+    }
 
-        Map<Coordinate, List<Mapping>> mapTable = new HashMap<>();
-
-        int listSize = numOfCycle + 1;
-        for (var entry : tmp.entrySet()) {
-            int cycleId = entry.getKey();
-            for (Mapping m : entry.getValue()) {
-                mapTable.computeIfAbsent(m.coordinate(), k -> initList(listSize)).set(cycleId, m);
+    /**
+     * Adds every "(row, col) -> idx" tuple of a line to the table being built.
+     * @param line a line of the mapping file
+     * @param cycle the cycle the line belongs to
+     * @param builder the table being built
+     */
+    private static void addTuples(String line, int cycle, SparseMappingTable.Builder builder) {
+        int n = line.length();
+        int pos = line.indexOf('(');
+        while (pos >= 0) {
+            int[] at = {pos + 1};
+            int row = readInt(line, at);
+            int col = expect(line, at, ',') ? readInt(line, at) : -1;
+            boolean arrow = col >= 0 && expect(line, at, ')') && expect(line, at, '-') && at[0] < n
+                    && line.charAt(at[0]++) == '>';
+            int idx = arrow ? readInt(line, at) : -1;
+            if (row >= 0 && idx >= 0) {
+                builder.add(cycle, row, col, idx);
             }
+            pos = line.indexOf('(', pos + 1);
+        }
+    }
+
+    private static boolean expect(String line, int[] at, char c) {
+        while (at[0] < line.length() && Character.isWhitespace(line.charAt(at[0]))) {
+            at[0]++;
+        }
+        if (at[0] < line.length() && line.charAt(at[0]) == c) {
+            at[0]++;
+            return true;
+        }
+        return false;
+    }
+
+    private static int readInt(String line, int[] at) {
+        while (at[0] < line.length() && Character.isWhitespace(line.charAt(at[0]))) {
+            at[0]++;
+        }
+        int value = -1;
+        while (at[0] < line.length() && Character.isDigit(line.charAt(at[0]))) {
+            value = (value < 0 ? 0 : value * 10) + (line.charAt(at[0]++) - '0');
         }
-        return mapTable;
+        return value;
     }
 
-    private static <T> List<T> initList(int size) {
-        return new ArrayList<>(Collections.nCopies(size, null));
+    @FunctionalInterface
+    private interface StreamParser<T> {
+        T parse(InputStream input) throws Exception;
     }
 
+    private static final SnapshotCache.Codec<SparseMappingTable> MAPPING_CODEC = new SnapshotCache.Codec<>() {
+        @Override
+        public int version() {
+            // 1 held one list of node indices per coordinate
+            return 2;
+        }
+
+        @Override
+        public void write(DataOutputStream out, SparseMappingTable table) throws IOException {
+            out.writeInt(table.getNumOfCycle());
+            out.writeInt(table.size());
+            for (int i = 0; i < table.size(); i++) {
+                out.writeInt(table.cycleAt(i));
+                out.writeInt(table.rowAt(i));
+                out.writeInt(table.colAt(i));
+                out.writeInt(table.nodeAt(i));
+            }
+        }
+
+        @Override
+        public SparseMappingTable read(ByteBuffer in) {
+            SparseMappingTable.Builder builder = new SparseMappingTable.Builder().numOfCycle(in.getInt());
+            int size = in.getInt();
+            for (int i = 0; i < size; i++) {
+                builder.add(in.getInt(), in.getInt(), in.getInt(), in.getInt());
+            }
+            return builder.build();
+        }
+    };
 }
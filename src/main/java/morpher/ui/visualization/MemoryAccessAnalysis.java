@@ -0,0 +1,545 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.MemoryAccessMode;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Data memory access analysis of a simulation trace: the address stream of every address
+ * generation unit (AGU), the bytes moved through the data memory ports in each cycle, and the
+ * cycles where the accesses collide.
+ *
+ * The trace is streamed one cycle at a time, in cycle order. Only the previous state of
+ * each AGU is kept between cycles; what is retained is the AGU issues and two counters per cycle.
+ *
+ * An AGU issues an access in a cycle when its state changes from the previous one. The access uses
+ * the previous state's program counter and address register.
+ *
+ * Which port an AGU drives is not assumed but read from the trace. In every cycle the accesses
+ * issued are matched to the port dumps showing the same address and mode, each port carrying at
+ * most one access; an AGU only matches the ports that showed all its earlier accesses. The ports
+ * left to an AGU after the whole trace are given by {@link #portsOf(int)}. Three kinds of
+ * {@link Conflict} are reported:
+ * <ul>
+ *   <li>BANK_CONFLICT: two ports of one bank touch the same byte in a cycle and one of them writes;</li>
+ *   <li>PORT_CONTENTION: an AGU issues an access that no port shows while every port it drives
+ *       carries another AGU's access, i.e. two accesses were issued to one port in one cycle;</li>
+ *   <li>STREAM_MISMATCH: no port shows an access issued by an AGU although one of its ports is free,
+ *       or a port shows an access that no AGU issued.</li>
+ * </ul>
+ */
+public final class MemoryAccessAnalysis {
+    private static final Logger LOGGER = Logger.getLogger(MemoryAccessAnalysis.class.getName());
+    private static final Pattern AGU_FILE = Pattern.compile("agu(\\d+)");
+    private static final Pattern BANK_FILE = Pattern.compile("dm(\\d+)");
+    private static final Pattern PORT_FILE = Pattern.compile("dm\\d+_port(\\d+)");
+
+    /** Widest access of one port in one cycle, in bytes. */
+    public static final int PORT_BYTES = MemoryAccessMode.READ64.bytes();
+
+    /**
+     * A collision between data memory accesses.
+     *
+     * @param cycle the cycle of the accesses
+     * @param kind the kind of collision
+     * @param bank the bank involved, e.g. "dm0"
+     * @param detail a human-readable description
+     */
+    public record Conflict(int cycle, Kind kind, String bank, String detail) {
+        public enum Kind {
+            BANK_CONFLICT,
+            PORT_CONTENTION,
+            STREAM_MISMATCH
+        }
+
+        @Override
+        public String toString() {
+            return "cycle " + cycle + "  " + kind + "  " + bank + ": " + detail;
+        }
+    }
+
+    private final int cycles;
+    private final List<String> banks;
+    private final int portsPerBank;
+    private final List<AguProgram> programs;
+    private final int[][] issueCycles;
+    private final int[][] issueAddresses;
+    private final int[][] issuePcs;
+    private final BitSet[] aguPorts;
+    private final int[] bytes;
+    private final int[] accesses;
+    private final List<Conflict> conflicts;
+
+    private MemoryAccessAnalysis(int cycles, List<String> banks, int portsPerBank, List<AguProgram> programs,
+                                 int[][] issueCycles, int[][] issueAddresses, int[][] issuePcs, BitSet[] aguPorts,
+                                 int[] bytes, int[] accesses, List<Conflict> conflicts) {
+        this.cycles = cycles;
+        this.banks = banks;
+        this.portsPerBank = portsPerBank;
+        this.programs = programs;
+        this.issueCycles = issueCycles;
+        this.issueAddresses = issueAddresses;
+        this.issuePcs = issuePcs;
+        this.aguPorts = aguPorts;
+        this.bytes = bytes;
+        this.accesses = accesses;
+        this.conflicts = conflicts;
+    }
+
+    /**
+     * Analyzes the trace of a design directory or trace archive.
+     *
+     * @param dir the directory containing the `agu<n>` files, the `dm<bank>` dumps and the
+     *            `cycle_N` directories, or a trace archive
+     * @return the analysis
+     * @throws IOException if the trace cannot be opened or an AGU configuration is unreadable
+     */
+    public static MemoryAccessAnalysis analyze(Path dir) throws IOException {
+        TraceSource trace = TraceSource.open(dir);
+        List<String> files = trace.files();
+        int cycles = trace.cycleCount();
+        List<String> banks = files.stream()
+                .map(BANK_FILE::matcher)
+                .filter(Matcher::matches)
+                .sorted(Comparator.comparingInt(m -> Integer.parseInt(m.group(1))))
+                .map(Matcher::group)
+                .toList();
+        int[] aguIndices = files.stream()
+                .map(AGU_FILE::matcher)
+                .filter(Matcher::matches)
+                .mapToInt(m -> Integer.parseInt(m.group(1)))
+                .sorted()
+                .toArray();
+        List<AguProgram> programs = new ArrayList<>(aguIndices.length);
+        for (int index : aguIndices) {
+            programs.add(AguParser.readProgram(trace, index));
+        }
+        int portsPerBank = countPorts(trace, cycles);
+
+        Streamer s = new Streamer(trace, cycles, banks, portsPerBank, programs);
+        for (int c = 0; c < cycles; c++) {
+            s.step(c);
+        }
+        return new MemoryAccessAnalysis(cycles, banks, portsPerBank, List.copyOf(programs),
+                build(s.issueCycles), build(s.issueAddresses), build(s.issuePcs), s.ports,
+                s.bytes, s.accesses, Collections.unmodifiableList(s.conflicts));
+    }
+
+    /**
+     * @return the highest port number found in the first cycle that has port dumps
+     */
+    private static int countPorts(TraceSource trace, int cycles) {
+        for (int c = 0; c < cycles; c++) {
+            int ports = trace.cycleFiles(c).stream()
+                    .map(PORT_FILE::matcher)
+                    .filter(Matcher::matches)
+                    .mapToInt(m -> Integer.parseInt(m.group(1)))
+                    .max()
+                    .orElse(0);
+            if (ports > 0) {
+                return ports;
+            }
+        }
+        return 0;
+    }
+
+    private static int[][] build(IntStream.Builder[] builders) {
+        int[][] out = new int[builders.length][];
+        for (int i = 0; i < builders.length; i++) {
+            out[i] = builders[i].build().toArray();
+        }
+        return out;
+    }
+
+    /**
+     * Per-cycle state of the streaming pass.
+     */
+    private static final class Streamer {
+        private final TraceSource trace;
+        private final List<String> banks;
+        private final int portsPerBank;
+        private final List<AguProgram> programs;
+        private final AguState[] prev;
+        private final IntStream.Builder[] issueCycles;
+        private final IntStream.Builder[] issueAddresses;
+        private final IntStream.Builder[] issuePcs;
+        private final int[] bytes;
+        private final int[] accesses;
+        private final List<Conflict> conflicts = new ArrayList<>();
+
+        /** Per AGU, the ports that showed every access of the AGU matched so far. */
+        private final BitSet[] ports;
+
+        // reset every cycle: per port, and per AGU
+        private final PortAccess[] observed;
+        private final int[] aguOfPort;
+        private final boolean[] issued;
+        private final int[] issuedAddress;
+        private final MemoryAccessMode[] issuedMode;
+        private final int[] portOfAgu;
+
+        Streamer(TraceSource trace, int cycles, List<String> banks, int portsPerBank, List<AguProgram> programs) {
+            this.trace = trace;
+            this.banks = banks;
+            this.portsPerBank = portsPerBank;
+            this.programs = programs;
+            this.prev = programs.stream().map(AguProgram::initialState).toArray(AguState[]::new);
+            this.issueCycles = newBuilders(programs.size());
+            this.issueAddresses = newBuilders(programs.size());
+            this.issuePcs = newBuilders(programs.size());
+            this.bytes = new int[cycles];
+            this.accesses = new int[cycles];
+            int portCount = banks.size() * portsPerBank;
+            this.ports = new BitSet[programs.size()];
+            for (int a = 0; a < ports.length; a++) {
+                ports[a] = new BitSet();
+                ports[a].set(0, portCount);
+            }
+            this.observed = new PortAccess[portCount];
+            this.aguOfPort = new int[portCount];
+            this.issued = new boolean[programs.size()];
+            this.issuedAddress = new int[programs.size()];
+            this.issuedMode = new MemoryAccessMode[programs.size()];
+            this.portOfAgu = new int[programs.size()];
+        }
+
+        private static IntStream.Builder[] newBuilders(int n) {
+            IntStream.Builder[] out = new IntStream.Builder[n];
+            for (int i = 0; i < n; i++) {
+                out[i] = IntStream.builder();
+            }
+            return out;
+        }
+
+        void step(int cycle) {
+            List<String> files = trace.cycleFiles(cycle);
+            if (files.isEmpty()) {
+                return;
+            }
+            Arrays.fill(issued, false);
+            Arrays.fill(observed, null);
+            readAgus(cycle, files);
+            readPorts(cycle, files);
+            checkBanks(cycle);
+            if (!programs.isEmpty()) {
+                checkStreams(cycle);
+            }
+        }
+
+        private void readAgus(int cycle, List<String> files) {
+            for (int a = 0; a < programs.size(); a++) {
+                AguProgram program = programs.get(a);
+                String file = "agu" + program.index();
+                if (Collections.binarySearch(files, file) < 0) {
+                    continue;
+                }
+                AguState state;
+                try {
+                    state = AguParser.readState(trace, cycle, file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Cannot parse {0}: {1}",
+                            new Object[]{trace.location().resolve("cycle_" + cycle).resolve(file), e.getMessage()});
+                    continue;
+                }
+                AguState before = prev[a];
+                prev[a] = state;
+                if (!state.issuedSince(before) || before.pc() >= program.instructions().size()) {
+                    continue;
+                }
+                int address = before.nextAddress();
+                issueCycles[a].add(cycle);
+                issueAddresses[a].add(address);
+                issuePcs[a].add(before.pc());
+                issued[a] = true;
+                issuedAddress[a] = address;
+                issuedMode[a] = program.instructions().get(before.pc()).accessMode();
+            }
+        }
+
+        private void readPorts(int cycle, List<String> files) {
+            for (int port = 0; port < observed.length; port++) {
+                String file = bankOf(port) + "_port" + portNumber(port);
+                if (Collections.binarySearch(files, file) < 0) {
+                    continue;
+                }
+                try {
+                    observed[port] = StateFileParser.parsePort(trace, cycle, file);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Cannot parse {0}: {1}",
+                            new Object[]{trace.location().resolve("cycle_" + cycle).resolve(file), e.getMessage()});
+                    continue;
+                }
+                if (isActive(observed[port])) {
+                    bytes[cycle] += observed[port].mode().bytes();
+                    accesses[cycle]++;
+                }
+            }
+        }
+
+        private void checkBanks(int cycle) {
+            for (int b = 0; b < banks.size(); b++) {
+                for (int p = b * portsPerBank; p < (b + 1) * portsPerBank; p++) {
+                    for (int q = p + 1; q < (b + 1) * portsPerBank; q++) {
+                        PortAccess x = observed[p];
+                        PortAccess y = observed[q];
+                        if (isActive(x) && isActive(y) && (x.isWrite() || y.isWrite()) && overlap(x, y)) {
+                            conflicts.add(new Conflict(cycle, Conflict.Kind.BANK_CONFLICT, banks.get(b),
+                                    "port " + portNumber(p) + " " + describe(x) + " and port "
+                                            + portNumber(q) + " " + describe(y)));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Matches the accesses issued in a cycle to the ports showing them, reports the ones left
+         * over on either side, and narrows down the ports of each AGU.
+         */
+        private void checkStreams(int cycle) {
+            if (observed.length == 0) {
+                return;
+            }
+            Arrays.fill(aguOfPort, -1);
+            Arrays.fill(portOfAgu, -1);
+            for (int a = 0; a < issued.length; a++) {
+                if (issued[a]) {
+                    match(a, new BitSet());
+                }
+            }
+            for (int a = 0; a < issued.length; a++) {
+                if (!issued[a]) {
+                    continue;
+                }
+                BitSet shown = new BitSet();
+                for (int port = 0; port < observed.length; port++) {
+                    if (shows(port, a)) {
+                        shown.set(port);
+                    }
+                }
+                if (portOfAgu[a] < 0) {
+                    reportUnmatched(cycle, a);
+                }
+                // an AGU whose accesses no longer fit its ports was rewired: start over
+                if (shown.intersects(ports[a])) {
+                    ports[a].and(shown);
+                } else if (!shown.isEmpty()) {
+                    ports[a] = shown;
+                }
+            }
+            for (int port = 0; port < observed.length; port++) {
+                if (aguOfPort[port] < 0 && isActive(observed[port])) {
+                    conflicts.add(new Conflict(cycle, Conflict.Kind.STREAM_MISMATCH, bankOf(port),
+                            "port " + portNumber(port) + " shows " + describe(observed[port]) + " but no AGU issued it"));
+                }
+            }
+        }
+
+        /**
+         * Finds a port for the access of an AGU, moving the accesses matched before to other
+         * ports if need be (an augmenting path of a bipartite matching).
+         *
+         * @return true if the access was matched
+         */
+        private boolean match(int agu, BitSet tried) {
+            for (int port = ports[agu].nextSetBit(0); port >= 0; port = ports[agu].nextSetBit(port + 1)) {
+                if (!shows(port, agu) || tried.get(port)) {
+                    continue;
+                }
+                tried.set(port);
+                if (aguOfPort[port] < 0 || match(aguOfPort[port], tried)) {
+                    aguOfPort[port] = agu;
+                    portOfAgu[agu] = port;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Reports an access that no port shows: contention if every port the AGU drives carries
+         * another AGU's access, a mismatch otherwise.
+         */
+        private void reportUnmatched(int cycle, int agu) {
+            String access = "AGU " + programs.get(agu).index() + " issued " + issuedMode[agu] + " @" + issuedAddress[agu];
+            BitSet own = ports[agu];
+            int first = own.nextSetBit(0);
+            boolean busy = first >= 0;
+            StringBuilder holders = new StringBuilder();
+            for (int port = first; port >= 0; port = own.nextSetBit(port + 1)) {
+                if (aguOfPort[port] < 0) {
+                    busy = false;
+                    break;
+                }
+                holders.append(holders.length() == 0 ? "" : ", ").append(bankOf(port)).append(" port ")
+                        .append(portNumber(port)).append(" carries AGU ").append(programs.get(aguOfPort[port]).index());
+            }
+            if (busy) {
+                conflicts.add(new Conflict(cycle, Conflict.Kind.PORT_CONTENTION, bankOf(first),
+                        access + " but " + holders));
+            } else if (first >= 0 && own.cardinality() == 1) {
+                conflicts.add(new Conflict(cycle, Conflict.Kind.STREAM_MISMATCH, bankOf(first),
+                        access + " but port " + portNumber(first) + " shows "
+                                + (isActive(observed[first]) ? describe(observed[first]) : "no access")));
+            } else {
+                conflicts.add(new Conflict(cycle, Conflict.Kind.STREAM_MISMATCH, first >= 0 ? bankOf(first) : "",
+                        access + " but no port shows it"));
+            }
+        }
+
+        /**
+         * @return true if a port shows the access an AGU issued in this cycle
+         */
+        private boolean shows(int port, int agu) {
+            PortAccess o = observed[port];
+            return isActive(o) && o.address() == issuedAddress[agu] && o.mode() == issuedMode[agu];
+        }
+
+        private String bankOf(int port) {
+            return banks.get(port / portsPerBank);
+        }
+
+        private int portNumber(int port) {
+            return port % portsPerBank + 1;
+        }
+
+        private static boolean isActive(PortAccess access) {
+            return access != null && (access.isRead() || access.isWrite());
+        }
+
+        private static boolean overlap(PortAccess x, PortAccess y) {
+            return x.address() < y.address() + y.mode().bytes() && y.address() < x.address() + x.mode().bytes();
+        }
+
+        private static String describe(PortAccess access) {
+            return access.mode() + " @" + access.address();
+        }
+    }
+
+    /**
+     * @return the number of cycles of the trace
+     */
+    public int cycles() {
+        return cycles;
+    }
+
+    /**
+     * @return the data memory banks, e.g. "dm0", in bank order
+     */
+    public List<String> banks() {
+        return banks;
+    }
+
+    /**
+     * @return the number of ports of each bank, numbered from 1 in the port dump names
+     */
+    public int portsPerBank() {
+        return portsPerBank;
+    }
+
+    /**
+     * @return the AGU configurations, in AGU order
+     */
+    public List<AguProgram> programs() {
+        return programs;
+    }
+
+    /**
+     * @param agu the position of the AGU in {@link #programs()}
+     * @return the cycles at which the AGU issued an access, in increasing order
+     */
+    public int[] issueCycles(int agu) {
+        return issueCycles[agu].clone();
+    }
+
+    /**
+     * @param agu the position of the AGU in {@link #programs()}
+     * @return the byte address of each access, parallel to {@link #issueCycles(int)}
+     */
+    public int[] issueAddresses(int agu) {
+        return issueAddresses[agu].clone();
+    }
+
+    /**
+     * @param agu the position of the AGU in {@link #programs()}
+     * @param issue the position of the access in {@link #issueCycles(int)}
+     * @return the instruction the AGU issued the access with
+     */
+    public AguInstruction issueInstruction(int agu, int issue) {
+        return programs.get(agu).instructions().get(issuePcs[agu][issue]);
+    }
+
+    /**
+     * @param agu the position of the AGU in {@link #programs()}
+     * @return the ports that showed every access of the AGU, e.g. "dm0_port1"; all ports if none
+     *         of its accesses was seen, several if the trace cannot tell them apart
+     */
+    public List<String> portsOf(int agu) {
+        return aguPorts[agu].stream()
+                .mapToObj(port -> banks.get(port / portsPerBank) + "_port" + (port % portsPerBank + 1))
+                .toList();
+    }
+
+    /**
+     * @return the bytes moved through all data memory ports in a cycle
+     */
+    public int bytes(int cycle) {
+        return bytes[cycle];
+    }
+
+    /**
+     * @return the number of port accesses in a cycle
+     */
+    public int accesses(int cycle) {
+        return accesses[cycle];
+    }
+
+    /**
+     * @return the bytes all ports can move in one cycle
+     */
+    public int peakBytes() {
+        return banks.size() * portsPerBank * PORT_BYTES;
+    }
+
+    /**
+     * @return the fraction of the peak port bandwidth used in a cycle, between 0 and 1
+     */
+    public double utilization(int cycle) {
+        int peak = peakBytes();
+        return peak == 0 ? 0 : (double) bytes[cycle] / peak;
+    }
+
+    /**
+     * @return the fraction of the peak port bandwidth used over the whole trace
+     */
+    public double averageUtilization() {
+        long peak = (long) peakBytes() * cycles;
+        return peak == 0 ? 0 : (double) Arrays.stream(bytes).asLongStream().sum() / peak;
+    }
+
+    /**
+     * @return the collisions found, in cycle order
+     */
+    public List<Conflict> conflicts() {
+        return conflicts;
+    }
+
+    @Override
+    public String toString() {
+        long issues = Arrays.stream(issueCycles).mapToLong(a -> a.length).sum();
+        return String.format("%d cycles, %d AGUs, %d accesses, %.1f%% of peak bandwidth, %d conflicts",
+                cycles, programs.size(), issues, 100 * averageUtilization(), conflicts.size());
+    }
+}
@@ -0,0 +1,14 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.OpcodeCategory;
+
+/**
+ * An operation code registered in the {@link OpcodeRegistry}.
+ *
+ * @param id the small integer id used in place of the name on hot paths
+ * @param name the upper-case opcode name as written in configuration files
+ * @param category the kind of operation
+ * @param memory whether the operation accesses data memory
+ * @param label the text shown on a PE executing this opcode (empty for NOP)
+ */
+public record Opcode(int id, String name, OpcodeCategory category, boolean memory, String label) {}
@@ -0,0 +1,94 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.OpcodeCategory;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Singleton symbol table mapping every opcode name to a small int id and its metadata.
+ *
+ * Parsers intern opcode names once; routings, the packed routing store and the mapping table
+ * then carry only ids, so hot paths compare ints instead of strings. Ids are assigned in
+ * registration order and are only stable within one run, so anything persisted stores names.
+ * Ids {@link #NONE} (no opcode) and {@link #NOP} are reserved.
+ */
+public class OpcodeRegistry {
+    public static final int NONE = 0;
+    public static final int NOP = 1;
+    private static OpcodeRegistry instance;
+    private final Map<String, Opcode> byName = new ConcurrentHashMap<>();
+    private volatile Opcode[] byId = new Opcode[0];
+
+    private OpcodeRegistry() {
+        intern("");
+        intern("NOP");
+    }
+
+    /**
+     * Returns the singleton instance of OpcodeRegistry, initializing it on first access.
+     *
+     * @return the singleton OpcodeRegistry instance
+     */
+    public static synchronized OpcodeRegistry get() {
+        if (instance == null) {
+            instance = new OpcodeRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the id of an opcode, registering it on first use. Names are case-insensitive.
+     *
+     * @param name the opcode name
+     * @return the id of the opcode
+     */
+    public int intern(String name) {
+        Opcode op = byName.get(name);
+        if (op == null) {
+            op = register(name.trim().toUpperCase(Locale.ROOT));
+            byName.putIfAbsent(name, op);
+        }
+        return op.id();
+    }
+
+    /**
+     * @param id an opcode id
+     * @return the opcode with that id
+     */
+    public Opcode get(int id) {
+        return byId[id];
+    }
+
+    /**
+     * @param id an opcode id
+     * @return the upper-case name of the opcode
+     */
+    public String name(int id) {
+        return byId[id].name();
+    }
+
+    /**
+     * @return the number of registered opcodes
+     */
+    public int size() {
+        return byId.length;
+    }
+
+    private synchronized Opcode register(String upper) {
+        Opcode op = byName.get(upper);
+        if (op != null) {
+            return op;
+        }
+        OpcodeCategory category = OpcodeCategory.get(upper);
+        String label = upper.equals("NOP") ? "" : upper;
+        op = new Opcode(byId.length, upper, category, category == OpcodeCategory.MEMORY, label);
+        Opcode[] ids = Arrays.copyOf(byId, byId.length + 1);
+        ids[op.id()] = op;
+        byId = ids;
+        byName.put(upper, op);
+        return op;
+    }
+}
@@ -1,21 +1,31 @@
 package morpher.ui.visualization;
 
-import java.util.List;
-
 /**
  * Represents a Processing Element (PE) at a given {@link Coordinate}, which holds
  * time-dependent {@link Mapping} and {@link Routing} information.
  *
- * The PE can support periodic routing behavior via loopStart and loopEnd
- * to simulate instruction reuse or cyclic behavior.
+ * The mappings live in the fabric-wide {@link SparseMappingTable} and the routing schedule in
+ * the fabric-wide {@link PackedRoutingStore}; the PE only knows its index in that store. The
+ * schedule can support periodic routing behavior via loopStart and loopEnd to simulate
+ * instruction reuse or cyclic behavior.
  *
  * @param coord the coordinate of this PE in the grid
- * @param mappings the list of node mappings at each cycle
- * @param routings the list of routing instructions at each cycle
- * @param loopStart the cycle at which looping starts (-1 if no loop)
- * @param loopEnd the cycle at which looping ends (inclusive)
+ * @param mappingTable the sparse node mappings of the whole fabric
+ * @param routingStore the packed routing schedules of the whole fabric
+ * @param index the row-major index of this PE in {@code routingStore}
  */
-public record PE(Coordinate coord, List<Mapping> mappings, List<Routing> routings, int loopStart, int loopEnd) {
+public record PE(Coordinate coord, SparseMappingTable mappingTable, PackedRoutingStore routingStore, int index) {
+    /**
+     * Returns the packed routing configuration at the given cycle k, taking into account
+     * looping behavior if applicable. See {@link PackedRoutingStore} for the layout.
+     *
+     * @param k the cycle number
+     * @return the packed word, or {@link PackedRoutingStore#NONE} if k exceeds the schedule
+     */
+    public long packedRoutingAt(int k) {
+        return routingStore.word(index, k);
+    }
+
     /**
      * Returns the Routing instruction at the given cycle k, taking into account
      * looping behavior if applicable.
@@ -27,19 +37,30 @@ public record PE(Coordinate coord, List<Mapping> mappings, List<Routing> routing
      * @return the Routing at cycle k, or null if k exceeds the routing list
      */
     public Routing routingAt(int k) {
-        int pc = (loopStart == -1 || k <= loopEnd)
-                ? k
-                : loopStart + (k - loopStart) % (loopEnd - loopStart + 1);
-        return (pc < routings.size()) ? routings.get(pc) : null;
+        return routingStore.routing(packedRoutingAt(k));
+    }
+
+    /**
+     * @return the cycle at which looping starts (-1 if no loop)
+     */
+    public int loopStart() {
+        return routingStore.loopStart(index);
+    }
+
+    /**
+     * @return the cycle at which looping ends (inclusive)
+     */
+    public int loopEnd() {
+        return routingStore.loopEnd(index);
     }
 
     /**
      * Returns the Mapping at the given cycle k.
      * @param k the cycle number
-     * @return the Mapping at cycle k, or null if k exceeds the mapping list or there is no mapping information.
+     * @return the Mapping at cycle k, or null if k exceeds the mapping table or there is no mapping information.
      */
     public Mapping mappingAt(int k) {
-        return (k < mappings.size()) ? mappings.get(k) : null;
+        return mappingTable.mappingAt(coord, k);
     }
 
     //NOTE NOP will return empty string
@@ -52,17 +73,27 @@ public record PE(Coordinate coord, List<Mapping> mappings, List<Routing> routing
      * @return the operation code at cycle k, or an empty string if no operation is scheduled
      */
     public String opCodeAt(int k) {
-        Routing rt = routingAt(k);
-        if (rt == null || rt.getOpCode().equalsIgnoreCase("NOP")) {
+        int id = opCodeIdAt(k);
+        if (id == OpcodeRegistry.NOP) {
             return "";
         }
-        return rt.getOpCode();
+        return OpcodeRegistry.get().name(id);
+    }
+
+    /**
+     * Returns the {@link OpcodeRegistry} id of the operation at cycle k.
+     *
+     * @param k the cycle number
+     * @return the opcode id, or {@link OpcodeRegistry#NONE} if no routing is scheduled
+     */
+    public int opCodeIdAt(int k) {
+        return PackedRoutingStore.opCodeId(packedRoutingAt(k));
     }
 
     /**
      * Returns a label string for this PE at cycle k, combining node index and operation code.
      *
-     * If there is no mapping, only the operation code is returned.
+     * If there is no mapping, only the {@link Opcode#label() label} of the operation is returned.
      * Otherwise, the format is: "nodeIdx \n opCode"
      * @param k the cycle number
      * @return a label combining mapping and operation code at cycle {@code k}
@@ -70,11 +101,11 @@ public record PE(Coordinate coord, List<Mapping> mappings, List<Routing> routing
     public String labelAt(int k) {
         // FIXME include mapping information later
 //      Mapping m = mappingAt(k);
-        String opCode = opCodeAt(k);
+        String opCode = OpcodeRegistry.get().get(opCodeIdAt(k)).label();
 //        if (m == null) {
 //            return opCode;
 //        }
 //        return m.nodeIdx() + "\n" + opCode;
         return opCode;
     }
-}
\ No newline at end of file
+}
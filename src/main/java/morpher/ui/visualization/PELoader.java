@@ -1,12 +1,12 @@
 package morpher.ui.visualization;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Singleton class responsible for loading and managing {@link PE} instances,
@@ -14,11 +14,14 @@ import java.util.Set;
  *
  * The loader integrates mapping data from {@link MappingLoader} and routing data
  * from {@link RoutingLoader}, and constructs a complete set of PEs with time-based
- * behavior.
+ * behavior. The routing schedules are packed into a {@link PackedRoutingStore}, which then
+ * holds the only copy of them: the batches taken from RoutingLoader are dropped once packed.
  */
 public class PELoader {
+    private static final Logger LOGGER = Logger.getLogger(PELoader.class.getName());
     private static PELoader instance;
     private Map<Coordinate, PE> nodes;
+    private PackedRoutingStore routingStore;
 
     private PELoader() {
         this.nodes = loadPEs();
@@ -45,6 +48,13 @@ public class PELoader {
         return nodes;
     }
 
+    /**
+     * @return the packed routing schedules of the current PEs
+     */
+    public PackedRoutingStore getRoutingStore() {
+        return routingStore;
+    }
+
     /**
      * Reloads the processing element data by re-reading the mapping and routing sources.
      * Useful if the underlying configuration or input files have changed.
@@ -53,52 +63,95 @@ public class PELoader {
         this.nodes = loadPEs();
     }
 
+    /**
+     * Rebuilds only the PEs at the given coordinates from the current mapping and routing
+     * data. The other PEs keep their schedules, but all of them move to a new
+     * {@link PackedRoutingStore} and a new node map, which replace the current ones; the
+     * previous store and map are left as they are, so frames still being built from them on
+     * other threads stay consistent. Callers pick up the new PEs with getNodes(). Must be
+     * called on the thread that reads the node map (the FX thread once the visualizer is
+     * running).
+     *
+     * @param coords the coordinates whose routing has changed
+     */
+    public void refresh(Collection<Coordinate> coords) {
+        SparseMappingTable mapTable = MappingLoader.get().getMappingTable();
+        RoutingLoader routing = RoutingLoader.get();
+        Set<Coordinate> keep = new LinkedHashSet<>(nodes.keySet());
+        keep.addAll(coords);
+        keep.removeIf(c -> !mapTable.contains(c) && !routing.hasRouting(c));
+        Map<Coordinate, RoutingBatch> routingMap = routing.takeRoutingBatches();
+        this.nodes = pack(keep, routingStore.rows(), routingStore.cols(), mapTable, routingMap);
+        release(routingMap);
+    }
+
     /**
      * Loads and constructs all PE instances by combining data from MappingLoader and RoutingLoader.
      *
-     * Ensures all coordinates with either mapping or routing data are included,
-     * and initializes missing data with null placeholders.
+     * Ensures all coordinates with either mapping or routing data are included. The routing schedules of all PEs
+     * are packed into one new {@link PackedRoutingStore}.
      *
      * @return a map of coordinates to fully constructed PE instances
      */
     private Map<Coordinate, PE> loadPEs() {
-        Map<Coordinate, List<Mapping>> mapTable = MappingLoader.get().getMappingTable();
-        int totalCycles = MappingLoader.get().getNumOfCycle();
-        Map<Coordinate, RoutingBatch> routingMap = RoutingLoader.get().getRoutingBatches();
+        SparseMappingTable mapTable = MappingLoader.get().getMappingTable();
+        FabricMatrix fabric = MappingLoader.get().getFabricMatrix();
+        Map<Coordinate, RoutingBatch> routingMap = RoutingLoader.get().takeRoutingBatches();
 
         Set<Coordinate> coords = new LinkedHashSet<>();
-        coords.addAll(mapTable.keySet());
-        coords.addAll(routingMap.keySet());
+        coords.addAll(mapTable.coordinates());
+        coords.addAll(RoutingLoader.get().getRoutedCoordinates());
+        Map<Coordinate, PE> nodeMap = pack(coords, fabric.rows(), fabric.cols(), mapTable, routingMap);
+        LOGGER.log(Level.INFO, RoutingInterner.get().report());
+        release(routingMap);
+        return nodeMap;
+    }
 
-        Map<Coordinate, PE> nodeMap = new LinkedHashMap<>();
+    /**
+     * Packs the schedules of the given PEs into a new store, which becomes the current one. A PE
+     * takes its batch from {@code routingMap} if it has one there; otherwise it keeps the schedule
+     * of the current PE at its coordinate, unless RoutingLoader no longer has a routing for it.
+     *
+     * @param coords the PEs, in the order of the returned map
+     * @param minRows the least number of rows of the store
+     * @param minCols the least number of columns of the store
+     * @param routingMap the batches taken from RoutingLoader
+     * @return the new PEs
+     */
+    private Map<Coordinate, PE> pack(Set<Coordinate> coords, int minRows, int minCols,
+                                     SparseMappingTable mapTable, Map<Coordinate, RoutingBatch> routingMap) {
+        int rows = minRows;
+        int cols = minCols;
         for (Coordinate c : coords) {
-            List<Mapping> mappingList = new ArrayList<>(mapTable.getOrDefault(c, initList(totalCycles)));
-            RoutingBatch routingBatch = routingMap.get(c);
-            List<Routing> routingList = initList(totalCycles);
-            int jumpStart = -1;
-            int jumpEnd = -1;
+            rows = Math.max(rows, c.row() + 1);
+            cols = Math.max(cols, c.col() + 1);
+        }
+        PackedRoutingStore store = new PackedRoutingStore(rows, cols);
+        RoutingLoader routing = RoutingLoader.get();
 
-            if (routingBatch != null) {
-                routingList = new ArrayList<>(routingBatch.routes());
-                jumpStart = routingBatch.jumpStart();
-                jumpEnd   = routingBatch.jumpEnd();
-            }
-            if (c.row() == 0 && c.col() == 0) {
-                System.out.println(mappingList.toString() + " " + routingList.toString());
+        Map<Coordinate, PE> nodeMap = new LinkedHashMap<>();
+        for (Coordinate c : coords) {
+            int index = store.indexOf(c);
+            RoutingBatch batch = routingMap.get(c);
+            PE previous = nodes == null ? null : nodes.get(c);
+            if (batch != null) {
+                store.put(index, batch);
+            } else if (previous != null && routing.hasRouting(c)) {
+                store.copy(index, previous.routingStore(), previous.index());
             }
-            nodeMap.put(c, new PE(c, mappingList, routingList, jumpStart, jumpEnd));
+            nodeMap.put(c, new PE(c, mapTable, store, index));
         }
+        store.trim();
+        this.routingStore = store;
         return nodeMap;
     }
 
     /**
-     * Creates a new List of the specified size, filled with null values to initialize empty
-     * or partially filled mapping and routing lists.
-     *
-     * @param size the number of elements in the list
-     * @return a list of null elements with the given size
+     * Drops the Routing lists of batches that have been packed.
      */
-    private static <T> List<T> initList(int size) {
-        return new ArrayList<>(Collections.nCopies(size, null));
+    private static void release(Map<Coordinate, RoutingBatch> routingMap) {
+        for (RoutingBatch batch : routingMap.values()) {
+            RoutingInterner.get().release(batch);
+        }
     }
 }
@@ -0,0 +1,59 @@
+package morpher.ui.visualization;
+
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Snapshot of one PE at one cycle, as dumped in `cycle_N/PE-Y<row>X<col>.state` by the simulator.
+ *
+ * Register and wire values are SIMD words of {@link #LANES} 8-bit lanes, packed into a
+ * {@code long} with lane 0 in the least significant byte. A wire that carried no value in the
+ * cycle ("None") maps to null.
+ *
+ * @param coord the coordinate of the PE
+ * @param pc the program counter
+ * @param registers register values by name (e.g. "reg_op1"), in file order
+ * @param wires wire values by name (e.g. "wire_alu_out"), in file order
+ * @param predicate the predicate register
+ * @param loopStart the loop start register
+ * @param loopEnd the loop end register
+ * @param operation the active operation, e.g. "LOAD 0"
+ */
+public record PEState(Coordinate coord, int pc, Map<String, Long> registers, Map<String, Long> wires,
+                      boolean predicate, int loopStart, int loopEnd, String operation) {
+    public static final int LANES = 8;
+
+    /**
+     * @return the 8-bit value of one lane of a packed SIMD word
+     */
+    public static int lane(long value, int lane) {
+        return (int) (value >>> (8 * lane)) & 0xFF;
+    }
+
+    /**
+     * Formats the snapshot as a multi-line text, one register or wire per line.
+     *
+     * @return a description for tooltips and the state panel
+     */
+    public String describe() {
+        StringJoiner lines = new StringJoiner("\n");
+        lines.add("PE (" + coord.row() + "," + coord.col() + ")  PC " + pc + "  " + operation);
+        registers.forEach((name, value) -> lines.add(formatValue(name, value)));
+        lines.add(String.format("%-14s %s", "reg_predicate", predicate));
+        lines.add(String.format("%-14s [%d, %d]", "reg_loop", loopStart, loopEnd));
+        wires.forEach((name, value) -> {
+            if (value != null) {
+                lines.add(formatValue(name, value));
+            }
+        });
+        return lines.toString();
+    }
+
+    private static String formatValue(String name, long value) {
+        StringJoiner lanes = new StringJoiner(" ", "[", "]");
+        for (int i = 0; i < LANES; i++) {
+            lanes.add(String.format("%02x", lane(value, i)));
+        }
+        return String.format("%-14s 0x%04x %s", name, value, lanes);
+    }
+}
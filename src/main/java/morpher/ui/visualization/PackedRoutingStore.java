@@ -0,0 +1,282 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.Direction;
+import morpher.ui.visualization.utils.RoutingType;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fabric-wide store of every PE's per-cycle switch configuration, packed into one
+ * {@code long} per PE and cycle.
+ *
+ * Word layout (bit 0 is the least significant):
+ * <pre>
+ *   bit  0       routing present (a null Routing is stored as 0)
+ *   bits 1..28   one 7-bit field per {@link Direction}, in ordinal order:
+ *                  bit 0 port configured, bits 1..3 input RoutingType, bits 4..6 output RoutingType
+ *   bits 32..63  {@link OpcodeRegistry} id of the opcode ({@link OpcodeRegistry#NONE} when absent)
+ * </pre>
+ * The schedules of all PEs live back to back in a single array; a PE is addressed by its
+ * row-major index and the store keeps its offset, length and loop region in parallel int
+ * arrays. Hot paths read the packed words directly through the static accessors; callers that
+ * need a {@link Routing} object get the shared instance from {@link #routing(long)}.
+ *
+ * A store is filled before it is handed to the PEs and is not changed afterwards: PELoader
+ * replaces it with a new one when PEs are reloaded, so threads reading it need no locking.
+ */
+public class PackedRoutingStore {
+    public static final long NONE = 0L;
+    private static final int PORT_BITS = 7;
+    private static final int PORT_SHIFT = 1;
+    private static final int OPCODE_SHIFT = 32;
+    private static final RoutingType[] TYPES = RoutingType.values();
+    private static final Direction[] DIRECTIONS = Direction.values();
+    /** Number of slots of the decoded Routing cache, a power of two. */
+    private static final int DECODED_SLOTS = 256;
+
+    private final int rows;
+    private final int cols;
+    private final int[] offset;
+    private final int[] length;
+    private final int[] loopStart;
+    private final int[] loopEnd;
+    private long[] words;
+    private int size;
+    /** Direct-mapped cache of routing(long); a slot holds the last word decoded into it. */
+    private final Decoded[] decoded = new Decoded[DECODED_SLOTS];
+
+    private record Decoded(long word, Routing routing) {}
+
+    /**
+     * Creates an empty store for a fabric of the given size.
+     *
+     * @param rows number of PE rows
+     * @param cols number of PE columns
+     */
+    public PackedRoutingStore(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        int n = rows * cols;
+        this.offset = new int[n];
+        this.length = new int[n];
+        this.loopStart = new int[n];
+        this.loopEnd = new int[n];
+        Arrays.fill(loopStart, -1);
+        Arrays.fill(loopEnd, -1);
+        this.words = new long[Math.max(16, n * 8)];
+    }
+
+    /**
+     * @return the row-major index of a coordinate, or -1 if it lies outside the store
+     */
+    public int indexOf(Coordinate c) {
+        if (c.row() < 0 || c.col() < 0 || c.row() >= rows || c.col() >= cols) {
+            return -1;
+        }
+        return c.row() * cols + c.col();
+    }
+
+    /**
+     * Stores the schedule of one PE. A store is filled once, PE by PE; storing a PE again writes
+     * over its schedule if the new one fits, otherwise it is appended and the old words are lost.
+     *
+     * @param index the row-major PE index
+     * @param batch the routing schedule, or null to clear it
+     */
+    public void put(int index, RoutingBatch batch) {
+        if (batch == null) {
+            length[index] = 0;
+            loopStart[index] = -1;
+            loopEnd[index] = -1;
+            return;
+        }
+        List<Routing> routes = batch.routes();
+        int n = routes.size();
+        if (n > length[index]) {
+            ensureCapacity(size + n);
+            offset[index] = size;
+            size += n;
+        }
+        int base = offset[index];
+        for (int i = 0; i < n; i++) {
+            words[base + i] = encode(routes.get(i));
+        }
+        length[index] = n;
+        loopStart[index] = batch.jumpStart();
+        loopEnd[index] = batch.jumpEnd();
+    }
+
+    /**
+     * Stores the schedule of a PE of another store, e.g. to carry the PEs that did not change
+     * over to the store replacing it.
+     *
+     * @param index the row-major PE index in this store
+     * @param from the store to copy from
+     * @param fromIndex the row-major PE index in {@code from}
+     */
+    public void copy(int index, PackedRoutingStore from, int fromIndex) {
+        int n = from.length[fromIndex];
+        if (n > length[index]) {
+            ensureCapacity(size + n);
+            offset[index] = size;
+            size += n;
+        }
+        System.arraycopy(from.words, from.offset[fromIndex], words, offset[index], n);
+        length[index] = n;
+        loopStart[index] = from.loopStart[fromIndex];
+        loopEnd[index] = from.loopEnd[fromIndex];
+    }
+
+    /**
+     * Returns the packed configuration of a PE at cycle k, taking into account looping
+     * behavior if applicable.
+     *
+     * @param index the row-major PE index
+     * @param k the cycle number
+     * @return the packed word, or {@link #NONE} if k exceeds the schedule
+     */
+    public long word(int index, int k) {
+        int start = loopStart[index];
+        int end = loopEnd[index];
+        int pc = (start == -1 || k <= end)
+                ? k
+                : start + (k - start) % (end - start + 1);
+        return (pc < length[index]) ? words[offset[index] + pc] : NONE;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public int loopStart(int index) {
+        return loopStart[index];
+    }
+
+    public int loopEnd(int index) {
+        return loopEnd[index];
+    }
+
+    /**
+     * @return the number of cycles scheduled for the PE
+     */
+    public int length(int index) {
+        return length[index];
+    }
+
+    /**
+     * @return the opcode encoded in a packed word ("" for an empty word)
+     */
+    public String opCode(long word) {
+        return OpcodeRegistry.get().name(opCodeId(word));
+    }
+
+    /**
+     * Returns the shared Routing equal to a packed word: the {@link RoutingInterner} instance
+     * if there is one, else one decoded and cached by this store.
+     *
+     * @param word a packed configuration
+     * @return the Routing, or null for {@link #NONE}
+     */
+    public Routing routing(long word) {
+        if (!isPresent(word)) {
+            return null;
+        }
+        int slot = (int) ((word * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(DECODED_SLOTS)));
+        // a slot is replaced as a whole, so a racing reader sees either the old or the new entry
+        Decoded cached = decoded[slot];
+        if (cached != null && cached.word() == word) {
+            return cached.routing();
+        }
+        Routing r = new Routing();
+        r.setOpCodeId(opCodeId(word));
+        for (Direction d : DIRECTIONS) {
+            if (isConfigured(word, d)) {
+                r.setInput(d, inputType(word, d));
+                r.setOutput(d, outputType(word, d));
+            }
+        }
+        // the cache holds no interned reference: it would never be released
+        r = RoutingInterner.get().canonical(r);
+        decoded[slot] = new Decoded(word, r);
+        return r;
+    }
+
+    /**
+     * Releases the spare capacity of the word array once every PE is stored.
+     */
+    public void trim() {
+        if (words.length > size) {
+            words = Arrays.copyOf(words, size);
+        }
+    }
+
+    /**
+     * @return the number of packed words held
+     */
+    public int wordCount() {
+        return size;
+    }
+
+    public static boolean isPresent(long word) {
+        return (word & 1L) != 0;
+    }
+
+    public static int opCodeId(long word) {
+        return (int) (word >>> OPCODE_SHIFT);
+    }
+
+    public static boolean isConfigured(long word, Direction d) {
+        return (port(word, d) & 1) != 0;
+    }
+
+    public static RoutingType inputType(long word, Direction d) {
+        return TYPES[(port(word, d) >>> 1) & 0x7];
+    }
+
+    public static RoutingType outputType(long word, Direction d) {
+        return TYPES[(port(word, d) >>> 4) & 0x7];
+    }
+
+    /**
+     * @return true if the port in direction d receives data from its neighbour
+     */
+    public static boolean hasInput(long word, Direction d) {
+        return isConfigured(word, d) && ((port(word, d) >>> 1) & 0x7) != RoutingType.OPEN.ordinal();
+    }
+
+    /**
+     * @return true if the port in direction d sends data to its neighbour
+     */
+    public static boolean hasOutput(long word, Direction d) {
+        return isConfigured(word, d) && ((port(word, d) >>> 4) & 0x7) != RoutingType.OPEN.ordinal();
+    }
+
+    private static int port(long word, Direction d) {
+        return (int) (word >>> (PORT_SHIFT + d.ordinal() * PORT_BITS)) & 0x7F;
+    }
+
+    private long encode(Routing r) {
+        if (r == null) {
+            return NONE;
+        }
+        long word = 1L;
+        for (Map.Entry<Direction, PortRouting> e : r.getPorts().entrySet()) {
+            PortRouting pr = e.getValue();
+            long field = 1L | ((long) pr.in().ordinal() << 1) | ((long) pr.out().ordinal() << 4);
+            word |= field << (PORT_SHIFT + e.getKey().ordinal() * PORT_BITS);
+        }
+        return word | ((long) r.getOpCodeId() << OPCODE_SHIFT);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > words.length) {
+            words = Arrays.copyOf(words, Math.max(required, words.length * 2));
+        }
+    }
+}
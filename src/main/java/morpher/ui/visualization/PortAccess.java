@@ -0,0 +1,27 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.MemoryAccessMode;
+
+/**
+ * Activity of one data memory port in one cycle, as dumped in `cycle_N/dm<bank>_port<n>`.
+ *
+ * @param address the byte address on the port, -1 if none ("None")
+ * @param data the value driven towards the memory, packed like {@link PEState} values; null if none
+ * @param register the value held in the port's data register; null if none
+ * @param mode the access performed
+ */
+public record PortAccess(int address, Long data, Long register, MemoryAccessMode mode) {
+    /**
+     * @return true if the port wrote to the memory in this cycle
+     */
+    public boolean isWrite() {
+        return mode.isWrite() && address >= 0;
+    }
+
+    /**
+     * @return true if the port read from the memory in this cycle
+     */
+    public boolean isRead() {
+        return mode.isRead() && address >= 0;
+    }
+}
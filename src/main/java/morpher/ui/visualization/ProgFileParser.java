@@ -0,0 +1,369 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.Direction;
+import morpher.ui.visualization.utils.RoutingType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hand-written tokenizer for the PE configuration (`.prog`) grammar.
+ *
+ * The parser reads the file straight from a memory-mapped buffer and recognises
+ * <pre>
+ *   operation: OPCODE [ '[' start ',' end ']' ]
+ *   switch_config: { src -> dst, ... };
+ * </pre>
+ * Every other statement (e.g. input_register_used) is skipped. Keywords, ports and
+ * directions are matched byte by byte, so no per-line String, lower-cased copy or regex
+ * matcher is created; the only allocations are the resulting {@link Routing} objects and
+ * one String per distinct opcode, which is interned into the {@link OpcodeRegistry}.
+ *
+ * The output is identical to the line-based parser it replaces (see ProgFileParserTest), except
+ * that blanks are also accepted between a keyword and its colon.
+ */
+final class ProgFileParser {
+    private static final byte[] OPERATION = ascii("operation");
+    private static final byte[] SWITCH_CONFIG = ascii("switch_config");
+    private static final byte[] JUMP = ascii("jump");
+    private static final byte[] OPEN = ascii("open");
+    private static final byte[] IN_SUFFIX = ascii("In");
+    private static final byte[] OUT_SUFFIX = ascii("_out");
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final byte[][] DIRECTION_NAMES = {
+            ascii("north"), ascii("east"), ascii("south"), ascii("west")
+    };
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+    private final List<String> opCodes = new ArrayList<>();
+    private final List<Integer> opCodeIds = new ArrayList<>();
+
+    private ProgFileParser(ByteBuffer buf) {
+        this.buf = buf;
+        this.limit = buf.limit();
+        this.pos = buf.position();
+    }
+
+    /**
+     * Parses a `.prog` file into a RoutingBatch.
+     *
+     * @param path the path to the `.prog` file
+     * @return the routing schedule described by the file
+     * @throws IOException if the file cannot be read
+     */
+    static RoutingBatch parse(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return parse(buf);
+        }
+    }
+
+    /**
+     * Parses the `.prog` text held between the buffer's position and limit.
+     *
+     * @param buf the bytes of a `.prog` file
+     * @return the routing schedule described by the bytes
+     */
+    static RoutingBatch parse(ByteBuffer buf) {
+        return new ProgFileParser(buf).parseBatch();
+    }
+
+    private RoutingBatch parseBatch() {
+        List<Routing> routes = new ArrayList<>();
+        int opCode = OpcodeRegistry.NONE;
+        int jumpStart = -1;
+        int jumpEnd = -1;
+
+        while (skipWhitespace()) {
+            int start = pos;
+            int end = scanWord();
+            if (end == start) {
+                skipLine();
+                continue;
+            }
+            skipBlanks();
+            if (!peek(':')) {
+                skipLine();
+                continue;
+            }
+            pos++;
+
+            if (equalsIgnoreCase(start, end, OPERATION)) {
+                skipBlanks();
+                int opStart = pos;
+                while (pos < limit && isLetter(buf.get(pos))) {
+                    pos++;
+                }
+                opCode = opCode(opStart, pos);
+                if (equalsIgnoreCase(opStart, pos, JUMP)) {
+                    int[] range = parseJumpRange();
+                    if (range != null) {
+                        jumpStart = range[0];
+                        jumpEnd = range[1];
+                    }
+                }
+                skipLine();
+            } else if (equalsIgnoreCase(start, end, SWITCH_CONFIG)) {
+                skipLine();
+                Routing routing = new Routing();
+                routing.setOpCodeId(opCode);
+                parseSwitchBody(routing);
+                routes.add(routing);
+            } else {
+                skipStatement();
+            }
+        }
+        return new RoutingBatch(Collections.unmodifiableList(routes), jumpStart, jumpEnd);
+    }
+
+    /**
+     * Parses the port entries of a switch_config block, one per line, up to the line
+     * starting with the closing brace.
+     */
+    private void parseSwitchBody(Routing routing) {
+        while (skipWhitespace()) {
+            if (peek('}')) {
+                skipLine();
+                return;
+            }
+            parsePortLine(routing);
+        }
+    }
+
+    /**
+     * Parses every "src -> dst" pair on the current line, following the same rules as
+     * {@link Routing#parseRoutingLine(String, Routing)}.
+     */
+    private void parsePortLine(Routing routing) {
+        while (pos < limit && buf.get(pos) != '\n') {
+            int srcStart = pos;
+            int srcEnd = scanWord();
+            if (srcEnd == srcStart) {
+                pos++;
+                continue;
+            }
+            skipBlanks();
+            if (!(peek('-') && pos + 1 < limit && buf.get(pos + 1) == '>')) {
+                continue;
+            }
+            pos += 2;
+            skipBlanks();
+            int dstStart = pos;
+            int dstEnd = scanWord();
+            if (dstEnd == dstStart || equalsIgnoreCase(srcStart, srcEnd, OPEN)) {
+                continue;
+            }
+            if (endsWith(srcStart, srcEnd, IN_SUFFIX, false)) {
+                Direction d = direction(srcStart, srcEnd - IN_SUFFIX.length);
+                if (d != null) {
+                    // "<Dir>In" is not a RoutingType constant, so RoutingType.get maps it to OTHER
+                    routing.setInput(d, RoutingType.OTHER);
+                }
+            }
+            if (endsWith(dstStart, dstEnd, OUT_SUFFIX, true)) {
+                Direction d = direction(dstStart, dstEnd - OUT_SUFFIX.length);
+                if (d != null) {
+                    routing.setOutput(d, RoutingType.OUTPUT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Parses "[start, end]" following a JUMP opcode.
+     *
+     * @return the two bounds, or null if the range is malformed
+     */
+    private int[] parseJumpRange() {
+        skipBlanks();
+        if (!peek('[')) {
+            return null;
+        }
+        pos++;
+        int start = parseInt();
+        skipBlanks();
+        if (start < 0 || !peek(',')) {
+            return null;
+        }
+        pos++;
+        int end = parseInt();
+        skipBlanks();
+        if (end < 0 || !peek(']')) {
+            return null;
+        }
+        pos++;
+        return new int[]{start, end};
+    }
+
+    private int parseInt() {
+        skipBlanks();
+        int value = -1;
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = (value < 0 ? 0 : value * 10) + (b - '0');
+            pos++;
+        }
+        return value;
+    }
+
+    /**
+     * Skips an unrecognised statement: a single line, or a brace-delimited block if the
+     * line opens one.
+     */
+    private void skipStatement() {
+        int depth = 0;
+        while (pos < limit) {
+            byte b = buf.get(pos++);
+            if (b == '{') {
+                depth++;
+            } else if (b == '}') {
+                depth--;
+            } else if (b == '\n' && depth <= 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the {@link OpcodeRegistry} id of the opcode spelled by the bytes in [start, end).
+     */
+    private int opCode(int start, int end) {
+        for (int i = 0; i < opCodes.size(); i++) {
+            if (equalsIgnoreCase(start, end, opCodes.get(i))) {
+                return opCodeIds.get(i);
+            }
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = toUpper(buf.get(start + i));
+        }
+        String op = new String(bytes, StandardCharsets.US_ASCII);
+        int id = OpcodeRegistry.get().intern(op);
+        opCodes.add(op);
+        opCodeIds.add(id);
+        return id;
+    }
+
+    private Direction direction(int start, int end) {
+        for (int i = 0; i < DIRECTION_NAMES.length; i++) {
+            if (equalsIgnoreCase(start, end, DIRECTION_NAMES[i])) {
+                return DIRECTIONS[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Skips whitespace including line breaks.
+     *
+     * @return false if the end of the buffer was reached
+     */
+    private boolean skipWhitespace() {
+        while (pos < limit && buf.get(pos) <= ' ') {
+            pos++;
+        }
+        return pos < limit;
+    }
+
+    private void skipBlanks() {
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private void skipLine() {
+        while (pos < limit && buf.get(pos++) != '\n') {
+            // consume up to and including the line break
+        }
+    }
+
+    /**
+     * Advances over a word made of letters, digits and underscores.
+     *
+     * @return the end offset of the word
+     */
+    private int scanWord() {
+        while (pos < limit) {
+            byte b = buf.get(pos);
+            if (!(isLetter(b) || (b >= '0' && b <= '9') || b == '_')) {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private boolean peek(char c) {
+        return pos < limit && buf.get(pos) == c;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, byte[] word) {
+        if (end - start != word.length) {
+            return false;
+        }
+        for (int i = 0; i < word.length; i++) {
+            if (toLower(buf.get(start + i)) != word[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, String word) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            if (toUpper(buf.get(start + i)) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean endsWith(int start, int end, byte[] suffix, boolean ignoreCase) {
+        int off = end - suffix.length;
+        if (off < start) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length; i++) {
+            byte b = buf.get(off + i);
+            if ((ignoreCase ? toLower(b) : b) != suffix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(byte b) {
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static byte toLower(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static byte toUpper(byte b) {
+        return (b >= 'a' && b <= 'z') ? (byte) (b - ('a' - 'A')) : b;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,77 @@
+package morpher.ui.visualization;
+
+/**
+ * The display list of the fabric grid at one cycle: for every cell, in row-major order, the packed
+ * routing word, the label, and the route arrows with their final geometry.
+ *
+ * An arrow is stored as ARROW_FLOATS floats: the line from (x0, y0) to (x1, y1) in grid
+ * coordinates, then the ends of the two arrowhead strokes drawn back from (x1, y1). The arrows of
+ * a cell are the indices [firstArrow(cell), endArrow(cell)).
+ *
+ * Frames are built by {@link FramePreparer} and never modified afterwards, so they can be handed
+ * from the worker threads to the FX thread without copying.
+ */
+public final class RenderFrame {
+    public static final int ARROW_FLOATS = 8;
+
+    private final int cycle;
+    private final long[] words;
+    private final String[] labels;
+    private final int[] arrowStart;
+    private final float[] arrows;
+
+    RenderFrame(int cycle, long[] words, String[] labels, int[] arrowStart, float[] arrows) {
+        this.cycle = cycle;
+        this.words = words;
+        this.labels = labels;
+        this.arrowStart = arrowStart;
+        this.arrows = arrows;
+    }
+
+    public int cycle() {
+        return cycle;
+    }
+
+    public int cellCount() {
+        return words.length;
+    }
+
+    /**
+     * @return the packed routing word of a cell, {@link PackedRoutingStore#NONE} if it has no PE;
+     *         two cells with the same word show the same label and routes
+     */
+    public long word(int cell) {
+        return words[cell];
+    }
+
+    /**
+     * @return the label of a cell, or null if it has no PE
+     */
+    public String label(int cell) {
+        return labels[cell];
+    }
+
+    public int firstArrow(int cell) {
+        return arrowStart[cell];
+    }
+
+    public int endArrow(int cell) {
+        return arrowStart[cell + 1];
+    }
+
+    /**
+     * @param arrow the index of the arrow
+     * @param k the index of the value within the arrow, below ARROW_FLOATS
+     * @return the value
+     */
+    public float arrow(int arrow, int k) {
+        return arrows[arrow * ARROW_FLOATS + k];
+    }
+
+    /**
+     * @return the approximate heap size of the frame, in bytes
+     */
+    public long sizeInBytes() {
+        return 8L * words.length + 4L * labels.length + 4L * arrowStart.length + 4L * arrows.length;
+    }
+}
@@ -3,7 +3,9 @@ package morpher.ui.visualization;
 import morpher.ui.visualization.utils.Direction;
 import morpher.ui.visualization.utils.RoutingType;
 
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,41 +14,106 @@ import static morpher.ui.visualization.utils.Direction.getDirection;
 /**
  * Represents the routing configuration of a Processing Element (PE) for a specific cycle.
  *
- * A Routing includes an opCode representing the instruction executed,
+ * A Routing includes an opCode (an {@link OpcodeRegistry} id) representing the instruction executed,
  * and a mapping of directional ports to PortRouting, which describes the input and output connections.
+ *
+ * A Routing is built up by the parsers and then frozen by {@link RoutingInterner}, after which it
+ * is immutable and may be shared by any number of PEs and cycles.
  */
 public class Routing {
     private static final Pattern PORT_LINE = Pattern.compile("(\\w+)\\s*->\\s*(\\w+)");
-    private EnumMap<Direction, PortRouting> ports;
-    private String opCode;
+    private final EnumMap<Direction, PortRouting> ports;
+    private final Map<Direction, PortRouting> portsView;
+    private int opCodeId;
+    private boolean frozen;
+    private int hash;
 
     public Routing() {
         this.ports = new EnumMap<Direction, PortRouting>(Direction.class);
-        this.opCode = "";
+        this.portsView = Collections.unmodifiableMap(ports);
+        this.opCodeId = OpcodeRegistry.NONE;
     }
 
     public void setOpCode(String opCode) {
-        this.opCode = opCode;
+        setOpCodeId(OpcodeRegistry.get().intern(opCode));
     }
 
     public String getOpCode() {
-        return opCode;
+        return OpcodeRegistry.get().name(opCodeId);
+    }
+
+    public void setOpCodeId(int opCodeId) {
+        checkMutable();
+        this.opCodeId = opCodeId;
     }
 
-    public EnumMap<Direction, PortRouting> getPorts() {
-        return ports;
+    /**
+     * @return the {@link OpcodeRegistry} id of the operation
+     */
+    public int getOpCodeId() {
+        return opCodeId;
+    }
+
+    /**
+     * @return a read-only view of the configured ports
+     */
+    public Map<Direction, PortRouting> getPorts() {
+        return portsView;
     }
 
     public void setInput(Direction d, RoutingType type) {
+        checkMutable();
         PortRouting pr = ports.getOrDefault(d, PortRouting.EMPTY);
         ports.put(d, pr.withIn(type));
     }
 
     public void setOutput(Direction d, RoutingType type) {
+        checkMutable();
         PortRouting pr = ports.getOrDefault(d, PortRouting.EMPTY);
         ports.put(d, pr.withOut(type));
     }
 
+    /**
+     * Makes this routing immutable so that it can be shared.
+     */
+    void freeze() {
+        if (!frozen) {
+            hash = 31 * opCodeId + ports.hashCode();
+            frozen = true;
+        }
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Routing is shared and can no longer be modified");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Routing other)) {
+            return false;
+        }
+        return opCodeId == other.opCodeId && ports.equals(other.ports);
+    }
+
+    @Override
+    public int hashCode() {
+        return frozen ? hash : 31 * opCodeId + ports.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getOpCode() + ports;
+    }
+
     public static void parseRoutingLine(String line, Routing routes) {
         Matcher rm = PORT_LINE.matcher(line);
         while (rm.find()) {
@@ -0,0 +1,169 @@
+package morpher.ui.visualization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleton canonicalizing table for {@link Routing} configurations.
+ *
+ * Most PEs spend most cycles in one of a few switch configurations, so instead of every
+ * cycle holding its own Routing, each distinct configuration is frozen and stored once and
+ * every PE/cycle refers to that shared instance. The table is safe to use from the parallel
+ * loaders.
+ *
+ * Each configuration counts the references interned to it. A holder that drops a batch, such as
+ * RoutingLoader replacing the batch of a PE on a reload, releases it, so that the report covers
+ * the live routings and a configuration no longer referenced leaves the table.
+ */
+public class RoutingInterner {
+    /** Rough footprint of one Routing: the object, its EnumMap, the map's arrays and views. */
+    private static final long ROUTING_BYTES = 160;
+    private static RoutingInterner instance;
+    private final Map<Routing, Entry> table = new ConcurrentHashMap<>();
+    private final LongAdder references = new LongAdder();
+
+    /** A canonical routing and the number of references to it; updated only inside table.compute. */
+    private static final class Entry {
+        private final Routing routing;
+        private long count;
+
+        private Entry(Routing routing) {
+            this.routing = routing;
+        }
+    }
+
+    private RoutingInterner() {
+    }
+
+    /**
+     * Returns the singleton instance of RoutingInterner, initializing it on first access.
+     *
+     * @return the singleton RoutingInterner instance
+     */
+    public static synchronized RoutingInterner get() {
+        if (instance == null) {
+            instance = new RoutingInterner();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the canonical instance equal to the given routing, freezing it if it becomes
+     * the canonical one.
+     *
+     * @param routing a fully built routing, or null
+     * @return the shared, immutable routing equal to {@code routing}
+     */
+    public Routing intern(Routing routing) {
+        if (routing == null) {
+            return null;
+        }
+        routing.freeze();
+        Entry entry = table.compute(routing, (k, e) -> {
+            if (e == null) {
+                e = new Entry(k);
+            }
+            e.count++;
+            return e;
+        });
+        references.increment();
+        return entry.routing;
+    }
+
+    /**
+     * Returns the canonical instance equal to the given routing if the table holds one, without
+     * taking a reference to it, e.g. for a cache that is never released; otherwise the routing
+     * itself, frozen but not added.
+     *
+     * @param routing a fully built routing, or null
+     * @return a shared, immutable routing equal to {@code routing}
+     */
+    public Routing canonical(Routing routing) {
+        if (routing == null) {
+            return null;
+        }
+        routing.freeze();
+        Entry entry = table.get(routing);
+        return entry != null ? entry.routing : routing;
+    }
+
+    /**
+     * Drops one reference to a configuration, and the configuration itself with its last one.
+     *
+     * @param routing a routing returned by intern(Routing), or null
+     */
+    public void release(Routing routing) {
+        if (routing == null) {
+            return;
+        }
+        table.computeIfPresent(routing, (k, e) -> {
+            references.decrement();
+            return --e.count == 0 ? null : e;
+        });
+    }
+
+    /**
+     * Interns every routing of a batch.
+     *
+     * @param batch the batch to canonicalize
+     * @return a batch referring only to shared routings
+     */
+    public RoutingBatch intern(RoutingBatch batch) {
+        List<Routing> routes = new ArrayList<>(batch.routes().size());
+        for (Routing r : batch.routes()) {
+            routes.add(intern(r));
+        }
+        return new RoutingBatch(Collections.unmodifiableList(routes), batch.jumpStart(), batch.jumpEnd());
+    }
+
+    /**
+     * Releases every routing of a batch that is no longer used.
+     *
+     * @param batch a batch returned by intern(RoutingBatch), or null
+     */
+    public void release(RoutingBatch batch) {
+        if (batch != null) {
+            for (Routing r : batch.routes()) {
+                release(r);
+            }
+        }
+    }
+
+    /**
+     * @return the number of distinct configurations held
+     */
+    public int distinct() {
+        return table.size();
+    }
+
+    /**
+     * @return the number of routings interned and not released, duplicates included
+     */
+    public long references() {
+        return references.sum();
+    }
+
+    /**
+     * Drops all canonical instances. Routings already handed out stay valid.
+     */
+    public void clear() {
+        table.clear();
+        references.reset();
+    }
+
+    /**
+     * @return a heap-usage summary with the deduplication ratio and the estimated memory saved
+     */
+    public String report() {
+        long refs = references();
+        int distinct = distinct();
+        double ratio = distinct == 0 ? 1.0 : (double) refs / distinct;
+        long savedKb = (refs - distinct) * ROUTING_BYTES / 1024;
+        return String.format("routing intern table: %d references, %d distinct (%.1fx dedup), ~%d KB saved",
+                refs, distinct, ratio, savedKb);
+    }
+}
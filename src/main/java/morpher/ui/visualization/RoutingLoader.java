@@ -1,46 +1,66 @@
 package morpher.ui.visualization;
 
-import java.io.BufferedReader;
+import morpher.ui.visualization.utils.Direction;
+import morpher.ui.visualization.utils.RoutingType;
+
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
-import static morpher.ui.visualization.Routing.parseRoutingLine;
-
 /**
  * Singleton class responsible for loading RoutingBatch instructions from `.prog` files.
  *
  * Each file corresponds to a Processing Element (PE) located at a specific Coordinate.
  * The loader parses operation codes, switch configurations, and optional loop definitions
- * to construct a time-based routing schedule for each PE.
+ * to construct a time-based routing schedule for each PE. The files are read from a design
+ * directory or from a {@link TraceArchive}.
+ *
+ * A PE whose `.prog` text dump is missing can be loaded from its raw bitstream (`PE-Y<row>X<col>`)
+ * instead, decoded with the {@link BitstreamLayout}. This fallback is off unless enabled with
+ * {@code -Dmorpher.bitstream.fallback=true} or {@link #setBitstreamFallback(boolean)}, and each PE
+ * loaded from a bitstream, or left out for lack of a `.prog`, is logged as a warning.
+ *
+ * The loader keeps the batches only until {@link PELoader} packs them into a
+ * {@link PackedRoutingStore} with {@link #takeRoutingBatches()}; afterwards it only remembers which
+ * PEs have a routing, so that the per-cycle Routing lists do not stay on the heap next to the
+ * packed words.
  */
 public class RoutingLoader {
     private static final Logger LOGGER = Logger.getLogger(RoutingLoader.class.getName());
-    private static final Pattern FILE_NAME = Pattern.compile("PE-Y(\\d+)X(\\d+)\\.prog");
-    private static final Pattern OPCODE_PATTERN = Pattern.compile(
-            "^\\s*operation\\s*:\\s*([A-Z]+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern JUMP_PATTERN = Pattern.compile(
-            "^\\s*operation:\\s*jump\\s*\\[\\s*(\\d+)\\s*,\\s*(\\d+)\\s*]\\s*$",
-            Pattern.CASE_INSENSITIVE);
+    private static final Pattern FILE_NAME = Pattern.compile("PE-Y(\\d+)X(\\d+)(\\.prog)?");
+    private static final String PROG_SUFFIX = ".prog";
     private static final Path DEMO_URL = getDemoDirectory();
+    /** The batches loaded since PELoader last took them. */
     private Map<Coordinate, RoutingBatch> routingBatches;
+    /** The PEs that have a routing, taken or not. */
+    private Set<Coordinate> routed;
+    private LoadReport lastReport;
+    private boolean parallel = true;
+    private boolean bitstreamFallback = Boolean.getBoolean("morpher.bitstream.fallback");
     private static RoutingLoader instance;
 
     private RoutingLoader() {
-        this.routingBatches = loadRouting(DEMO_URL);
+        loaded(loadRouting(DEMO_URL));
     }
 
     /**
@@ -59,121 +79,377 @@ public class RoutingLoader {
         return instance;
     }
 
-    public Map<Coordinate, RoutingBatch> getRoutingBatches() {
-        return routingBatches;
+    /**
+     * Hands the batches loaded or reloaded since the previous call over to the caller, which
+     * packs them, and forgets them.
+     *
+     * @return the new routing batches by coordinate
+     */
+    public synchronized Map<Coordinate, RoutingBatch> takeRoutingBatches() {
+        Map<Coordinate, RoutingBatch> taken = routingBatches;
+        routingBatches = new ConcurrentSkipListMap<>(Coordinate.ROW_MAJOR);
+        return taken;
+    }
+
+    /**
+     * @return true if the PE at a coordinate has a routing, whether its batch was taken or not
+     */
+    public synchronized boolean hasRouting(Coordinate coord) {
+        return routed.contains(coord);
+    }
+
+    /**
+     * @return the coordinates of every PE that has a routing
+     */
+    public synchronized Set<Coordinate> getRoutedCoordinates() {
+        return Set.copyOf(routed);
+    }
+
+    /**
+     * @return the timings and failures of the most recent load.
+     */
+    public LoadReport getLastReport() {
+        return lastReport;
     }
 
     /**
-     * Reloads the routing data from a specified directory.
+     * Selects whether subsequent loads parse the `.prog` files in parallel (the default)
+     * or one after another on the calling thread.
      *
-     * @param p the path to the new directory containing `.prog` files
+     * @param parallel true to spread file parsing across cores
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Selects whether subsequent loads decode the bitstream of a PE that has no `.prog`.
+     *
+     * @param bitstreamFallback true to load such PEs from their bitstream, false to leave them out
+     */
+    public void setBitstreamFallback(boolean bitstreamFallback) {
+        this.bitstreamFallback = bitstreamFallback;
+    }
+
+    /**
+     * Reloads the routing data from a specified directory or trace archive.
+     *
+     * @param p the path to the new directory containing `.prog` files, or a trace archive
      */
     public void refresh(Path p) {
-        this.routingBatches = loadRouting(p);
+        loaded(loadRouting(p));
+    }
+
+    /**
+     * Replaces all routing with a full load; batches not taken yet are dropped.
+     */
+    private synchronized void loaded(Map<Coordinate, RoutingBatch> batches) {
+        this.routingBatches = batches;
+        this.routed = new HashSet<>(batches.keySet());
+    }
+
+    /**
+     * Re-parses only the given `.prog` or bitstream files; their batches are taken with the next
+     * {@link #takeRoutingBatches()}. PEs left with neither file no longer have a routing. A PE
+     * whose file cannot be parsed keeps its routing.
+     *
+     * @param files the changed `.prog` or bitstream files
+     * @return the coordinates whose routing batch was replaced or removed
+     */
+    public Set<Coordinate> reload(Collection<Path> files) {
+        long start = System.nanoTime();
+        Map<Coordinate, RoutingBatch> routingMap = new ConcurrentSkipListMap<>(Coordinate.ROW_MAJOR);
+        Set<Coordinate> removed = new LinkedHashSet<>();
+        Set<Coordinate> changed = new LinkedHashSet<>();
+        Set<Path> existing = new LinkedHashSet<>();
+        for (Path path : files) {
+            Coordinate coord = coordinateOf(path);
+            if (coord == null || !changed.add(coord)) {
+                continue;
+            }
+            Path source = routingSource(path);
+            if (source != null) {
+                existing.add(source);
+            } else {
+                removed.add(coord);
+            }
+        }
+
+        Stream<Path> stream = parallel ? existing.parallelStream() : existing.stream();
+        List<LoadReport.FileResult> results = stream
+                .map(path -> loadRoutingFile(path, routingMap))
+                .toList();
+        synchronized (this) {
+            // a batch replaced before it was taken is no longer referenced
+            for (Coordinate coord : removed) {
+                RoutingInterner.get().release(routingBatches.remove(coord));
+                routed.remove(coord);
+            }
+            for (Map.Entry<Coordinate, RoutingBatch> entry : routingMap.entrySet()) {
+                RoutingInterner.get().release(routingBatches.put(entry.getKey(), entry.getValue()));
+                routed.add(entry.getKey());
+            }
+        }
+        this.lastReport = new LoadReport(results, System.nanoTime() - start);
+        for (LoadReport.FileResult failure : lastReport.failures()) {
+            LOGGER.log(Level.WARNING, "Cannot parse {0}: {1}",
+                    new Object[]{failure.file().getFileName(), failure.error()});
+        }
+        return changed;
+    }
+
+    /**
+     * @param path a file in a design directory
+     * @return true if the file is a PE configuration named "PE-Y<row>X<col>.prog" or its
+     *         bitstream "PE-Y<row>X<col>"
+     */
+    public static boolean isRoutingFile(Path path) {
+        return coordinateOf(path) != null;
     }
 
     /**
      * Loads and parses all `.prog` files from the specified directory into routing batches.
      *
-     * Files must follow the naming pattern "PE-Y<row>X<col>.prog".
+     * Files must follow the naming pattern "PE-Y<row>X<col>.prog"; a PE that only has a
+     * "PE-Y<row>X<col>" bitstream is decoded from it if the bitstream fallback is on. In parallel mode the files
+     * are parsed on the fork-join pool; either way the resulting map iterates in row-major
+     * coordinate order, and the timings are recorded in {@link #getLastReport()}.
      *
-     * @param docsDir the directory containing the `.prog` files
+     * @param docsDir the directory containing the `.prog` files, or a trace archive
      * @return a map of Coordinate to RoutingBatch
      */
     private Map<Coordinate, RoutingBatch> loadRouting(Path docsDir) {
-        Map<Coordinate, RoutingBatch> routingMap = new LinkedHashMap<>();
+        if (!Files.isDirectory(docsDir)) {
+            return loadArchivedRouting(docsDir);
+        }
+        long start = System.nanoTime();
+        List<Path> progFiles;
+        try (Stream<Path> files = Files.list(docsDir)) {
+            progFiles = files.filter(RoutingLoader::isRoutingFile)
+                    .map(this::routingSource)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list .prog files in " + docsDir, e);
+        }
+
+        Map<Coordinate, RoutingBatch> routingMap = new ConcurrentSkipListMap<>(Coordinate.ROW_MAJOR);
+        RoutingInterner.get().clear();
+        Stream<Path> stream = parallel ? progFiles.parallelStream() : progFiles.stream();
+        List<LoadReport.FileResult> results = stream
+                .map(path -> loadRoutingFile(path, routingMap))
+                .toList();
+
+        report(results, start, docsDir);
+        return routingMap;
+    }
+
+    /**
+     * Loads the routing of every PE from a trace archive, preferring the `.prog` of a PE over its
+     * bitstream, and using the bitstream only if the fallback is on, as for a directory. Archived files are parsed straight from the archive; the
+     * {@link SnapshotCache}, keyed by file path and modification time, is not used for them.
+     *
+     * @param archivePath the trace archive
+     * @return a map of Coordinate to RoutingBatch
+     */
+    private Map<Coordinate, RoutingBatch> loadArchivedRouting(Path archivePath) {
+        long start = System.nanoTime();
+        TraceSource trace;
         try {
-            try (Stream<Path> files = Files.list(docsDir)) {
-                files.filter(p -> p.getFileName().toString().matches("PE-Y\\d+X\\d+\\.prog"))
-                        .forEach(path -> parseRoutingFile(path, routingMap));
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Failed to load .prog files", e);
+            trace = TraceSource.open(archivePath);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open trace archive " + archivePath, e);
         }
+        List<String> progFiles = trace.files().stream()
+                .filter(name -> FILE_NAME.matcher(name).matches())
+                .filter(name -> name.endsWith(PROG_SUFFIX) || !trace.exists(name + PROG_SUFFIX)
+                        && acceptBitstream(trace.location().resolve(name)))
+                .toList();
+
+        Map<Coordinate, RoutingBatch> routingMap = new ConcurrentSkipListMap<>(Coordinate.ROW_MAJOR);
+        RoutingInterner.get().clear();
+        Stream<String> stream = parallel ? progFiles.parallelStream() : progFiles.stream();
+        List<LoadReport.FileResult> results = stream
+                .map(name -> loadArchivedFile(trace, name, routingMap))
+                .toList();
+
+        report(results, start, archivePath);
         return routingMap;
     }
 
+    private void report(List<LoadReport.FileResult> results, long start, Path source) {
+        this.lastReport = new LoadReport(results, System.nanoTime() - start);
+        for (LoadReport.FileResult failure : lastReport.failures()) {
+            LOGGER.log(Level.WARNING, "Cannot parse {0}: {1}",
+                    new Object[]{failure.file().getFileName(), failure.error()});
+        }
+        LOGGER.log(Level.FINE, "Loaded routing from {0}: {1}", new Object[]{source, lastReport});
+    }
+
+    /**
+     * Parses a single `.prog` file (or reads it from the {@link SnapshotCache}), times it and inserts
+     * the resulting RoutingBatch, with its routings interned, into the provided map. Failures are
+     * reported in the returned result instead of being thrown. Bitstreams are always decoded
+     * afresh: their decoding depends on the {@link BitstreamLayout}, which the cache does not track.
+     *
+     * @param path the path to the `.prog` or bitstream file
+     * @param routingBatchMap the thread-safe map to populate with parsed data
+     * @return the parse result of this file
+     */
+    private LoadReport.FileResult loadRoutingFile(Path path, Map<Coordinate, RoutingBatch> routingBatchMap) {
+        Coordinate coord = coordinateOf(path);
+        long start = System.nanoTime();
+        try {
+            RoutingBatch batch = isProgFile(path)
+                    ? SnapshotCache.get().load("prog", path, ROUTING_CODEC, RoutingLoader::parseRoutingFile)
+                    : BitstreamDecoder.decode(path);
+            routingBatchMap.put(coord, RoutingInterner.get().intern(batch));
+            warnIfBitstream(path);
+            return new LoadReport.FileResult(path, coord, System.nanoTime() - start, null);
+        } catch (Exception e) {
+            return new LoadReport.FileResult(path, coord, System.nanoTime() - start, e.toString());
+        }
+    }
+
+    /**
+     * Parses a single archived `.prog` or bitstream file like {@link #loadRoutingFile(Path, Map)}.
+     * The result reports the file as if the archive were a directory.
+     */
+    private static LoadReport.FileResult loadArchivedFile(TraceSource trace, String name,
+                                                          Map<Coordinate, RoutingBatch> routingBatchMap) {
+        Path path = trace.location().resolve(name);
+        Coordinate coord = coordinateOf(path);
+        long start = System.nanoTime();
+        try {
+            ByteBuffer buf = trace.read(name);
+            RoutingBatch batch = isProgFile(path)
+                    ? ProgFileParser.parse(buf)
+                    : BitstreamDecoder.decode(BitstreamDecoder.readWords(buf), BitstreamLayout.get());
+            routingBatchMap.put(coord, RoutingInterner.get().intern(batch));
+            warnIfBitstream(path);
+            return new LoadReport.FileResult(path, coord, System.nanoTime() - start, null);
+        } catch (Exception e) {
+            return new LoadReport.FileResult(path, coord, System.nanoTime() - start, e.toString());
+        }
+    }
+
     /**
-     * Parses a single `.prog` file and inserts the resulting RoutingBatch
-     * into the provided map, keyed by its Coordinate.
+     * Extracts the PE coordinate from a file name of the form "PE-Y<row>X<col>.prog" or
+     * "PE-Y<row>X<col>".
      *
-     * @param path the path to the `.prog` file
-     * @param routingBatchMap the map to populate with parsed data
+     * @param path the `.prog` or bitstream file
+     * @return the coordinate of the PE, or null if the name does not match
      */
-    private void parseRoutingFile(Path path, Map<Coordinate,RoutingBatch> routingBatchMap) {
-        String fileName = path.getFileName().toString();
-        Matcher fm = FILE_NAME.matcher(fileName);
-        // file do not match the pattern
+    static Coordinate coordinateOf(Path path) {
+        Matcher fm = FILE_NAME.matcher(path.getFileName().toString());
         if (!fm.matches()) {
-            return;
-        }
-        // get PE from file name
-        int row = Integer.parseInt(fm.group(1));
-        int col = Integer.parseInt(fm.group(2));
-        Coordinate coord = new Coordinate(row, col);
-        List<Routing> routeingList = new ArrayList<>();
-        int cycle = 0;
-        int jumpStart = -1;
-        int jumpEnd = -1;
-
-        try (BufferedReader br = Files.newBufferedReader(path)) {
-            String line;
-            boolean inSwitch = false;
-            Routing routes = null;
-            String opCode = "";
-            while ((line = br.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty()) {
-                    continue;
-                }
+            return null;
+        }
+        return new Coordinate(Integer.parseInt(fm.group(1)), Integer.parseInt(fm.group(2)));
+    }
 
-                if (line.toLowerCase().startsWith("operation:")) {
-                    Matcher m = OPCODE_PATTERN.matcher(line);
-                    opCode = m.find() ? m.group(1).toUpperCase() : "";
-                    if (opCode.equalsIgnoreCase("JUMP")) {
-                        Matcher jm = JUMP_PATTERN.matcher(line);
-                        if (jm.find()) {
-                            jumpStart = Integer.parseInt(jm.group(1));
-                            jumpEnd   = Integer.parseInt(jm.group(2));
-                        }
-                    }
-                    continue;
-                }
+    private static boolean isProgFile(Path path) {
+        return path.getFileName().toString().endsWith(PROG_SUFFIX);
+    }
 
-                if (line.toLowerCase().startsWith("switch_config")) {
-                    inSwitch = true;
-                    routes = new Routing();
-                    routes.setOpCode(opCode);
-                    continue;
-                }
+    /**
+     * Picks the file a PE is loaded from: its `.prog` if present, otherwise its bitstream if the
+     * bitstream fallback is on.
+     *
+     * @param path the `.prog` or bitstream file of a PE
+     * @return the existing file to load, or null if there is none
+     */
+    private Path routingSource(Path path) {
+        String name = path.getFileName().toString();
+        String base = isProgFile(path) ? name.substring(0, name.length() - PROG_SUFFIX.length()) : name;
+        Path prog = path.resolveSibling(base + PROG_SUFFIX);
+        if (Files.isRegularFile(prog)) {
+            return prog;
+        }
+        Path bits = path.resolveSibling(base);
+        return Files.isRegularFile(bits) && acceptBitstream(bits) ? bits : null;
+    }
 
+    /**
+     * Decides whether a PE that only has a bitstream is loaded from it, and warns if it is not.
+     */
+    private boolean acceptBitstream(Path bits) {
+        if (!bitstreamFallback) {
+            LOGGER.log(Level.WARNING, "Skipping {0}: it has no .prog and the bitstream fallback is off "
+                    + "(-Dmorpher.bitstream.fallback=true)", bits.getFileName());
+        }
+        return bitstreamFallback;
+    }
 
-                if (inSwitch && line.startsWith("}")) {
-                    // routeingList.set(cycle, routes.isEmpty() ? null : routes);
-                    routeingList.add(routes);
-                    cycle++;
-                    inSwitch = false;
-                    if (row == 0 && col == 0) {
-                        System.out.println("RoutingLoader: " + opCode);
-                    }
-                    continue;
-                }
+    /**
+     * Warns that a PE was loaded from its bitstream, whose decoding is only as good as the layout.
+     */
+    private static void warnIfBitstream(Path path) {
+        if (!isProgFile(path)) {
+            LOGGER.log(Level.WARNING, "Loaded {0} from its bitstream: routes and opcodes are decoded "
+                    + "with the bitstream layout, not read from a .prog", path.getFileName());
+        }
+    }
 
-                if (inSwitch) {
-                    parseRoutingLine(line, routes);
+    /**
+     * Parses a single `.prog` file, or decodes a bitstream file, into a RoutingBatch.
+     *
+     * @param path the path to the `.prog` or bitstream file
+     * @return the routing schedule described by the file
+     * @throws IOException if the file cannot be read
+     */
+    static RoutingBatch parseRoutingFile(Path path) throws IOException {
+        return isProgFile(path) ? ProgFileParser.parse(path) : BitstreamDecoder.decode(path);
+    }
+
+    /**
+     * Binary encoding of a RoutingBatch for the {@link SnapshotCache}. Each port is stored
+     * as one byte holding the input and output RoutingType ordinals, or -1 if unset.
+     */
+    private static final SnapshotCache.Codec<RoutingBatch> ROUTING_CODEC = new SnapshotCache.Codec<>() {
+        @Override
+        public int version() {
+            return 1;
+        }
+
+        @Override
+        public void write(DataOutputStream out, RoutingBatch batch) throws IOException {
+            out.writeInt(batch.jumpStart());
+            out.writeInt(batch.jumpEnd());
+            out.writeInt(batch.routes().size());
+            for (Routing r : batch.routes()) {
+                SnapshotCache.writeString(out, r.getOpCode());
+                for (Direction d : Direction.values()) {
+                    PortRouting pr = r.getPorts().get(d);
+                    out.writeByte(pr == null ? -1 : (pr.in().ordinal() << 4) | pr.out().ordinal());
                 }
             }
-
-        } catch (IOException ex) {
-            LOGGER.log(Level.WARNING, "Cannot parse {0}: {1}", new Object[]{fileName, ex.getMessage()});
         }
 
-        RoutingBatch routingBatch = new RoutingBatch(
-                Collections.unmodifiableList(new ArrayList<>(routeingList)),
-                jumpStart, jumpEnd);
-        routingBatchMap.put(coord, routingBatch);
-    }
+        @Override
+        public RoutingBatch read(ByteBuffer in) {
+            int jumpStart = in.getInt();
+            int jumpEnd = in.getInt();
+            int count = in.getInt();
+            RoutingType[] types = RoutingType.values();
+            List<Routing> routes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Routing r = new Routing();
+                r.setOpCode(SnapshotCache.readString(in));
+                for (Direction d : Direction.values()) {
+                    byte b = in.get();
+                    if (b != -1) {
+                        r.setInput(d, types[(b >> 4) & 0xF]);
+                        r.setOutput(d, types[b & 0xF]);
+                    }
+                }
+                routes.add(r);
+            }
+            return new RoutingBatch(Collections.unmodifiableList(routes), jumpStart, jumpEnd);
+        }
+    };
 
     /**
      * Returns the default demo directory from classpath resources.
@@ -181,7 +457,7 @@ public class RoutingLoader {
      * @return the path to the demo directory
      * @throws IllegalStateException if the directory cannot be found or accessed
      */
-    private static Path getDemoDirectory() {
+    static Path getDemoDirectory() {
         try {
             URI uri = Objects.requireNonNull(
                     RoutingLoader.class.getResource("/docs/single_sided_array_add_4x4/")).toURI();
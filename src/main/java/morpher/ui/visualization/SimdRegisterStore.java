@@ -0,0 +1,230 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.SimdRegister;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar store of the {@link SimdRegister} values of a whole simulation trace, indexed by
+ * (cycle, PE, register, lane).
+ *
+ * Each register value is one {@code long} holding {@link PEState#LANES} 8-bit lanes, lane 0 in
+ * the least significant byte. Values are grouped in one column per (PE, register) with the cycles
+ * back to back, so the history of a register over a range of cycles is a single contiguous bulk
+ * read. Columns are either heap {@code long[]}-backed or off-heap direct buffers; either way no
+ * object is created per value. A per-PE bit set records which cycles were dumped.
+ */
+public final class SimdRegisterStore {
+    private static final Pattern STATE_FILE = Pattern.compile("PE-Y(\\d+)X(\\d+)\\.state");
+    private static final int REGISTERS = SimdRegister.values().length;
+
+    private final int cycles;
+    private final int rows;
+    private final int cols;
+    private final boolean offHeap;
+    private final LongBuffer[] columns;
+    private final long[][] present;
+
+    private SimdRegisterStore(int cycles, int rows, int cols, boolean offHeap) {
+        this.cycles = cycles;
+        this.rows = rows;
+        this.cols = cols;
+        this.offHeap = offHeap;
+        this.columns = new LongBuffer[rows * cols * REGISTERS];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = offHeap
+                    ? ByteBuffer.allocateDirect(cycles * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer()
+                    : LongBuffer.allocate(cycles);
+        }
+        this.present = new long[rows * cols][(cycles + 63) >>> 6];
+    }
+
+    /**
+     * Loads the registers of every `cycle_N/PE-Y<row>X<col>.state` file of a design directory
+     * or trace archive. The fabric is sized to hold every PE dumped at any cycle. Cycles are parsed
+     * in parallel; each one writes its own slots of the columns.
+     *
+     * @param dir the design directory or trace archive
+     * @param offHeap true to keep the values in direct buffers outside the Java heap
+     * @return the store
+     * @throws IOException if the trace cannot be opened or a state file cannot be read
+     */
+    public static SimdRegisterStore load(Path dir, boolean offHeap) throws IOException {
+        TraceSource trace = TraceSource.open(dir);
+        int cycles = trace.cycleCount();
+        int[] dims = new int[2];
+        for (int c = 0; c < cycles; c++) {
+            for (String file : stateFiles(trace, c)) {
+                Coordinate coord = coordinateOf(file);
+                dims[0] = Math.max(dims[0], coord.row() + 1);
+                dims[1] = Math.max(dims[1], coord.col() + 1);
+            }
+        }
+
+        SimdRegisterStore store = new SimdRegisterStore(cycles, dims[0], dims[1], offHeap);
+        try {
+            IntStream.range(0, cycles).parallel().forEach(cycle -> store.loadCycle(trace, cycle));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return store;
+    }
+
+    private void loadCycle(TraceSource trace, int cycle) {
+        long[] values = new long[REGISTERS];
+        try {
+            for (String file : stateFiles(trace, cycle)) {
+                Coordinate coord = coordinateOf(file);
+                int found = StateFileParser.readRegisters(trace.read(cycle, file), values);
+                int pe = coord.row() * cols + coord.col();
+                for (int r = 0; r < REGISTERS; r++) {
+                    columns[pe * REGISTERS + r].put(cycle, (found & (1 << r)) != 0 ? values[r] : 0L);
+                }
+                synchronized (present[pe]) {
+                    present[pe][cycle >>> 6] |= 1L << cycle;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> stateFiles(TraceSource trace, int cycle) {
+        return trace.cycleFiles(cycle).stream().filter(name -> STATE_FILE.matcher(name).matches()).toList();
+    }
+
+    private static Coordinate coordinateOf(String file) {
+        Matcher m = STATE_FILE.matcher(file);
+        m.matches();
+        return new Coordinate(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+    }
+
+    public int cycles() {
+        return cycles;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * @return true if the PE's state was dumped at the cycle
+     */
+    public boolean isPresent(int cycle, Coordinate pe) {
+        int index = indexOf(pe);
+        return index >= 0 && cycle >= 0 && cycle < cycles && (present[index][cycle >>> 6] & (1L << cycle)) != 0;
+    }
+
+    /**
+     * @return the packed lanes of a register at a cycle, 0 if it was not dumped
+     */
+    public long value(int cycle, Coordinate pe, SimdRegister reg) {
+        return column(pe, reg).get(cycle);
+    }
+
+    /**
+     * @return the 8-bit value of one lane of a register at a cycle
+     */
+    public int lane(int cycle, Coordinate pe, SimdRegister reg, int lane) {
+        return PEState.lane(value(cycle, pe, reg), lane);
+    }
+
+    /**
+     * Copies the values of a register over the cycles [from, to) into {@code dst}.
+     *
+     * @return the number of values copied
+     */
+    public int range(Coordinate pe, SimdRegister reg, int from, int to, long[] dst, int offset) {
+        int length = checkRange(from, to);
+        column(pe, reg).get(from, dst, offset, length);
+        return length;
+    }
+
+    /**
+     * @return the values of a register over the cycles [from, to)
+     */
+    public long[] range(Coordinate pe, SimdRegister reg, int from, int to) {
+        long[] dst = new long[checkRange(from, to)];
+        range(pe, reg, from, to, dst, 0);
+        return dst;
+    }
+
+    /**
+     * @return one lane of a register over the cycles [from, to)
+     */
+    public int[] laneRange(Coordinate pe, SimdRegister reg, int lane, int from, int to) {
+        int length = checkRange(from, to);
+        LongBuffer column = column(pe, reg);
+        int[] dst = new int[length];
+        for (int i = 0; i < length; i++) {
+            dst[i] = PEState.lane(column.get(from + i), lane);
+        }
+        return dst;
+    }
+
+    /**
+     * @return the first cycle in [from, to) at which a register holds {@code value}, or -1
+     */
+    public int find(Coordinate pe, SimdRegister reg, long value, int from, int to) {
+        checkRange(from, to);
+        LongBuffer column = column(pe, reg);
+        for (int c = from; c < to; c++) {
+            if (column.get(c) == value && isPresent(c, pe)) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the bytes held by the register columns
+     */
+    public long memoryBytes() {
+        return (long) columns.length * cycles * Long.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d cycles x %dx%d PEs x %d registers, %d KB %s", cycles, rows, cols, REGISTERS,
+                memoryBytes() / 1024, offHeap ? "off-heap" : "on heap");
+    }
+
+    private int indexOf(Coordinate pe) {
+        if (pe.row() < 0 || pe.col() < 0 || pe.row() >= rows || pe.col() >= cols) {
+            return -1;
+        }
+        return pe.row() * cols + pe.col();
+    }
+
+    private LongBuffer column(Coordinate pe, SimdRegister reg) {
+        int index = indexOf(pe);
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("PE outside the trace: " + pe);
+        }
+        return columns[index * REGISTERS + reg.ordinal()];
+    }
+
+    private int checkRange(int from, int to) {
+        if (from < 0 || to > cycles || from > to) {
+            throw new IndexOutOfBoundsException("Cycles [" + from + ", " + to + ") outside [0, " + cycles + ")");
+        }
+        return to - from;
+    }
+}
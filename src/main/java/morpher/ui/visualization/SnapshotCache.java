@@ -0,0 +1,263 @@
+package morpher.ui.visualization;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Singleton on-disk cache of parsed source files, shared by {@link RoutingLoader} and
+ * {@link MappingLoader}.
+ *
+ * Every source file gets its own entry holding a header (format version of the codec,
+ * modification time, size and SHA-256 of the source contents) followed by a loader-specific
+ * binary encoding of the parsed model. An entry written by another version of its codec is
+ * treated as missing, so a codec that changes its encoding only has to bump its version.
+ *
+ * On a lookup the entry is memory-mapped; if the modification time and size still match, the
+ * payload is decoded without touching the source. Otherwise the source is hashed and, if the
+ * contents are unchanged, the entry is reused, else just that one file is re-parsed and its
+ * entry rewritten. An entry that cannot be decoded is deleted and counted as a miss.
+ *
+ * The cache lives in {@code ~/.morpher/cache} unless the {@code morpher.cache.dir} system
+ * property says otherwise, and can be switched off with {@code -Dmorpher.cache=false}.
+ */
+public class SnapshotCache {
+    private static final Logger LOGGER = Logger.getLogger(SnapshotCache.class.getName());
+    private static final int MAGIC = 0x4D505243; // "MPRC"
+    /** Version of the entry header; 2 added the codec version. */
+    private static final int VERSION = 2;
+    private static final int HASH_LEN = 32;
+    private static final int MTIME_OFFSET = 4 + 4 + 4;
+    private static final int HEADER_LEN = MTIME_OFFSET + 8 + 8 + HASH_LEN;
+    private static SnapshotCache instance;
+
+    private final Path dir;
+    private final boolean enabled;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Encodes and decodes one kind of parsed model.
+     *
+     * @param <T> the parsed model type
+     */
+    public interface Codec<T> {
+        /**
+         * @return the version of the encoding, stored in every entry; must change whenever
+         *         the encoding does
+         */
+        int version();
+
+        void write(DataOutputStream out, T value) throws IOException;
+
+        T read(ByteBuffer in);
+    }
+
+    /**
+     * Parses a source file from scratch.
+     *
+     * @param <T> the parsed model type
+     */
+    @FunctionalInterface
+    public interface Parser<T> {
+        T parse(Path source) throws Exception;
+    }
+
+    private SnapshotCache(Path dir, boolean enabled) {
+        this.dir = dir;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the singleton instance of SnapshotCache, initializing it on first access.
+     *
+     * @return the singleton SnapshotCache instance
+     */
+    public static synchronized SnapshotCache get() {
+        if (instance == null) {
+            String custom = System.getProperty("morpher.cache.dir");
+            Path dir = custom != null
+                    ? Paths.get(custom)
+                    : Paths.get(System.getProperty("user.home"), ".morpher", "cache");
+            boolean enabled = Boolean.parseBoolean(System.getProperty("morpher.cache", "true"));
+            instance = new SnapshotCache(dir, enabled);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the parsed model of a source file, from the cache if the entry is still valid,
+     * otherwise by parsing the file and refreshing its entry.
+     *
+     * @param kind short name of the model kind, part of the entry name (e.g. "prog")
+     * @param source the source file
+     * @param codec the binary encoding of the model
+     * @param parser the text parser used when the entry is missing or stale
+     * @return the parsed model
+     * @throws Exception if the source cannot be parsed
+     */
+    public <T> T load(String kind, Path source, Codec<T> codec, Parser<T> parser) throws Exception {
+        if (!enabled) {
+            return parser.parse(source);
+        }
+        Path entry = entryFor(kind, source);
+        long mtime = Files.getLastModifiedTime(source).toMillis();
+        long size = Files.size(source);
+        byte[] hash = null;
+
+        if (Files.isRegularFile(entry)) {
+            try {
+                ByteBuffer buf = map(entry);
+                if (buf.getInt() == MAGIC && buf.getInt() == VERSION && buf.getInt() == codec.version()) {
+                    long cachedMtime = buf.getLong();
+                    long cachedSize = buf.getLong();
+                    byte[] cachedHash = new byte[HASH_LEN];
+                    buf.get(cachedHash);
+                    boolean fresh = cachedMtime == mtime && cachedSize == size;
+                    if (!fresh && cachedSize == size) {
+                        hash = hash(source);
+                        fresh = Arrays.equals(hash, cachedHash);
+                        if (fresh) {
+                            touch(entry, mtime);
+                        }
+                    }
+                    if (fresh) {
+                        T value = codec.read(buf);
+                        hits.incrementAndGet();
+                        return value;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                // a corrupt payload can fail the codec in any way, e.g. with an out-of-range ordinal
+                LOGGER.log(Level.FINE, "Discarding unreadable cache entry {0}: {1}", new Object[]{entry, e});
+                discard(entry);
+            }
+        }
+
+        misses.incrementAndGet();
+        T value = parser.parse(source);
+        try {
+            store(entry, mtime, size, hash != null ? hash : hash(source), codec, value);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot write cache entry {0}: {1}", new Object[]{entry, e.getMessage()});
+        }
+        return value;
+    }
+
+    private static void discard(Path entry) {
+        try {
+            Files.deleteIfExists(entry);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Cannot delete cache entry {0}: {1}", new Object[]{entry, e.getMessage()});
+        }
+    }
+
+    /**
+     * @return a short summary of cache hits and misses since startup.
+     */
+    public String getStats() {
+        return String.format("snapshot cache: %d hits, %d misses", hits.get(), misses.get());
+    }
+
+    private Path entryFor(String kind, Path source) {
+        String key = source.toAbsolutePath().normalize().toString();
+        byte[] digest = sha256().digest(key.getBytes(StandardCharsets.UTF_8));
+        return dir.resolve(kind + "-" + HexFormat.of().formatHex(digest, 0, 12) + ".bin");
+    }
+
+    private <T> void store(Path entry, long mtime, long size, byte[] hash,
+                           Codec<T> codec, T value) throws IOException {
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "entry", ".tmp");
+        try (OutputStream os = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(codec.version());
+            out.writeLong(mtime);
+            out.writeLong(size);
+            out.write(hash);
+            codec.write(out, value);
+        }
+        try {
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Records a new source modification time in an entry whose contents were found unchanged,
+     * so the next lookup can skip hashing again.
+     */
+    private static void touch(Path entry, long mtime) throws IOException {
+        try (FileChannel ch = FileChannel.open(entry, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(8).putLong(mtime).flip();
+            ch.write(b, MTIME_OFFSET);
+        }
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_LEN) {
+                throw new IOException("truncated entry");
+            }
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    private static byte[] hash(Path source) throws IOException {
+        MessageDigest md = sha256();
+        try (FileChannel ch = FileChannel.open(source, StandardOpenOption.READ)) {
+            if (ch.size() > 0) {
+                md.update(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+            }
+        }
+        return md.digest();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a string as a length-prefixed UTF-8 byte sequence readable by {@link #readString}.
+     */
+    public static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     */
+    public static String readString(ByteBuffer in) {
+        int len = Short.toUnsignedInt(in.getShort());
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,230 @@
+package morpher.ui.visualization;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Sparse, cycle-indexed store of the node mapped onto each PE at each cycle.
+ *
+ * Only the (cycle, PE, node) triples that actually occur are kept, in primitive column
+ * arrays sorted by cycle, so
+ * <ul>
+ *   <li>all mappings of a cycle are the contiguous range {@code [cycleStart(c), cycleEnd(c))}</li>
+ *   <li>the node at a coordinate and cycle is found in O(1) through an open-addressing
+ *       hash index over the same arrays</li>
+ * </ul>
+ * Tables are immutable and built with a {@link Builder}.
+ */
+public class SparseMappingTable {
+    private final int numOfCycle;
+    private final int[] cycleStart;
+    private final int[] cycles;
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] nodes;
+    private final long[] keys;
+    private final int[] slots;
+    private final int mask;
+    private final Set<Coordinate> coordinates;
+
+    private SparseMappingTable(int numOfCycle, int[] cycles, int[] rows, int[] cols, int[] nodes,
+                               Set<Coordinate> coordinates) {
+        this.numOfCycle = numOfCycle;
+        this.cycles = cycles;
+        this.rows = rows;
+        this.cols = cols;
+        this.nodes = nodes;
+        this.coordinates = Collections.unmodifiableSet(coordinates);
+
+        int n = nodes.length;
+        this.cycleStart = new int[Math.max(numOfCycle, -1) + 2];
+        for (int cycle : cycles) {
+            cycleStart[cycle + 1]++;
+        }
+        for (int c = 1; c < cycleStart.length; c++) {
+            cycleStart[c] += cycleStart[c - 1];
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(4, n * 2) - 1) << 1;
+        this.mask = capacity - 1;
+        this.keys = new long[capacity];
+        this.slots = new int[capacity];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < n; i++) {
+            long key = key(rows[i], cols[i], cycles[i]);
+            int h = slot(key);
+            while (slots[h] != -1 && keys[h] != key) {
+                h = (h + 1) & mask;
+            }
+            // a later entry for the same PE and cycle overrides an earlier one
+            keys[h] = key;
+            slots[h] = i;
+        }
+    }
+
+    /**
+     * @return the index of the last cycle covered by the mapping file
+     */
+    public int getNumOfCycle() {
+        return numOfCycle;
+    }
+
+    /**
+     * @return every coordinate that has at least one mapping, in order of first appearance
+     */
+    public Set<Coordinate> coordinates() {
+        return coordinates;
+    }
+
+    public boolean contains(Coordinate c) {
+        return coordinates.contains(c);
+    }
+
+    /**
+     * Returns the node mapped onto a PE at a cycle.
+     *
+     * @param c the coordinate of the PE
+     * @param cycle the cycle number
+     * @return the node index, or -1 if nothing is mapped there
+     */
+    public int nodeAt(Coordinate c, int cycle) {
+        if (cycle < 0 || cycle > numOfCycle) {
+            return -1;
+        }
+        long key = key(c.row(), c.col(), cycle);
+        for (int h = slot(key); slots[h] != -1; h = (h + 1) & mask) {
+            if (keys[h] == key) {
+                return nodes[slots[h]];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the Mapping of a PE at a cycle.
+     *
+     * @param c the coordinate of the PE
+     * @param cycle the cycle number
+     * @return the Mapping, or null if nothing is mapped there
+     */
+    public Mapping mappingAt(Coordinate c, int cycle) {
+        int node = nodeAt(c, cycle);
+        return node == -1 ? null : new Mapping(c, node);
+    }
+
+    /**
+     * @return the first entry index of the given cycle
+     */
+    public int cycleStart(int cycle) {
+        return cycleStart[cycle];
+    }
+
+    /**
+     * @return one past the last entry index of the given cycle
+     */
+    public int cycleEnd(int cycle) {
+        return cycleStart[cycle + 1];
+    }
+
+    /**
+     * @return the number of stored entries
+     */
+    public int size() {
+        return nodes.length;
+    }
+
+    public int rowAt(int entry) {
+        return rows[entry];
+    }
+
+    public int colAt(int entry) {
+        return cols[entry];
+    }
+
+    public int nodeAt(int entry) {
+        return nodes[entry];
+    }
+
+    public int cycleAt(int entry) {
+        return cycles[entry];
+    }
+
+    private static long key(int row, int col, int cycle) {
+        return ((long) (row & 0xFFFF) << 48) | ((long) (col & 0xFFFF) << 32) | (cycle & 0xFFFFFFFFL);
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Accumulates mappings in any order and builds an immutable table.
+     */
+    public static class Builder {
+        private int[] cycles = new int[64];
+        private int[] rows = new int[64];
+        private int[] cols = new int[64];
+        private int[] nodes = new int[64];
+        private int size;
+        private int numOfCycle = -1;
+        private boolean sorted = true;
+        private final Set<Coordinate> coordinates = new LinkedHashSet<>();
+
+        /**
+         * Records that the node {@code node} is mapped onto PE (row, col) at {@code cycle}.
+         */
+        public Builder add(int cycle, int row, int col, int node) {
+            if (size == nodes.length) {
+                int capacity = size * 2;
+                cycles = Arrays.copyOf(cycles, capacity);
+                rows = Arrays.copyOf(rows, capacity);
+                cols = Arrays.copyOf(cols, capacity);
+                nodes = Arrays.copyOf(nodes, capacity);
+            }
+            if (size > 0 && cycle < cycles[size - 1]) {
+                sorted = false;
+            }
+            cycles[size] = cycle;
+            rows[size] = row;
+            cols[size] = col;
+            nodes[size] = node;
+            size++;
+            numOfCycle = Math.max(numOfCycle, cycle);
+            coordinates.add(new Coordinate(row, col));
+            return this;
+        }
+
+        /**
+         * Sets the index of the last cycle, which may be later than the last mapped one.
+         */
+        public Builder numOfCycle(int numOfCycle) {
+            this.numOfCycle = Math.max(this.numOfCycle, numOfCycle);
+            return this;
+        }
+
+        public SparseMappingTable build() {
+            int[] c = Arrays.copyOf(cycles, size);
+            int[] r = Arrays.copyOf(rows, size);
+            int[] k = Arrays.copyOf(cols, size);
+            int[] n = Arrays.copyOf(nodes, size);
+            if (!sorted) {
+                // stable sort of the entries by cycle
+                Integer[] order = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Integer.compare(cycles[a], cycles[b]));
+                for (int i = 0; i < size; i++) {
+                    c[i] = cycles[order[i]];
+                    r[i] = rows[order[i]];
+                    k[i] = cols[order[i]];
+                    n[i] = nodes[order[i]];
+                }
+            }
+            return new SparseMappingTable(numOfCycle, c, r, k, n, coordinates);
+        }
+    }
+}
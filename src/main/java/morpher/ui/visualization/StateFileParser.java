@@ -0,0 +1,298 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.MemoryAccessMode;
+import morpher.ui.visualization.utils.SimdRegister;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Parser for the per-cycle PE state dumps (`cycle_N/PE-Y<row>X<col>.state`).
+ *
+ * The dump is a list of "name: value" lines grouped under "Reg:", "Sig:" and "Conf:" headers:
+ * <pre>
+ *   PC: 3
+ *   Reg:
+ *   reg_op1: 0x0300|SIMD[00000000/0 00000011/0 ...]
+ *   reg_predicate: false
+ *   Sig:
+ *   wire_alu_out: None
+ *   Conf: operation: ADD
+ *   switch_config: { ... };
+ * </pre>
+ * The switch configuration is skipped; it is already known from the `.prog` file.
+ *
+ * Dumps are read through a {@link TraceSource}, from a design directory or a trace archive.
+ *
+ * {@link #readRegisters(ByteBuffer, long[])} is a byte-level variant for bulk loading that extracts
+ * only the {@link SimdRegister} values, without creating a String per line or value.
+ *
+ * {@link #parsePort(TraceSource, int, String)} reads the data memory port dumps
+ * (`cycle_N/dm<bank>_port<n>`), which use the same "name: value" lines with a trailing comma.
+ */
+final class StateFileParser {
+    private static final String SIMD = "SIMD[";
+    private static final byte[] SIMD_BYTES = SIMD.getBytes(StandardCharsets.US_ASCII);
+    private static final SimdRegister[] REGISTERS = SimdRegister.values();
+    private static final byte[][] REGISTER_KEYS = new byte[REGISTERS.length][];
+
+    static {
+        for (SimdRegister r : REGISTERS) {
+            REGISTER_KEYS[r.ordinal()] = r.key().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private StateFileParser() {
+    }
+
+    /**
+     * Parses a state dump.
+     *
+     * @param source the trace
+     * @param cycle the cycle number
+     * @param name the `.state` file name
+     * @param coord the coordinate of the PE
+     * @return the PE snapshot
+     * @throws IOException if the file cannot be read or a value is malformed
+     */
+    static PEState parse(TraceSource source, int cycle, String name, Coordinate coord) throws IOException {
+        int pc = -1;
+        boolean predicate = false;
+        int loopStart = -1;
+        int loopEnd = -1;
+        String operation = "";
+        Map<String, Long> registers = new LinkedHashMap<>();
+        Map<String, Long> wires = new LinkedHashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new StringReader(source.readText(cycle, name)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String key = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                try {
+                    switch (key) {
+                        case "PC" -> pc = Integer.parseInt(value);
+                        case "reg_predicate" -> predicate = Boolean.parseBoolean(value);
+                        case "reg_loop_start" -> loopStart = Integer.parseInt(value);
+                        case "reg_loop_end" -> loopEnd = Integer.parseInt(value);
+                        case "Conf" -> {
+                            int op = value.indexOf("operation:");
+                            operation = op < 0 ? value : value.substring(op + "operation:".length()).trim();
+                        }
+                        default -> {
+                            if (key.startsWith("reg_")) {
+                                registers.put(key, parseValue(value));
+                            } else if (key.startsWith("wire_")) {
+                                wires.put(key, "None".equals(value) ? null : parseValue(value));
+                            }
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad value for " + key + " in " + name + ": " + value, e);
+                }
+            }
+        }
+        return new PEState(coord, pc, Collections.unmodifiableMap(registers),
+                Collections.unmodifiableMap(wires), predicate, loopStart, loopEnd, operation);
+    }
+
+    /**
+     * Parses a data memory port dump:
+     * <pre>
+     *   wire_dmem_addr: Some(16),
+     *   wire_dmem_data: 0x0f18|SIMD[00011000/0.0625 00001111/0.029296875 ...],
+     *   reg_dmem_data: 0x0300|SIMD[...],
+     *   mode: Write16
+     * </pre>
+     *
+     * @param source the trace
+     * @param cycle the cycle number
+     * @param name the port file name
+     * @return the port activity
+     * @throws IOException if the file cannot be read or a value is malformed
+     */
+    static PortAccess parsePort(TraceSource source, int cycle, String name) throws IOException {
+        int address = -1;
+        Long data = null;
+        Long register = null;
+        MemoryAccessMode mode = MemoryAccessMode.NOP;
+
+        try (BufferedReader reader = new BufferedReader(new StringReader(source.readText(cycle, name)))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String key = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+                if (value.endsWith(",")) {
+                    value = value.substring(0, value.length() - 1).trim();
+                }
+                try {
+                    switch (key) {
+                        case "wire_dmem_addr" -> {
+                            if (value.startsWith("Some(") && value.endsWith(")")) {
+                                address = Integer.parseInt(value.substring(5, value.length() - 1).trim());
+                            }
+                        }
+                        case "wire_dmem_data" -> data = "None".equals(value) ? null : parseValue(value);
+                        case "reg_dmem_data" -> register = "None".equals(value) ? null : parseValue(value);
+                        case "mode" -> mode = MemoryAccessMode.get(value);
+                        default -> {
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad value for " + key + " in " + name + ": " + value, e);
+                }
+            }
+        }
+        return new PortAccess(address, data, register, mode);
+    }
+
+    /**
+     * Parses a SIMD value such as "0x0300|SIMD[00000000/0 00000011/0 ...]" into packed lanes.
+     * Without a lane list, the hexadecimal part is used.
+     */
+    static long parseValue(String value) {
+        int simd = value.indexOf(SIMD);
+        if (simd < 0) {
+            String hex = value.startsWith("0x") ? value.substring(2) : value;
+            int bar = hex.indexOf('|');
+            return Long.parseUnsignedLong(bar < 0 ? hex : hex.substring(0, bar), 16);
+        }
+        long packed = 0;
+        int lane = 0;
+        int i = simd + SIMD.length();
+        int end = value.indexOf(']', i);
+        if (end < 0) {
+            end = value.length();
+        }
+        while (i < end && lane < PEState.LANES) {
+            while (i < end && value.charAt(i) == ' ') {
+                i++;
+            }
+            long bits = 0;
+            int start = i;
+            while (i < end && (value.charAt(i) == '0' || value.charAt(i) == '1')) {
+                bits = (bits << 1) | (value.charAt(i) - '0');
+                i++;
+            }
+            if (i == start) {
+                break;
+            }
+            packed |= (bits & 0xFF) << (8 * lane++);
+            // skip the "/<float>" rendering of the lane
+            while (i < end && value.charAt(i) != ' ') {
+                i++;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Reads the {@link SimdRegister} values of a state dump into {@code values}, indexed by
+     * register ordinal.
+     *
+     * @param data the bytes of the `.state` file, between the buffer's position and limit
+     * @param values receives the packed lanes of each register found
+     * @return a bit mask of the registers found, bit i for the register with ordinal i
+     */
+    static int readRegisters(ByteBuffer data, long[] values) {
+        byte[] buf = new byte[data.remaining()];
+        data.get(data.position(), buf);
+        int found = 0;
+        int pos = 0;
+        while (pos < buf.length) {
+            int eol = pos;
+            while (eol < buf.length && buf[eol] != '\n') {
+                eol++;
+            }
+            int colon = indexOf(buf, pos, eol, (byte) ':');
+            if (colon > 0) {
+                int reg = registerOf(buf, pos, colon);
+                int simd = reg < 0 ? -1 : indexOf(buf, colon, eol, SIMD_BYTES);
+                if (simd >= 0) {
+                    values[reg] = parseLanes(buf, simd + SIMD_BYTES.length, eol);
+                    found |= 1 << reg;
+                }
+            }
+            pos = eol + 1;
+        }
+        return found;
+    }
+
+    private static int registerOf(byte[] buf, int start, int end) {
+        while (start < end && buf[start] == ' ') {
+            start++;
+        }
+        for (int r = 0; r < REGISTER_KEYS.length; r++) {
+            byte[] key = REGISTER_KEYS[r];
+            if (end - start == key.length && regionMatches(buf, start, key)) {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Packs the binary lanes of "b0/f0 b1/f1 ...]" starting at {@code pos}, lane 0 lowest.
+     */
+    private static long parseLanes(byte[] buf, int pos, int end) {
+        long packed = 0;
+        int lane = 0;
+        while (pos < end && lane < PEState.LANES && buf[pos] != ']') {
+            if (buf[pos] == '0' || buf[pos] == '1') {
+                long bits = 0;
+                while (pos < end && (buf[pos] == '0' || buf[pos] == '1')) {
+                    bits = (bits << 1) | (buf[pos++] - '0');
+                }
+                packed |= (bits & 0xFF) << (8 * lane++);
+                // skip the "/<float>" rendering of the lane
+                while (pos < end && buf[pos] != ' ' && buf[pos] != ']') {
+                    pos++;
+                }
+            } else {
+                pos++;
+            }
+        }
+        return packed;
+    }
+
+    private static int indexOf(byte[] buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] buf, int from, int to, byte[] needle) {
+        for (int i = from; i + needle.length <= to; i++) {
+            if (regionMatches(buf, i, needle)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean regionMatches(byte[] buf, int at, byte[] needle) {
+        for (int k = 0; k < needle.length; k++) {
+            if (buf[at + k] != needle[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
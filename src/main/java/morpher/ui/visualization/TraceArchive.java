@@ -0,0 +1,279 @@
+package morpher.ui.visualization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A simulation trace packed in a single file, read through a memory mapping.
+ *
+ * The archive is written by {@link TraceArchiveWriter} from a design directory. All numbers are
+ * big-endian:
+ * <pre>
+ *   header   int magic "MTRC", short version, short flags (0), int cycleCount, int fileCount,
+ *            long indexOffset, int indexLength, int reserved (0)            -- 32 bytes
+ *   blocks   one per top-level file and one per `cycle_N` directory, deflated unless that
+ *            would not make them smaller
+ *   index    cycle table: cycleCount x (long offset, int storedLength, int rawLength), indexed
+ *            by cycle number, offset -1 for a cycle that was not dumped;
+ *            file table: fileCount x (short nameLength, name, long offset, int storedLength,
+ *            int rawLength), sorted by name
+ * </pre>
+ * A block is stored as is when its stored length equals its raw length. The raw contents of a
+ * cycle block are a table of its files followed by their bytes back to back:
+ * <pre>
+ *   int fileCount, fileCount x (short nameLength, name, int offset, int length), data
+ * </pre>
+ * with offsets relative to the start of the data and names sorted, so that one PE of a cycle is
+ * found by a binary search once the block is inflated.
+ *
+ * Locating any cycle or top-level file is one index lookup and one block read. The most recently
+ * read cycle blocks are kept inflated, so stepping through the files of one cycle inflates it once.
+ * Archives are limited to 2 GB, the largest single mapping.
+ */
+public final class TraceArchive implements TraceSource {
+    static final int MAGIC = 0x4D545243;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int BLOCK_REF_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    /** Inflated cycle blocks kept in memory. */
+    private static final int CACHED_CYCLES = 8;
+
+    /**
+     * Inflated contents of a cycle block.
+     */
+    private record CycleBlock(String[] names, int[] offsets, int[] lengths, ByteBuffer data) {
+        int find(String name) {
+            return Arrays.binarySearch(names, name);
+        }
+
+        ByteBuffer slice(int i) {
+            return data.slice(offsets[i], lengths[i]);
+        }
+    }
+
+    private final Path path;
+    private final ByteBuffer map;
+    private final long[] cycleOffsets;
+    private final int[] cycleStored;
+    private final int[] cycleRaw;
+    private final String[] fileNames;
+    private final long[] fileOffsets;
+    private final int[] fileStored;
+    private final int[] fileRaw;
+    private final Map<Integer, CycleBlock> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private TraceArchive(Path path, ByteBuffer map) throws IOException {
+        this.path = path;
+        this.map = map;
+        if (map.limit() < HEADER_BYTES || map.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a trace archive");
+        }
+        if (map.getShort(4) != VERSION) {
+            throw new IOException("Unsupported trace archive version " + map.getShort(4) + " in " + path);
+        }
+        int cycles = map.getInt(8);
+        int files = map.getInt(12);
+        long indexOffset = map.getLong(16);
+        int indexLength = map.getInt(24);
+        if (cycles < 0 || files < 0 || indexOffset < HEADER_BYTES || indexOffset + indexLength > map.limit()) {
+            throw new IOException("Corrupt trace archive header in " + path);
+        }
+
+        ByteBuffer index = map.slice((int) indexOffset, indexLength);
+        try {
+            cycleOffsets = new long[cycles];
+            cycleStored = new int[cycles];
+            cycleRaw = new int[cycles];
+            for (int c = 0; c < cycles; c++) {
+                cycleOffsets[c] = index.getLong();
+                cycleStored[c] = index.getInt();
+                cycleRaw[c] = index.getInt();
+            }
+            fileNames = new String[files];
+            fileOffsets = new long[files];
+            fileStored = new int[files];
+            fileRaw = new int[files];
+            for (int f = 0; f < files; f++) {
+                fileNames[f] = readName(index);
+                fileOffsets[f] = index.getLong();
+                fileStored[f] = index.getInt();
+                fileRaw[f] = index.getInt();
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt trace archive index in " + path, e);
+        }
+    }
+
+    /**
+     * Opens an archive by memory-mapping it.
+     *
+     * @param path the archive file
+     * @return the archive
+     * @throws IOException if the file cannot be read, is larger than 2 GB or is not a trace archive
+     */
+    public static TraceArchive open(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2 GB");
+            }
+            return new TraceArchive(path, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    @Override
+    public Path location() {
+        return path;
+    }
+
+    @Override
+    public List<String> files() {
+        return List.of(fileNames);
+    }
+
+    @Override
+    public int cycleCount() {
+        return cycleOffsets.length;
+    }
+
+    @Override
+    public List<String> cycleFiles(int cycle) {
+        try {
+            CycleBlock block = cycleBlock(cycle);
+            return block == null ? List.of() : List.of(block.names());
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return Arrays.binarySearch(fileNames, name) >= 0;
+    }
+
+    @Override
+    public boolean exists(int cycle, String name) {
+        try {
+            CycleBlock block = cycleBlock(cycle);
+            return block != null && block.find(name) >= 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public ByteBuffer read(String name) throws IOException {
+        int f = Arrays.binarySearch(fileNames, name);
+        if (f < 0) {
+            throw new IOException("No file " + name + " in " + path);
+        }
+        return block(fileOffsets[f], fileStored[f], fileRaw[f]);
+    }
+
+    @Override
+    public ByteBuffer read(int cycle, String name) throws IOException {
+        CycleBlock block = cycleBlock(cycle);
+        int i = block == null ? -1 : block.find(name);
+        if (i < 0) {
+            throw new IOException("No file " + name + " in cycle " + cycle + " of " + path);
+        }
+        return block.slice(i);
+    }
+
+    /**
+     * @return the inflated block of a cycle, or null if the cycle was not dumped
+     */
+    private CycleBlock cycleBlock(int cycle) throws IOException {
+        if (cycle < 0 || cycle >= cycleOffsets.length || cycleOffsets[cycle] < 0) {
+            return null;
+        }
+        synchronized (cache) {
+            CycleBlock cached = cache.get(cycle);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // inflate outside the lock so that other cycles stay readable meanwhile
+        ByteBuffer raw = block(cycleOffsets[cycle], cycleStored[cycle], cycleRaw[cycle]);
+        CycleBlock block;
+        try {
+            int n = raw.getInt();
+            String[] names = new String[n];
+            int[] offsets = new int[n];
+            int[] lengths = new int[n];
+            for (int i = 0; i < n; i++) {
+                names[i] = readName(raw);
+                offsets[i] = raw.getInt();
+                lengths[i] = raw.getInt();
+            }
+            block = new CycleBlock(names, offsets, lengths, raw.slice().asReadOnlyBuffer());
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt block of cycle " + cycle + " in " + path, e);
+        }
+        synchronized (cache) {
+            cache.put(cycle, block);
+            var it = cache.entrySet().iterator();
+            while (cache.size() > CACHED_CYCLES && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Returns the raw contents of a block: a view of the mapping if it is stored as is, or a new
+     * buffer holding it inflated.
+     */
+    private ByteBuffer block(long offset, int stored, int raw) throws IOException {
+        if (offset + stored > map.limit()) {
+            throw new IOException("Block at " + offset + " runs past the end of " + path);
+        }
+        ByteBuffer data = map.slice((int) offset, stored);
+        if (stored == raw) {
+            return data;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] out = new byte[raw];
+            int n = 0;
+            while (n < raw && !inflater.finished()) {
+                int k = inflater.inflate(out, n, raw - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != raw) {
+                throw new IOException("Truncated block at " + offset + " in " + path);
+            }
+            return ByteBuffer.wrap(out).asReadOnlyBuffer();
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block at " + offset + " in " + path, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String readName(ByteBuffer buf) {
+        byte[] name = new byte[buf.getShort() & 0xFFFF];
+        buf.get(name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + cycleOffsets.length + " cycles, " + fileNames.length + " files)";
+    }
+}
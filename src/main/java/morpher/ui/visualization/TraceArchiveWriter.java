@@ -0,0 +1,221 @@
+package morpher.ui.visualization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+
+/**
+ * Imports a design directory into a single-file {@link TraceArchive}.
+ *
+ * Blocks are built and deflated in parallel, a batch at a time, and written in order, so only one
+ * batch is held in memory. The index is only known once every block is written; it goes at the
+ * end of the file and the header, written last, points to it. The archive is written next to its
+ * destination and moved over it when complete, so a reader never maps a partial archive.
+ *
+ * Only the top-level files and the `cycle_N` directories are imported; other directories are
+ * skipped. The import fails rather than write an archive of 2 GB or more, which
+ * {@link TraceArchive#open} cannot map.
+ *
+ * Usage: {@code TraceArchiveWriter <design directory> <archive>}
+ */
+public final class TraceArchiveWriter {
+    private static final Logger LOGGER = Logger.getLogger(TraceArchiveWriter.class.getName());
+
+    /** Blocks built in parallel before being written. */
+    private static final int WRITE_BATCH = 64;
+
+    /** The largest array the VM allocates. */
+    private static final int MAX_BLOCK_BYTES = Integer.MAX_VALUE - 8;
+
+    /**
+     * A block ready to be written.
+     *
+     * @param data the stored bytes
+     * @param rawLength the length before deflating; equal to the stored length if not deflated
+     */
+    private record Block(byte[] data, int rawLength) {
+        static final Block MISSING = new Block(new byte[0], 0);
+    }
+
+    private TraceArchiveWriter() {
+    }
+
+    /**
+     * Imports a design directory.
+     *
+     * @param dir the design directory
+     * @param archive the archive file to create or replace
+     * @throws IOException if a file cannot be read, the archive cannot be written or would be
+     *                     larger than 2 GB
+     */
+    public static void write(Path dir, Path archive) throws IOException {
+        TraceSource source = new DirectoryTraceSource(dir);
+        List<String> files = source.files();
+        int cycles = source.cycleCount();
+
+        Path tmp = archive.resolveSibling(archive.getFileName() + ".tmp");
+        ByteBuffer cycleTable = ByteBuffer.allocate(cycles * TraceArchive.BLOCK_REF_BYTES);
+        ByteArrayOutputStream fileTable = new ByteArrayOutputStream();
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.position(TraceArchive.HEADER_BYTES);
+            for (int from = 0; from < files.size(); from += WRITE_BATCH) {
+                List<String> names = files.subList(from, Math.min(files.size(), from + WRITE_BATCH));
+                List<Block> blocks = build(names.size(), i -> deflate(bytes(source.read(names.get(i)))));
+                for (int i = 0; i < blocks.size(); i++) {
+                    long offset = write(out, blocks.get(i));
+                    byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+                    ByteBuffer entry = ByteBuffer.allocate(Short.BYTES + name.length + TraceArchive.BLOCK_REF_BYTES);
+                    entry.putShort((short) name.length).put(name)
+                            .putLong(offset).putInt(blocks.get(i).data().length).putInt(blocks.get(i).rawLength());
+                    fileTable.writeBytes(entry.array());
+                }
+            }
+            for (int from = 0; from < cycles; from += WRITE_BATCH) {
+                int first = from;
+                List<Block> blocks = build(Math.min(cycles, from + WRITE_BATCH) - from,
+                        i -> cycleBlock(source, first + i));
+                for (Block block : blocks) {
+                    long offset = block == Block.MISSING ? -1 : write(out, block);
+                    cycleTable.putLong(offset).putInt(block.data().length).putInt(block.rawLength());
+                }
+            }
+
+            long indexOffset = out.position();
+            byte[] index = Arrays.copyOf(cycleTable.array(), cycleTable.capacity() + fileTable.size());
+            System.arraycopy(fileTable.toByteArray(), 0, index, cycleTable.capacity(), fileTable.size());
+            write(out, new Block(index, index.length));
+
+            ByteBuffer header = ByteBuffer.allocate(TraceArchive.HEADER_BYTES);
+            header.putInt(TraceArchive.MAGIC).putShort(TraceArchive.VERSION).putShort((short) 0)
+                    .putInt(cycles).putInt(files.size())
+                    .putLong(indexOffset).putInt(index.length).putInt(0)
+                    .flip();
+            out.write(header, 0);
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(tmp);
+            throw e.getCause();
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOGGER.info(String.format("Archived %s into %s: %d files, %d cycles, %d KB",
+                dir, archive, files.size(), cycles, Files.size(archive) / 1024));
+    }
+
+    /**
+     * Builds {@code n} blocks in parallel, in order.
+     */
+    private static List<Block> build(int n, IOFunction builder) {
+        return IntStream.range(0, n).parallel().mapToObj(i -> {
+            try {
+                return builder.apply(i);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).toList();
+    }
+
+    @FunctionalInterface
+    private interface IOFunction {
+        Block apply(int i) throws IOException;
+    }
+
+    /**
+     * Packs the files of a cycle into one block, as described in {@link TraceArchive}.
+     */
+    private static Block cycleBlock(TraceSource source, int cycle) throws IOException {
+        List<String> names = source.cycleFiles(cycle);
+        if (names.isEmpty()) {
+            return Block.MISSING;
+        }
+        byte[][] data = new byte[names.size()][];
+        byte[][] encoded = new byte[names.size()][];
+        long tableBytes = Integer.BYTES;
+        long dataBytes = 0;
+        for (int i = 0; i < names.size(); i++) {
+            data[i] = bytes(source.read(cycle, names.get(i)));
+            encoded[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            tableBytes += Short.BYTES + encoded[i].length + 2 * Integer.BYTES;
+            dataBytes += data[i].length;
+        }
+        if (tableBytes + dataBytes > MAX_BLOCK_BYTES) {
+            throw new IOException("Cycle " + cycle + " is too large to archive: "
+                    + (tableBytes + dataBytes) + " bytes");
+        }
+        ByteBuffer raw = ByteBuffer.allocate((int) (tableBytes + dataBytes));
+        raw.putInt(names.size());
+        int offset = 0;
+        for (int i = 0; i < names.size(); i++) {
+            raw.putShort((short) encoded[i].length).put(encoded[i]).putInt(offset).putInt(data[i].length);
+            offset += data[i].length;
+        }
+        for (byte[] d : data) {
+            raw.put(d);
+        }
+        return deflate(raw.array());
+    }
+
+    /**
+     * Deflates a block, keeping it as is if deflating does not make it smaller.
+     */
+    private static Block deflate(byte[] raw) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] out = new byte[raw.length];
+            int n = 0;
+            while (!deflater.finished() && n < out.length) {
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            return deflater.finished() && n < raw.length ? new Block(Arrays.copyOf(out, n), raw.length)
+                    : new Block(raw, raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer buf) {
+        byte[] out = new byte[buf.remaining()];
+        buf.get(out);
+        return out;
+    }
+
+    /**
+     * @return the offset the block was written at
+     * @throws IOException if the block cannot be written or would take the archive past 2 GB
+     */
+    private static long write(FileChannel out, Block block) throws IOException {
+        long offset = out.position();
+        if (offset + block.data().length > Integer.MAX_VALUE) {
+            throw new IOException("Trace archive would be larger than 2 GB");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(block.data());
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        return offset;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TraceArchiveWriter <design directory> <archive>");
+            System.exit(2);
+        }
+        write(Path.of(args[0]), Path.of(args[1]));
+    }
+}
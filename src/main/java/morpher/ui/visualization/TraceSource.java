@@ -0,0 +1,77 @@
+package morpher.ui.visualization;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Read access to the files of a simulation run, whether they are laid out as a design directory
+ * (top-level files plus one `cycle_N` directory per cycle) or packed in a single
+ * {@link TraceArchive}.
+ *
+ * Files are named as in the directory layout: top-level files by their file name (e.g. "dm0",
+ * "PE-Y0X1.prog") and per-cycle files by their cycle number and file name (e.g. cycle 3,
+ * "PE-Y0X1.state").
+ */
+public interface TraceSource {
+    /**
+     * Opens a design directory or a trace archive.
+     *
+     * @param path the directory or the archive file
+     * @return the source
+     * @throws IOException if the path is neither a directory nor a readable trace archive
+     */
+    static TraceSource open(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return new DirectoryTraceSource(path);
+        }
+        return TraceArchive.open(path);
+    }
+
+    /**
+     * @return the directory or archive file this source reads
+     */
+    Path location();
+
+    /**
+     * @return the names of the top-level files, sorted
+     */
+    List<String> files();
+
+    /**
+     * @return the number of cycles (the highest N of `cycle_N` plus one)
+     */
+    int cycleCount();
+
+    /**
+     * @return the names of the files of a cycle, sorted; empty if the cycle was not dumped
+     */
+    List<String> cycleFiles(int cycle);
+
+    boolean exists(String name);
+
+    boolean exists(int cycle, String name);
+
+    /**
+     * @return the bytes of a top-level file, between the buffer's position and limit
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    ByteBuffer read(String name) throws IOException;
+
+    /**
+     * @return the bytes of a file of a cycle, between the buffer's position and limit
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    ByteBuffer read(int cycle, String name) throws IOException;
+
+    default String readText(String name) throws IOException {
+        return StandardCharsets.UTF_8.decode(read(name)).toString();
+    }
+
+    default String readText(int cycle, String name) throws IOException {
+        return StandardCharsets.UTF_8.decode(read(cycle, name)).toString();
+    }
+}
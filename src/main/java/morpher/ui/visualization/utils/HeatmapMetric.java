@@ -0,0 +1,29 @@
+package morpher.ui.visualization.utils;
+
+public enum HeatmapMetric {
+    ACTIVITY(1),    // cycles in which the PE executes an operation other than a control one (NOP, JUMP, ...)
+    MEMORY(1),      // cycles in which the PE accesses data memory
+    LINKS(4);       // output links the PE drives, summed over the cycles
+
+    private final int maxPerCycle;
+
+    HeatmapMetric(int maxPerCycle) {
+        this.maxPerCycle = maxPerCycle;
+    }
+
+    /**
+     * @return the largest value one PE can add in one cycle
+     */
+    public int maxPerCycle() {
+        return maxPerCycle;
+    }
+
+    public static HeatmapMetric get(String s) {
+        try {
+            return HeatmapMetric.valueOf(s.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException | NullPointerException e) {
+            return ACTIVITY;
+        }
+    }
+}
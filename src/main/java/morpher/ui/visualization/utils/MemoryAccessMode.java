@@ -0,0 +1,47 @@
+package morpher.ui.visualization.utils;
+
+public enum MemoryAccessMode {
+    NOP(0),         // port idle
+    READ8(1),
+    READ16(2),
+    READ32(4),
+    READ64(8),
+    WRITE8(1),
+    WRITE16(2),
+    WRITE32(4),
+    WRITE64(8);
+
+    private final int bytes;
+
+    MemoryAccessMode(int bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return the number of bytes accessed, 0 for NOP
+     */
+    public int bytes() {
+        return bytes;
+    }
+
+    public boolean isRead() {
+        return this.compareTo(READ8) >= 0 && this.compareTo(READ64) <= 0;
+    }
+
+    public boolean isWrite() {
+        return this.compareTo(WRITE8) >= 0;
+    }
+
+    /**
+     * @param s a port mode as dumped by the simulator, e.g. "Write16"
+     * @return the mode, NOP if unknown
+     */
+    public static MemoryAccessMode get(String s) {
+        try {
+            return MemoryAccessMode.valueOf(s.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            return NOP;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package morpher.ui.visualization.utils;
+
+public enum ModuleType {
+    PE,         // processing element
+    PE_MEM,     // processing element with a data memory port
+    OTHER;      // any other module kind
+
+    public static ModuleType get(String s) {
+        try {
+            return ModuleType.valueOf(s.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            return OTHER;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package morpher.ui.visualization.utils;
+
+public enum OpcodeCategory {
+    CONTROL,    // nop, jumps and resets
+    ARITHMETIC, // integer arithmetic
+    LOGIC,      // bitwise operations and shifts
+    COMPARE,    // comparisons and selects
+    MEMORY,     // data memory loads and stores
+    MOVE,       // constants and pass-through
+    OTHER;      // opcode without known metadata
+
+    public static OpcodeCategory get(String opCode) {
+        return switch (opCode) {
+            case "", "NOP", "JUMP", "JUMPL", "RST", "HALT" -> CONTROL;
+            case "ADD", "SUB", "MUL", "DIV", "MAC", "NEG" -> ARITHMETIC;
+            case "AND", "OR", "XOR", "NOT", "SHL", "SHR", "LS", "RS", "ARS" -> LOGIC;
+            case "CMP", "CLT", "CGT", "SELECT", "CMERGE" -> COMPARE;
+            case "LOAD", "STORE", "LOADB", "STOREB", "LD", "ST" -> MEMORY;
+            case "MOVC", "MOV", "PASS" -> MOVE;
+            default -> OTHER;
+        };
+    }
+}
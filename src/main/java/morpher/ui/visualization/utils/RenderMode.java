@@ -0,0 +1,15 @@
+package morpher.ui.visualization.utils;
+
+public enum RenderMode {
+    GRID,       // one scene graph node per cell, label and route
+    CANVAS;     // the whole fabric drawn onto a canvas
+
+    public static RenderMode get(String s) {
+        try {
+            return RenderMode.valueOf(s.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException | NullPointerException e) {
+            return GRID;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package morpher.ui.visualization.utils;
+
+public enum SimdRegister {
+    OP1("reg_op1"),             // first ALU operand
+    OP2("reg_op2"),             // second ALU operand
+    RES("reg_res"),             // ALU result
+    NORTH_IN("reg_north_in"),   // input from the northern neighbour
+    SOUTH_IN("reg_south_in"),   // input from the southern neighbour
+    WEST_IN("reg_west_in"),     // input from the western neighbour
+    EAST_IN("reg_east_in");     // input from the eastern neighbour
+
+    private final String key;
+
+    SimdRegister(String key) {
+        this.key = key;
+    }
+
+    /**
+     * @return the name of the register in the state dumps, e.g. "reg_op1"
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * @param s a register name, either the dump key ("reg_op1") or the constant name ("OP1")
+     * @return the register, or null if the name is unknown
+     */
+    public static SimdRegister get(String s) {
+        String name = s.trim();
+        for (SimdRegister r : values()) {
+            if (r.key.equalsIgnoreCase(name) || r.name().equalsIgnoreCase(name)) {
+                return r;
+            }
+        }
+        return null;
+    }
+}
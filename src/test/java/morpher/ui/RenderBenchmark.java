@@ -0,0 +1,145 @@
+package morpher.ui;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.StackPane;
+import javafx.stage.Stage;
+import morpher.ui.visualization.Coordinate;
+import morpher.ui.visualization.FabricMatrix;
+import morpher.ui.visualization.PE;
+import morpher.ui.visualization.PELoader;
+import morpher.ui.visualization.utils.RenderMode;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Times the rendering of a cycle by FabricMatrixVisualizer on fabrics of growing size, with
+ * each renderer.
+ *
+ * An NxN fabric is tiled with the PEs of the demo design, so every cycle changes the same
+ * share of the cells whatever N is. The visualizer is shown as in the main window, in a
+ * ScrollPane of a 1280x800 scene. A render is timed from goTo() until the cycle is on screen:
+ * the grid renderer may wait for its frame to be prepared, then the scene is laid out and
+ * painted by taking a snapshot of it. Each size is stepped through all cycles once to warm
+ * up, then PASSES times while timed.
+ *
+ * Run it with the JavaFX runtime and a display, e.g. {@code ./gradlew renderBenchmark}, or
+ * directly with the sizes to time as arguments (8 16 32 64 by default).
+ */
+public final class RenderBenchmark {
+    private static final int PASSES = Integer.getInteger("morpher.benchmark.passes", 5);
+    private static final long FRAME_TIMEOUT_NANOS = 5_000_000_000L;
+
+    private RenderBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[]{8, 16, 32, 64}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+
+        Map<Coordinate, PE> demo = PELoader.get().getNodes();
+        FabricMatrixVisualizer viz = fx(FabricMatrixVisualizer::new);
+        Scene scene = fx(() -> {
+            StackPane pane = new StackPane(viz);
+            pane.getStylesheets().add(RenderBenchmark.class.getResource("/css/grid.css").toExternalForm());
+            Scene s = new Scene(new ScrollPane(pane), 1280, 800);
+            Stage stage = new Stage();
+            stage.setScene(s);
+            stage.show();
+            return s;
+        });
+
+        System.out.println("renderer   size  cells   mean ms    p95 ms    max ms  waited");
+        for (RenderMode mode : RenderMode.values()) {
+            for (int n : sizes) {
+                Map<Coordinate, PE> nodes = tile(demo, n);
+                fx(() -> {
+                    viz.setRenderMode(mode);
+                    viz.init(new FabricMatrix(n, n), nodes);
+                    return null;
+                });
+                int cycles = fx(viz::getLastCycle) + 1;
+                step(viz, scene, cycles, new long[cycles]);
+                long[] times = new long[PASSES * cycles];
+                int waited = 0;
+                for (int pass = 0; pass < PASSES; pass++) {
+                    long[] passTimes = new long[cycles];
+                    waited += step(viz, scene, cycles, passTimes);
+                    System.arraycopy(passTimes, 0, times, pass * cycles, cycles);
+                }
+                Arrays.sort(times);
+                System.out.printf("%-8s %6s %6d %9.2f %9.2f %9.2f %7d%n", mode, n + "x" + n, n * n,
+                        Arrays.stream(times).average().orElse(0) / 1e6,
+                        times[(int) Math.ceil(times.length * 0.95) - 1] / 1e6,
+                        times[times.length - 1] / 1e6, waited);
+            }
+        }
+        Platform.exit();
+    }
+
+    /**
+     * Renders every cycle once, from the one after the current.
+     *
+     * @param times receives the time of each render, in nanoseconds
+     * @return the number of renders that had to wait for their frame
+     */
+    private static int step(FabricMatrixVisualizer viz, Scene scene, int cycles, long[] times) throws Exception {
+        int waited = 0;
+        int cycle = fx(viz::getCurrentCycle);
+        for (int i = 0; i < cycles; i++) {
+            int target = (cycle + 1 + i) % cycles;
+            long start = System.nanoTime();
+            long before = fx(() -> {
+                long shown = viz.getCyclesShown();
+                viz.goTo(target, 1);
+                return shown;
+            });
+            if (fx(viz::getCyclesShown) == before) {
+                waited++;
+                while (fx(viz::getCyclesShown) == before && System.nanoTime() - start < FRAME_TIMEOUT_NANOS) {
+                    Thread.onSpinWait();
+                }
+            }
+            fx(() -> scene.snapshot(null));
+            times[i] = System.nanoTime() - start;
+        }
+        return waited;
+    }
+
+    /**
+     * @return an n x n fabric of the demo PEs, repeated
+     */
+    private static Map<Coordinate, PE> tile(Map<Coordinate, PE> demo, int n) {
+        int rows = demo.keySet().stream().mapToInt(Coordinate::row).max().orElse(0) + 1;
+        int cols = demo.keySet().stream().mapToInt(Coordinate::col).max().orElse(0) + 1;
+        Map<Coordinate, PE> nodes = new HashMap<>();
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                PE pe = demo.get(new Coordinate(r % rows, c % cols));
+                if (pe != null) {
+                    Coordinate coord = new Coordinate(r, c);
+                    nodes.put(coord, new PE(coord, pe.mappingTable(), pe.routingStore(), pe.index()));
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Runs a task on the FX thread and waits for its result.
+     */
+    private static <T> T fx(Callable<T> task) throws Exception {
+        FutureTask<T> future = new FutureTask<>(task);
+        Platform.runLater(future);
+        return future.get();
+    }
+}
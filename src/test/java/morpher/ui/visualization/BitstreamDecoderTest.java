@@ -0,0 +1,72 @@
+package morpher.ui.visualization;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cross-checks the bundled bitstreams, decoded with the bundled {@link BitstreamLayout}, against
+ * the `.prog` text of the same PEs. The words listed under "KNOWN_DIFFERENCES" in the layout file
+ * must differ, so that a fixed layout or design also updates that list.
+ */
+class BitstreamDecoderTest {
+    private static final String LAYOUT = "/bitstream/hycube_pe.json";
+
+    @Test
+    void bundledBitstreamsDecodeAsTheirProgFiles() throws IOException {
+        Set<String> known = knownDifferences();
+        List<Path> bitstreams;
+        try (Stream<Path> s = Files.list(RoutingLoader.getDemoDirectory())) {
+            bitstreams = s.filter(p -> p.getFileName().toString().matches("PE-Y\\d+X\\d+")).sorted().toList();
+        }
+        assertFalse(bitstreams.isEmpty(), "no bitstream in the demo directory");
+
+        Set<String> differing = new HashSet<>();
+        for (Path bitstream : bitstreams) {
+            String name = bitstream.getFileName().toString();
+            RoutingBatch decoded = BitstreamDecoder.decode(bitstream);
+            RoutingBatch prog = ProgFileParser.parse(bitstream.resolveSibling(name + ".prog"));
+            assertEquals(prog.jumpStart(), decoded.jumpStart(), name + " jump start");
+            assertEquals(prog.jumpEnd(), decoded.jumpEnd(), name + " jump end");
+            assertEquals(prog.routes().size(), decoded.routes().size(), name + " words");
+            for (int word = 0; word < prog.routes().size(); word++) {
+                String where = name + " word " + word;
+                Routing expected = prog.routes().get(word);
+                Routing actual = decoded.routes().get(word);
+                assertEquals(expected.getOpCode(), actual.getOpCode(), where + " opcode");
+                if (known.contains(where)) {
+                    assertNotEquals(expected, actual, where + " is listed as a known difference but matches");
+                    differing.add(where);
+                } else {
+                    assertEquals(expected, actual, where);
+                }
+            }
+        }
+        assertEquals(known, differing, "known differences of files that were not decoded");
+    }
+
+    private static Set<String> knownDifferences() throws IOException {
+        Set<String> known = new HashSet<>();
+        try (InputStream in = BitstreamDecoderTest.class.getResourceAsStream(LAYOUT)) {
+            assertTrue(in != null, LAYOUT + " not found");
+            for (JsonNode entry : new ObjectMapper().readTree(in).path("KNOWN_DIFFERENCES")) {
+                known.add(entry.path("FILE").asText() + " word " + entry.path("WORD").asInt());
+            }
+        }
+        return known;
+    }
+}
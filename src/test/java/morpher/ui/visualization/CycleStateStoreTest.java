@@ -0,0 +1,92 @@
+package morpher.ui.visualization;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that {@link CycleStateStore} gives back the PE states it was built from, whatever the
+ * keyframe interval.
+ */
+class CycleStateStoreTest {
+    private static final Pattern STATE_FILE = Pattern.compile("PE-Y(\\d+)X(\\d+)\\.state");
+    private static final int[] INTERVALS = {1, 4, 32};
+
+    @Test
+    void demoTraceRoundTrips() throws IOException {
+        TraceSource trace = TraceSource.open(RoutingLoader.getDemoDirectory());
+        List<Map<Coordinate, PEState>> cycles = new ArrayList<>();
+        for (int cycle = 0; cycle < trace.cycleCount(); cycle++) {
+            Map<Coordinate, PEState> states = new TreeMap<>(Coordinate.ROW_MAJOR);
+            for (String name : trace.cycleFiles(cycle)) {
+                Matcher m = STATE_FILE.matcher(name);
+                if (m.matches()) {
+                    Coordinate coord = new Coordinate(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+                    states.put(coord, StateFileParser.parse(trace, cycle, name, coord));
+                }
+            }
+            cycles.add(states);
+        }
+        assertFalse(cycles.isEmpty() || cycles.get(0).isEmpty(), "no state in the demo trace");
+        assertRoundTrips(cycles);
+    }
+
+    @Test
+    void namesAndPesAppearingBetweenKeyframesRoundTrip() {
+        Coordinate a = new Coordinate(0, 0);
+        Coordinate b = new Coordinate(1, 2);
+        List<Map<Coordinate, PEState>> cycles = new ArrayList<>();
+        for (int cycle = 0; cycle < 12; cycle++) {
+            Map<Coordinate, PEState> states = new TreeMap<>(Coordinate.ROW_MAJOR);
+            Map<String, Long> registers = new LinkedHashMap<>();
+            registers.put("reg_op1", (long) cycle * 3);
+            if (cycle >= 5 && cycle < 9) {
+                registers.put("reg_res", -1L - cycle);
+            }
+            Map<String, Long> wires = new LinkedHashMap<>();
+            if (cycle != 2) {
+                wires.put("wire_alu_out", cycle % 3 == 0 ? null : (long) cycle);
+            }
+            states.put(a, state(a, cycle, registers, wires, cycle % 2 == 0 ? "NOP" : "ADD"));
+            if (cycle >= 6 && cycle < 10) {
+                Map<String, Long> bWires = new LinkedHashMap<>();
+                bWires.put("wire_east_out", cycle == 7 ? null : 0x0102030405060708L);
+                states.put(b, state(b, cycle, Map.of("reg_east_in", 7L), bWires, "LOAD 0"));
+            }
+            cycles.add(states);
+        }
+        assertRoundTrips(cycles);
+    }
+
+    private static PEState state(Coordinate coord, int cycle, Map<String, Long> registers,
+                                 Map<String, Long> wires, String operation) {
+        return new PEState(coord, cycle % 5, Collections.unmodifiableMap(registers),
+                Collections.unmodifiableMap(wires), cycle % 3 == 1, 1, 4, operation);
+    }
+
+    private static void assertRoundTrips(List<Map<Coordinate, PEState>> cycles) {
+        for (int interval : INTERVALS) {
+            CycleStateStore store = CycleStateStore.build(cycles.size(), interval, cycles::get);
+            for (int cycle = 0; cycle < cycles.size(); cycle++) {
+                String where = "K=" + interval + " cycle " + cycle;
+                assertEquals(cycles.get(cycle), store.get(cycle), where);
+                for (Map.Entry<Coordinate, PEState> entry : cycles.get(cycle).entrySet()) {
+                    assertEquals(entry.getValue(), store.get(cycle, entry.getKey()), where + " " + entry.getKey());
+                }
+            }
+            assertEquals(Map.of(), store.get(cycles.size()), "K=" + interval + " past the last cycle");
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package morpher.ui.visualization;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that {@link ProgFileParser} gives the same RoutingBatch as the line-based regex parser
+ * it replaced, which is kept here as the reference.
+ */
+class ProgFileParserTest {
+    private static final Pattern OPCODE_PATTERN = Pattern.compile(
+            "^\\s*operation\\s*:\\s*([A-Z]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JUMP_PATTERN = Pattern.compile(
+            "^\\s*operation:\\s*jump\\s*\\[\\s*(\\d+)\\s*,\\s*(\\d+)\\s*]\\s*$",
+            Pattern.CASE_INSENSITIVE);
+
+    @Test
+    void demoFilesParseAsWithRegex() throws IOException {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(RoutingLoader.getDemoDirectory())) {
+            files = s.filter(p -> p.getFileName().toString().endsWith(".prog")).sorted().toList();
+        }
+        assertFalse(files.isEmpty(), "no .prog file in the demo directory");
+        for (Path file : files) {
+            String text = Files.readString(file);
+            assertEquals(parseWithRegex(text), ProgFileParser.parse(file), file.getFileName().toString());
+        }
+    }
+
+    @Test
+    void unusualSpellingParsesAsWithRegex() throws IOException {
+        assertSameAsRegex("""
+                Operation: add
+                input_register_used: {}
+                switch_config: {
+                  NorthIn->SOUTH_out, open -> east_out
+                  westIn  ->  north_out;  EastIn -> alu
+                };
+                operation: JUMP [ 3 , 12 ]
+                switch_config: {
+                }
+                """);
+        assertSameAsRegex("operation: jump [3, x]\nswitch_config: {\n  open -> west_out\n}");
+        assertSameAsRegex("\r\noperation: NOP\r\nswitch_config: {\r\n  southIn -> east_out\r\n}\r\n");
+        assertSameAsRegex("");
+    }
+
+    private static void assertSameAsRegex(String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+        assertEquals(parseWithRegex(text), ProgFileParser.parse(bytes), text);
+    }
+
+    /**
+     * The parser of RoutingLoader before ProgFileParser.
+     */
+    private static RoutingBatch parseWithRegex(String text) throws IOException {
+        List<Routing> routes = new ArrayList<>();
+        int jumpStart = -1;
+        int jumpEnd = -1;
+        try (BufferedReader br = new BufferedReader(new StringReader(text))) {
+            String line;
+            boolean inSwitch = false;
+            Routing routing = null;
+            String opCode = "";
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.toLowerCase(Locale.ROOT).startsWith("operation:")) {
+                    Matcher m = OPCODE_PATTERN.matcher(line);
+                    opCode = m.find() ? m.group(1).toUpperCase(Locale.ROOT) : "";
+                    if (opCode.equals("JUMP")) {
+                        Matcher jm = JUMP_PATTERN.matcher(line);
+                        if (jm.find()) {
+                            jumpStart = Integer.parseInt(jm.group(1));
+                            jumpEnd = Integer.parseInt(jm.group(2));
+                        }
+                    }
+                    continue;
+                }
+                if (line.toLowerCase(Locale.ROOT).startsWith("switch_config")) {
+                    inSwitch = true;
+                    routing = new Routing();
+                    routing.setOpCode(opCode);
+                    continue;
+                }
+                if (inSwitch && line.startsWith("}")) {
+                    routes.add(routing);
+                    inSwitch = false;
+                    continue;
+                }
+                if (inSwitch) {
+                    Routing.parseRoutingLine(line, routing);
+                }
+            }
+        }
+        return new RoutingBatch(Collections.unmodifiableList(routes), jumpStart, jumpEnd);
+    }
+}
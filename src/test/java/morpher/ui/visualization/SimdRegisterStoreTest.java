@@ -0,0 +1,77 @@
+package morpher.ui.visualization;
+
+import morpher.ui.visualization.utils.SimdRegister;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the registers of {@link SimdRegisterStore} against the states parsed by
+ * {@link StateFileParser}.
+ */
+class SimdRegisterStoreTest {
+    private static final Pattern STATE_FILE = Pattern.compile("PE-Y(\\d+)X(\\d+)\\.state");
+
+    @Test
+    void demoTraceMatchesParsedStates() throws IOException {
+        Path demo = RoutingLoader.getDemoDirectory();
+        TraceSource trace = TraceSource.open(demo);
+        for (boolean offHeap : new boolean[]{false, true}) {
+            SimdRegisterStore store = SimdRegisterStore.load(demo, offHeap);
+            assertEquals(trace.cycleCount(), store.cycles(), "cycles");
+            for (int cycle = 0; cycle < trace.cycleCount(); cycle++) {
+                for (String name : trace.cycleFiles(cycle)) {
+                    Matcher m = STATE_FILE.matcher(name);
+                    if (!m.matches()) {
+                        continue;
+                    }
+                    Coordinate coord = new Coordinate(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2)));
+                    PEState state = StateFileParser.parse(trace, cycle, name, coord);
+                    assertTrue(store.isPresent(cycle, coord), "cycle " + cycle + " " + coord + " present");
+                    for (SimdRegister reg : SimdRegister.values()) {
+                        assertEquals((long) state.registers().get(reg.key()), store.value(cycle, coord, reg),
+                                "cycle " + cycle + " " + coord + " " + reg);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void fabricCoversPesFirstDumpedAfterTheFirstCycle() throws IOException {
+        Path demo = RoutingLoader.getDemoDirectory();
+        Path dir = Files.createTempDirectory("simd-store");
+        try {
+            Files.createDirectories(dir.resolve("cycle_0"));
+            Files.createDirectories(dir.resolve("cycle_1"));
+            Files.copy(demo.resolve("cycle_0/PE-Y0X0.state"), dir.resolve("cycle_0/PE-Y0X0.state"));
+            Files.copy(demo.resolve("cycle_1/PE-Y3X3.state"), dir.resolve("cycle_1/PE-Y3X3.state"));
+
+            SimdRegisterStore store = SimdRegisterStore.load(dir, false);
+            assertEquals(4, store.rows(), "rows");
+            assertEquals(4, store.cols(), "cols");
+            Coordinate late = new Coordinate(3, 3);
+            assertFalse(store.isPresent(0, late), "PE-Y3X3 at cycle 0");
+            assertTrue(store.isPresent(1, late), "PE-Y3X3 at cycle 1");
+            PEState state = StateFileParser.parse(TraceSource.open(demo), 1, "PE-Y3X3.state", late);
+            assertEquals((long) state.registers().get(SimdRegister.RES.key()), store.value(1, late, SimdRegister.RES),
+                    "PE-Y3X3 reg_res");
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+}
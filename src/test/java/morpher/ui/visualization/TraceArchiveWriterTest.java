@@ -0,0 +1,44 @@
+package morpher.ui.visualization;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that an archive written by {@link TraceArchiveWriter} reads back as the directory it was
+ * imported from.
+ */
+class TraceArchiveWriterTest {
+
+    @Test
+    void demoDirectoryRoundTrips() throws IOException {
+        Path tmp = Files.createTempDirectory("trace-archive");
+        Path archive = tmp.resolve("demo.mtrc");
+        try {
+            TraceArchiveWriter.write(RoutingLoader.getDemoDirectory(), archive);
+            TraceSource dir = new DirectoryTraceSource(RoutingLoader.getDemoDirectory());
+            TraceArchive read = TraceArchive.open(archive);
+
+            assertEquals(dir.files(), read.files());
+            for (String name : dir.files()) {
+                assertEquals(dir.read(name), read.read(name), name);
+            }
+            assertEquals(dir.cycleCount(), read.cycleCount());
+            for (int cycle = 0; cycle < dir.cycleCount(); cycle++) {
+                assertEquals(dir.cycleFiles(cycle), read.cycleFiles(cycle), "cycle " + cycle);
+                for (String name : dir.cycleFiles(cycle)) {
+                    ByteBuffer expected = dir.read(cycle, name);
+                    assertEquals(expected, read.read(cycle, name), "cycle " + cycle + " " + name);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(archive);
+            Files.deleteIfExists(tmp);
+        }
+    }
+}